@@ -1,5 +1,6 @@
 plugins {
-    // Root project: no plugin required
+    // Declared once here so focuscript-runtime and focuscript-plugin share the same Kotlin plugin
+    kotlin("jvm") version "2.3.0" apply false
 }
 
 allprojects {
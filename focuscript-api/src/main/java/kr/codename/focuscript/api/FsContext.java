@@ -12,4 +12,5 @@ public interface FsContext {
     FsConfig getConfig();
     FsCommands getCommands();
     FsStorage getStorage();
+    FsThreads getThreads();
 }
@@ -0,0 +1,44 @@
+package kr.codename.focuscript.api;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Threads and executors owned by a module (module-scoped).
+ *
+ * <p>Everything created here is tracked and stopped when the module is disabled: executors are shut
+ * down, threads are interrupted and given a short grace period to exit. Threads that are still alive
+ * afterwards are reported as leaks. Threads are daemon threads named {@code fs-<moduleId>-<name>}.</p>
+ *
+ * <p>Module code on these threads must not touch server state (players, worlds, inventories); hand
+ * results back with {@link FsScheduler#after}.</p>
+ */
+public interface FsThreads {
+
+    /**
+     * A factory for threads owned by this module, for libraries that take a {@link ThreadFactory}.
+     */
+    ThreadFactory factory(String name);
+
+    /**
+     * Starts a new thread owned by this module.
+     */
+    Thread start(String name, Runnable task);
+
+    ExecutorService newSingleThreadExecutor(String name);
+
+    ExecutorService newFixedThreadPool(String name, int threads);
+
+    ScheduledExecutorService newScheduledThreadPool(String name, int threads);
+
+    /**
+     * Threads created via this module that are still alive.
+     */
+    int activeCount();
+
+    /**
+     * Shut down all executors and interrupt all threads created via this module.
+     */
+    void shutdownAll();
+}
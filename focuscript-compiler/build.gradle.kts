@@ -0,0 +1,44 @@
+plugins {
+    `java-library`
+    application
+}
+
+java {
+    toolchain.languageVersion.set(JavaLanguageVersion.of(21))
+}
+
+dependencies {
+    // The plugin gets the compiler from Paper's plugin.yml libraries; the standalone CLI ships it.
+    compileOnly("org.jetbrains.kotlin:kotlin-compiler-embeddable:2.2.20")
+    runtimeOnly("org.jetbrains.kotlin:kotlin-compiler-embeddable:2.2.20")
+
+    implementation(project(":focuscript-api"))
+    // The CLI compiles modules against the prelude jar, as the plugin does with its embedded copy.
+    runtimeOnly(project(":focuscript-runtime"))
+    // script.yml parsing for the CLI (the plugin uses Bukkit's configuration instead)
+    implementation("org.yaml:snakeyaml:2.2")
+}
+
+tasks.jar {
+    // Read by the CLI as its default --plugin-version, which is part of every cache key.
+    manifest {
+        attributes("Implementation-Version" to project.version)
+    }
+}
+
+// Offline compiler: ./gradlew :focuscript-compiler:installDist, then build/install/focuscript-compiler/bin/focuscript-compiler
+application {
+    mainClass.set("kr.codename.focuscript.cli.FocuscriptCompilerMain")
+}
+
+// Micro-benchmarks of compiler internals; not part of the build. Run e.g. ./gradlew :focuscript-compiler:benchPreprocessor
+val bench by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+    runtimeClasspath += output + compileClasspath
+}
+
+tasks.register<JavaExec>("benchPreprocessor") {
+    description = "Measures .fs preprocessing throughput on a synthetic workspace."
+    classpath = bench.runtimeClasspath
+    mainClass.set("kr.codename.focuscript.core.compiler.FsPreprocessorBenchmark")
+}
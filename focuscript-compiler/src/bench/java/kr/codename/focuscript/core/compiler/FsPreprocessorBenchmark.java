@@ -0,0 +1,161 @@
+package kr.codename.focuscript.core.compiler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Throughput of {@link FsPreprocessor} on synthetic workspaces, next to the regex passes it replaced.
+ *
+ * <p>Run with {@code ./gradlew :focuscript-compiler:benchPreprocessor}. Optional arguments:
+ * {@code <files> <linesPerFile> <rounds>}.</p>
+ */
+public final class FsPreprocessorBenchmark {
+
+    private static final Pattern LEGACY_INCLUDE = Pattern.compile("(?m)^\\s*#include\\s+\"([^\"]+)\"\\s*$");
+    private static final Pattern LEGACY_DECLARATION = Pattern.compile("(?m)^\\s*(package|import)\\s+");
+
+    private FsPreprocessorBenchmark() {}
+
+    public static void main(String[] args) throws Exception {
+        int files = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        int linesPerFile = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 15;
+
+        Path root = Files.createTempDirectory("fs-preprocessor-bench");
+        try {
+            Workspace ws = generate(root, files, linesPerFile, new Random(42));
+            System.out.printf("workspace: %d files, %d lines, %.1f MB (entry includes half of them in a tree)%n",
+                    files + 1, ws.lines, ws.bytes / 1e6);
+
+            report("FsPreprocessor", ws, rounds, () -> {
+                long n = FsPreprocessor.expandEntry(ws.entry, ws.entryText, root).text().length();
+                for (int i = 0; i < ws.others.size(); i++) {
+                    n += FsPreprocessor.check(ws.others.get(i), ws.otherTexts.get(i)).lines().originOf(1).line();
+                }
+                return n;
+            });
+            report("legacy regex", ws, rounds, () -> {
+                long n = legacyExpand(ws.entryText, ws.entry, root, new ArrayDeque<>(List.of(ws.entry))).length();
+                for (String text : ws.otherTexts) {
+                    legacyValidate(text);
+                    n++;
+                }
+                return n;
+            });
+        } finally {
+            try (var walk = Files.walk(root)) {
+                for (Path p : walk.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(p);
+                }
+            }
+        }
+    }
+
+    private interface Pass {
+        long run() throws IOException;
+    }
+
+    private static void report(String name, Workspace ws, int rounds, Pass pass) throws IOException {
+        long sink = 0;
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            long t0 = System.nanoTime();
+            sink += pass.run();
+            best = Math.min(best, System.nanoTime() - t0);
+        }
+        double seconds = best / 1e9;
+        System.out.printf("%-15s best %7.2f ms  %8.1f MB/s  %6.2f M lines/s  (sink %d)%n",
+                name, best / 1e6, ws.bytes / 1e6 / seconds, ws.lines / 1e6 / seconds, sink % 10);
+    }
+
+    private static final class Workspace {
+        Path entry;
+        String entryText;
+        final List<Path> others = new ArrayList<>();
+        final List<String> otherTexts = new ArrayList<>();
+        long bytes;
+        long lines;
+    }
+
+    /**
+     * An entry file including a binary tree of {@code files / 2} files, plus as many stand-alone sources.
+     * Every file mixes strings, templates, raw strings and comments that contain directive look-alikes.
+     */
+    private static Workspace generate(Path root, int files, int linesPerFile, Random random) throws IOException {
+        Path src = Files.createDirectories(root.resolve("src"));
+        Workspace ws = new Workspace();
+        int included = files / 2;
+        for (int f = 0; f < files; f++) {
+            StringBuilder sb = new StringBuilder();
+            if (f < included) {
+                for (int child = 2 * f + 1; child <= 2 * f + 2 && child < included; child++) {
+                    sb.append("#include \"inc").append(child).append(".fs\"\n");
+                }
+            }
+            for (int l = 0; l < linesPerFile; l++) {
+                sb.append(line(f, l, random)).append('\n');
+            }
+            String text = sb.toString();
+            Path file = src.resolve((f < included ? "inc" : "lib") + f + ".fs");
+            Files.writeString(file, text, StandardCharsets.UTF_8);
+            ws.bytes += text.length();
+            ws.lines += linesPerFile;
+            if (f >= included) {
+                ws.others.add(file);
+                ws.otherTexts.add(text);
+            }
+        }
+        ws.entry = src.resolve("main.fs");
+        ws.entryText = "// entry\n" + (included > 0 ? "#include \"inc0.fs\"\n" : "") + "onEnable { log.info(\"ready\") }\n";
+        Files.writeString(ws.entry, ws.entryText, StandardCharsets.UTF_8);
+        return ws;
+    }
+
+    private static String line(int file, int line, Random random) {
+        String id = "v" + file + "_" + line;
+        return switch (random.nextInt(8)) {
+            case 0 -> "val " + id + " = \"text with // not a comment and \\\"quotes\\\"\"";
+            case 1 -> "val " + id + " = \"${" + id.length() + " + listOf(1, 2).map { it * 2 }.sum()} items\"";
+            case 2 -> "// import is fine inside a comment: #include \"nothing.fs\"";
+            case 3 -> "/* block comment */ val " + id + " = '\"'";
+            case 4 -> "val " + id + " = \"\"\"raw ${'$'}text\"\"\".trimIndent()";
+            case 5 -> "fun f" + id + "(x: Int): Int = if (x > 0) x * " + random.nextInt(100) + " else -x";
+            case 6 -> "    onTick(" + random.nextInt(20) + ") { if (it % 2 == 0) log.info(\"tick $it\") }";
+            default -> "val `" + id + " name` = mapOf(\"a\" to 1, \"b\" to 2)";
+        };
+    }
+
+    private static String legacyExpand(String text, Path current, Path root, Deque<Path> stack) throws IOException {
+        legacyValidate(text);
+        Matcher matcher = LEGACY_INCLUDE.matcher(text);
+        StringBuffer out = new StringBuffer();
+        while (matcher.find()) {
+            Path include = current.getParent().resolve(matcher.group(1).trim()).normalize();
+            if (!include.startsWith(root) || stack.contains(include)) throw new IOException("bad include: " + include);
+            stack.push(include);
+            String resolved;
+            try {
+                resolved = legacyExpand(Files.readString(include, StandardCharsets.UTF_8), include, root, stack);
+            } finally {
+                stack.pop();
+            }
+            matcher.appendReplacement(out, Matcher.quoteReplacement(resolved));
+        }
+        matcher.appendTail(out);
+        return out.toString();
+    }
+
+    private static void legacyValidate(String text) throws IOException {
+        if (LEGACY_DECLARATION.matcher(text).find()) throw new IOException("package/import");
+    }
+}
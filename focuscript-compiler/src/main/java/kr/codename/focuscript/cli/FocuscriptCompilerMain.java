@@ -0,0 +1,331 @@
+package kr.codename.focuscript.cli;
+
+import kr.codename.focuscript.api.FsApi;
+import kr.codename.focuscript.core.compiler.BlockingCallLint;
+import kr.codename.focuscript.core.compiler.CompileCancellation;
+import kr.codename.focuscript.core.compiler.CompileExecutor;
+import kr.codename.focuscript.core.compiler.CompilerLog;
+import kr.codename.focuscript.core.compiler.FsCompiler;
+import kr.codename.focuscript.core.compiler.JarCache;
+import kr.codename.focuscript.core.compiler.JarUtil;
+import kr.codename.focuscript.core.compiler.KotlinCompilationException;
+import kr.codename.focuscript.core.compiler.KotlinCompilerInvoker;
+import kr.codename.focuscript.core.compiler.ModuleArtifact;
+import kr.codename.focuscript.core.workspace.ScriptManifest;
+import kr.codename.focuscript.core.workspace.Workspace;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Compiles Focuscript workspaces without a server.
+ *
+ * <p>Takes a directory of workspaces laid out like {@code plugins/Focuscript/scripts} and fills a build
+ * directory laid out like {@code plugins/Focuscript/_build}. Copied onto a server, that directory is the
+ * plugin's jar cache: every module whose sources are unchanged loads without compiling. Workspaces are
+ * compiled in parallel on the same pool and with the same compiler the plugin uses.</p>
+ *
+ * <pre>
+ * focuscript-compiler [options] &lt;workspaces-dir&gt;
+ *   --out &lt;dir&gt;             build directory (default: _build next to the workspaces dir)
+ *   --jars &lt;dir&gt;            also copy each module's jar to &lt;dir&gt;/&lt;id&gt;.jar
+ *   --threads &lt;n&gt;           parallel compiles (default: cores - 1)
+ *   --blocking-calls &lt;mode&gt; off, warn or strict; must match the server's compiler.blocking-calls (default: warn)
+ *   --plugin-version &lt;v&gt;    version of the plugin that will use the cache (default: this compiler's)
+ *   --api-jar &lt;jar&gt;         focuscript-api.jar (default: from the classpath)
+ *   --runtime-jar &lt;jar&gt;     focuscript-runtime.jar (default: from the classpath)
+ * </pre>
+ *
+ * <p>Exit code 0 if every module compiled, 1 if any failed, 2 on bad arguments.</p>
+ */
+public final class FocuscriptCompilerMain {
+
+    private static final String RUNTIME_CLASS = "kr.codename.focuscript.prelude.FocuscriptPrelude";
+
+    private record Options(
+            Path workspaces,
+            Path out,
+            Path jars,
+            int threads,
+            BlockingCallLint.Mode blockingCalls,
+            String pluginVersion,
+            Path apiJar,
+            Path runtimeJar
+    ) {}
+
+    /** A workspace read without Bukkit; script.yml is parsed with SnakeYAML. */
+    private record CliWorkspace(Path root, Path scriptYml, ScriptManifest manifest) implements Workspace {
+        @Override
+        public String readScriptYmlText() throws IOException {
+            return Files.readString(scriptYml, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static final CompilerLog CONSOLE = new CompilerLog() {
+        @Override
+        public void info(String message) {
+            System.out.println(message);
+        }
+
+        @Override
+        public void warn(String message) {
+            System.err.println("warning: " + message);
+        }
+
+        @Override
+        public void error(String message) {
+            System.err.println("error: " + message);
+        }
+
+        @Override
+        public void error(String message, Throwable throwable) {
+            error(message);
+            throwable.printStackTrace(System.err);
+        }
+    };
+
+    private FocuscriptCompilerMain() {}
+
+    public static void main(String[] args) {
+        Options options;
+        try {
+            options = parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("error: " + e.getMessage());
+            usage();
+            System.exit(2);
+            return;
+        }
+        System.exit(run(options));
+    }
+
+    private static int run(Options options) {
+        List<CliWorkspace> workspaces;
+        try {
+            workspaces = listWorkspaces(options.workspaces());
+        } catch (IOException e) {
+            CONSOLE.error("Failed to list workspaces: " + e.getMessage());
+            return 1;
+        }
+        if (workspaces.isEmpty()) {
+            CONSOLE.warn("No workspaces found in " + options.workspaces());
+            return 0;
+        }
+
+        CONSOLE.info("Compiling " + workspaces.size() + " module(s) into " + options.out()
+                + " for Focuscript " + options.pluginVersion() + " (API " + FsApi.API_VERSION
+                + ", Kotlin " + FsCompiler.KOTLIN_COMPILER_VERSION + ")");
+        long start = System.nanoTime();
+
+        JarCache jarCache = new JarCache(options.out(), new JarCache.Limits(0L, 0L, 0L), CONSOLE);
+        FsCompiler compiler = new FsCompiler(
+                options.pluginVersion(),
+                options.apiJar(),
+                options.runtimeJar(),
+                options.out(),
+                jarCache,
+                new KotlinCompilerInvoker(),
+                options.blockingCalls(),
+                CONSOLE
+        );
+        CompileExecutor executor = new CompileExecutor(options.threads());
+        try {
+            Map<CliWorkspace, CompletableFuture<ModuleArtifact>> results = new LinkedHashMap<>();
+            for (CliWorkspace ws : workspaces) {
+                results.put(ws, CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return compiler.compileIfNeeded(ws, false, CompileCancellation.none());
+                    } catch (Exception e) {
+                        throw new CompileFailure(e);
+                    }
+                }, executor));
+            }
+
+            int failed = 0;
+            for (Map.Entry<CliWorkspace, CompletableFuture<ModuleArtifact>> e : results.entrySet()) {
+                String id = e.getKey().manifest().id();
+                try {
+                    ModuleArtifact artifact = e.getValue().join();
+                    if (options.jars() != null) {
+                        Files.createDirectories(options.jars());
+                        Files.copy(artifact.jar(), options.jars().resolve(FsCompiler.sanitizeIdAsPath(id) + ".jar"),
+                                StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    CONSOLE.info("ok    " + id + " -> " + options.out().relativize(artifact.jar()));
+                } catch (Exception ex) {
+                    failed++;
+                    Throwable cause = ex.getCause() instanceof CompileFailure f ? f.getCause() : ex;
+                    StringBuilder message = new StringBuilder("FAIL  ").append(id).append(": ").append(cause.getMessage());
+                    if (cause instanceof KotlinCompilationException kce) {
+                        for (String line : kce.getMessages()) {
+                            message.append(System.lineSeparator()).append("      ").append(line);
+                        }
+                    }
+                    CONSOLE.error(message.toString());
+                }
+            }
+
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000L;
+            CONSOLE.info((workspaces.size() - failed) + "/" + workspaces.size() + " module(s) compiled in " + elapsedMs + " ms");
+            return failed == 0 ? 0 : 1;
+        } finally {
+            executor.close();
+            compiler.close();
+        }
+    }
+
+    /** Carries a checked compile failure out of the pool. */
+    private static final class CompileFailure extends RuntimeException {
+        CompileFailure(Exception cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * Same selection as the plugin's load: directories with a script.yml, {@code load: enable} and an
+     * existing entry file. A directory that is itself a workspace is compiled alone.
+     */
+    private static List<CliWorkspace> listWorkspaces(Path root) throws IOException {
+        List<Path> dirs = new ArrayList<>();
+        if (Files.isRegularFile(root.resolve("script.yml"))) {
+            dirs.add(root);
+        } else {
+            try (var stream = Files.list(root)) {
+                stream.filter(Files::isDirectory).sorted().forEach(dirs::add);
+            }
+        }
+
+        Map<String, CliWorkspace> byId = new LinkedHashMap<>();
+        for (Path dir : dirs) {
+            Path scriptYml = dir.resolve("script.yml");
+            if (!Files.isRegularFile(scriptYml)) continue;
+            ScriptManifest manifest;
+            try {
+                manifest = ScriptManifest.read(readYaml(scriptYml)::get);
+            } catch (IOException | RuntimeException e) {
+                CONSOLE.warn("Skipping " + dir.getFileName() + ": " + e.getMessage());
+                continue;
+            }
+            if (!"enable".equalsIgnoreCase(manifest.load())) {
+                CONSOLE.info("Skipping " + manifest.id() + " (load=" + manifest.load() + ")");
+                continue;
+            }
+            if (!Files.isRegularFile(manifest.resolveEntry(dir))) {
+                CONSOLE.warn("Skipping " + manifest.id() + ": entry file not found: " + manifest.entry());
+                continue;
+            }
+            if (byId.containsKey(manifest.id())) {
+                CONSOLE.error("Duplicate module id in workspaces: " + manifest.id() + " (" + dir.getFileName() + ")");
+                continue;
+            }
+            byId.put(manifest.id(), new CliWorkspace(dir, scriptYml, manifest));
+        }
+        return List.copyOf(byId.values());
+    }
+
+    /** script.yml flattened to dotted paths ({@code options.debug}), as Bukkit's configuration sees it. */
+    private static Map<String, Object> readYaml(Path file) throws IOException {
+        Object root;
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            root = new Yaml(new SafeConstructor(new LoaderOptions())).load(in);
+        }
+        Map<String, Object> out = new HashMap<>();
+        if (root instanceof Map<?, ?> map) flatten("", map, out);
+        return out;
+    }
+
+    private static void flatten(String prefix, Map<?, ?> map, Map<String, Object> out) {
+        for (Map.Entry<?, ?> e : map.entrySet()) {
+            String key = prefix + e.getKey();
+            if (e.getValue() instanceof Map<?, ?> child) {
+                flatten(key + ".", child, out);
+            } else {
+                out.put(key, e.getValue());
+            }
+        }
+    }
+
+    private static Options parse(String[] args) {
+        Path workspaces = null;
+        Path out = null;
+        Path jars = null;
+        int threads = 0;
+        BlockingCallLint.Mode blockingCalls = BlockingCallLint.Mode.WARN;
+        String pluginVersion = FocuscriptCompilerMain.class.getPackage().getImplementationVersion();
+        Path apiJar = JarUtil.locationOf(FsApi.class);
+        Path runtimeJar = locateRuntimeJar();
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--out" -> out = Path.of(value(args, ++i, arg));
+                case "--jars" -> jars = Path.of(value(args, ++i, arg));
+                case "--blocking-calls" -> blockingCalls = BlockingCallLint.Mode.parse(value(args, ++i, arg));
+                case "--plugin-version" -> pluginVersion = value(args, ++i, arg);
+                case "--api-jar" -> apiJar = Path.of(value(args, ++i, arg));
+                case "--runtime-jar" -> runtimeJar = Path.of(value(args, ++i, arg));
+                case "--threads" -> {
+                    try {
+                        threads = Integer.parseInt(value(args, ++i, arg));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("--threads expects a number");
+                    }
+                }
+                default -> {
+                    if (arg.startsWith("--") || workspaces != null) {
+                        throw new IllegalArgumentException("Unexpected argument: " + arg);
+                    }
+                    workspaces = Path.of(arg);
+                }
+            }
+        }
+
+        if (workspaces == null) throw new IllegalArgumentException("Missing workspaces directory");
+        workspaces = workspaces.toAbsolutePath().normalize();
+        if (!Files.isDirectory(workspaces)) throw new IllegalArgumentException("Not a directory: " + workspaces);
+        if (pluginVersion == null) throw new IllegalArgumentException("Unknown plugin version; pass --plugin-version");
+        if (apiJar == null || !Files.isRegularFile(apiJar)) throw new IllegalArgumentException("focuscript-api.jar not found; pass --api-jar");
+        if (runtimeJar == null || !Files.isRegularFile(runtimeJar)) throw new IllegalArgumentException("focuscript-runtime.jar not found; pass --runtime-jar");
+        if (out == null) out = workspaces.resolveSibling("_build");
+
+        return new Options(workspaces, out.toAbsolutePath().normalize(), jars, threads, blockingCalls, pluginVersion, apiJar, runtimeJar);
+    }
+
+    private static String value(String[] args, int i, String option) {
+        if (i >= args.length) throw new IllegalArgumentException(option + " expects a value");
+        return args[i];
+    }
+
+    private static Path locateRuntimeJar() {
+        try {
+            return JarUtil.locationOf(Class.forName(RUNTIME_CLASS, false, FocuscriptCompilerMain.class.getClassLoader()));
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+    }
+
+    private static void usage() {
+        System.err.println("""
+                Usage: focuscript-compiler [options] <workspaces-dir>
+                  --out <dir>             build directory (default: _build next to the workspaces dir)
+                  --jars <dir>            also copy each module's jar to <dir>/<id>.jar
+                  --threads <n>           parallel compiles (default: cores - 1)
+                  --blocking-calls <mode> off, warn or strict (default: warn)
+                  --plugin-version <v>    version of the plugin that will use the cache
+                  --api-jar <jar>         focuscript-api.jar (default: from the classpath)
+                  --runtime-jar <jar>     focuscript-runtime.jar (default: from the classpath)""");
+    }
+}
@@ -0,0 +1,91 @@
+package kr.codename.focuscript.core.compiler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Content-addressed jars shared by all workspaces, under {@code _build/_store/<artifactKey>.jar}.
+ *
+ * <p>The artifact key covers only what the compiled classes depend on: the environment, the generated
+ * package, the entry path and each source's workspace-relative path and content hash. Workspaces with the
+ * same sources and the same package (a copied template, or ids that sanitize to the same package) therefore
+ * share one entry.</p>
+ *
+ * <p>Module caches get their jars from here as hard links, so identical modules take the disk space
+ * once; where links are not supported the jar is copied. Entries are immutable once published.
+ * {@link JarCache#sweep()} removes entries no module cache links to anymore.</p>
+ */
+final class ArtifactStore {
+
+    static final String DIR = "_store";
+
+    private static final String JAR_EXT = ".jar";
+
+    private final Path root;
+
+    ArtifactStore(Path buildRoot) {
+        this.root = Objects.requireNonNull(buildRoot, "buildRoot").resolve(DIR);
+    }
+
+    /**
+     * Places the stored jar for {@code artifactKey} at {@code target} unless {@code target} already exists.
+     *
+     * @return false if the store has no such jar
+     */
+    boolean linkTo(String artifactKey, Path target) throws IOException {
+        Path stored = root.resolve(artifactKey + JAR_EXT);
+        if (!Files.isRegularFile(stored)) return false;
+
+        Path tmp = target.resolveSibling(target.getFileName() + "." + System.nanoTime() + ".tmp");
+        try {
+            if (!linkOrCopy(stored, tmp)) return false;
+            FsCompiler.publishIfAbsent(tmp, target);
+            return true;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Adds {@code jar} (a published, immutable cache jar) under {@code artifactKey} unless the store
+     * already has it.
+     */
+    void publish(Path jar, String artifactKey) throws IOException {
+        Path stored = root.resolve(artifactKey + JAR_EXT);
+        if (Files.exists(stored)) return;
+
+        Files.createDirectories(root);
+        Path tmp = root.resolve(artifactKey + "." + System.nanoTime() + ".tmp");
+        try {
+            if (linkOrCopy(jar, tmp)) {
+                FsCompiler.publishIfAbsent(tmp, stored);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * @return false if {@code source} disappeared (evicted concurrently)
+     */
+    private static boolean linkOrCopy(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (UnsupportedOperationException | IOException e) {
+            // No hard links here (other file store, FAT, ...): fall back to a private copy.
+        }
+        try {
+            Files.deleteIfExists(target);
+            Files.copy(source, target);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package kr.codename.focuscript.core.compiler;
+
+import org.jetbrains.org.objectweb.asm.ClassReader;
+import org.jetbrains.org.objectweb.asm.ClassVisitor;
+import org.jetbrains.org.objectweb.asm.Handle;
+import org.jetbrains.org.objectweb.asm.Label;
+import org.jetbrains.org.objectweb.asm.MethodVisitor;
+import org.jetbrains.org.objectweb.asm.Opcodes;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds calls that block the server thread inside event, scheduler and command handlers.
+ *
+ * <p>Runs on the classes kotlinc produced for a module. A handler is the lambda (or object) passed to
+ * {@code FsEvents.on*}, {@code FsScheduler.after/every} or {@code FsCommands.register}; all of those run
+ * on the server thread. From each handler the pass follows direct calls into the module's own classes and
+ * the lambdas created along the way, except lambdas handed to another thread ({@code threads.start}, an
+ * executor), and reports calls into a fixed list of known blocking APIs: file and network I/O, sleeping
+ * and waiting, and synchronous {@code storage.save()/reload()}.</p>
+ *
+ * <p>Calls through interfaces or function values the module receives from elsewhere are not followed, so
+ * the pass can miss blocking code but does not report code that is never reachable from a handler.</p>
+ */
+public final class BlockingCallLint {
+
+    /** What to do with findings; {@code compiler.blocking-calls} in config.yml. */
+    public enum Mode {
+        /** Skip the pass. */
+        OFF,
+        /** Log findings as compile warnings. */
+        WARN,
+        /** Fail the compile, so the module is not loaded. */
+        STRICT;
+
+        public static Mode parse(String value) {
+            if (value == null) return WARN;
+            return switch (value.trim().toLowerCase(Locale.ROOT)) {
+                case "off", "false" -> OFF;
+                case "strict", "error" -> STRICT;
+                default -> WARN;
+            };
+        }
+    }
+
+    /**
+     * @param sourceFile generated unit the call is in (SourceFile attribute), or null
+     * @param line       line in that unit, or 0 if unknown
+     * @param call       the blocking call, e.g. {@code Thread.sleep}
+     * @param reason     why it blocks, e.g. {@code sleeps}
+     * @param handler    the handler it is reachable from, e.g. {@code events.onChat}
+     * @param via        the module function the call is in when it is not the handler itself, or null
+     */
+    record Finding(String sourceFile, int line, String call, String reason, String handler, String via) {
+
+        /** {@code [SEVERITY] unit:line:1: message}, the shape {@link FsCompiler} remaps to .fs locations. */
+        String toMessage(String severity) {
+            String location = sourceFile == null ? "" : sourceFile + ":" + Math.max(1, line) + ":1: ";
+            return "[" + severity + "] " + location + call + " " + reason + " on the server thread in handler "
+                    + handler + (via == null ? "" : " (via " + via + ")");
+        }
+    }
+
+    private static final int ASM_API = Opcodes.ASM9;
+
+    private static final String API = "kr/codename/focuscript/api/";
+    private static final String LAMBDA_METAFACTORY = "java/lang/invoke/LambdaMetafactory";
+
+    /** Handler registrations: owner -> method name prefix -> label. The handler is always the last argument. */
+    private static final Map<String, Map<String, String>> REGISTRATIONS = Map.of(
+            API + "FsEvents", Map.of("on", "events."),
+            API + "FsScheduler", Map.of("after", "scheduler.", "every", "scheduler."),
+            API + "FsCommands", Map.of("register", "commands.")
+    );
+
+    /**
+     * Calls that run a lambda on another thread: blocking is fine inside it, so the walk does not follow
+     * a lambda handed to one of these. Owner -> method names.
+     */
+    private static final Map<String, Set<String>> OFF_THREAD = Map.of(
+            API + "FsThreads", Set.of("start"),
+            "java/lang/Thread", Set.of("<init>"),
+            "java/util/concurrent/Executor", Set.of("execute"),
+            "java/util/concurrent/ExecutorService", Set.of("execute", "submit"),
+            "java/util/concurrent/ScheduledExecutorService", Set.of("execute", "submit", "schedule",
+                    "scheduleAtFixedRate", "scheduleWithFixedDelay"),
+            "java/util/concurrent/CompletableFuture", Set.of("runAsync", "supplyAsync"),
+            "kotlin/concurrent/ThreadsKt", Set.of("thread")
+    );
+
+    /**
+     * @param owner        internal name, or a prefix ending in {@code /}
+     * @param names        method names, or empty for every method (constructors included)
+     * @param descContains required descriptor fragment, or null
+     */
+    private record Rule(String owner, Set<String> names, String descContains, String reason) {
+        boolean matches(String callOwner, String name, String desc) {
+            boolean ownerMatches = owner.endsWith("/") ? callOwner.startsWith(owner) : callOwner.equals(owner);
+            return ownerMatches
+                    && (names.isEmpty() || names.contains(name))
+                    && (descContains == null || desc.contains(descContains));
+        }
+    }
+
+    private static final List<Rule> RULES = List.of(
+            new Rule("java/lang/Thread", Set.of("sleep", "join"), null, "sleeps"),
+            new Rule("java/lang/Object", Set.of("wait"), null, "waits"),
+            new Rule("java/util/concurrent/Future", Set.of("get"), null, "waits"),
+            new Rule("java/util/concurrent/CompletableFuture", Set.of("get", "join"), null, "waits"),
+            new Rule("java/util/concurrent/CountDownLatch", Set.of("await"), null, "waits"),
+            new Rule("java/util/concurrent/Semaphore", Set.of("acquire"), null, "waits"),
+            new Rule("java/util/concurrent/BlockingQueue", Set.of("take", "put"), null, "waits"),
+
+            new Rule("java/io/File", Set.of("exists", "isFile", "isDirectory", "length", "lastModified", "list",
+                    "listFiles", "mkdir", "mkdirs", "delete", "createNewFile", "renameTo", "canRead", "canWrite",
+                    "getCanonicalPath", "getCanonicalFile", "setLastModified"), null, "does file I/O"),
+            new Rule("java/io/FileInputStream", Set.of(), null, "does file I/O"),
+            new Rule("java/io/FileOutputStream", Set.of(), null, "does file I/O"),
+            new Rule("java/io/FileReader", Set.of(), null, "does file I/O"),
+            new Rule("java/io/FileWriter", Set.of(), null, "does file I/O"),
+            new Rule("java/io/RandomAccessFile", Set.of(), null, "does file I/O"),
+            new Rule("java/nio/file/Files", Set.of(), null, "does file I/O"),
+            new Rule("java/nio/channels/FileChannel", Set.of(), null, "does file I/O"),
+            new Rule("kotlin/io/FilesKt", Set.of("readText", "readBytes", "readLines", "writeText", "writeBytes",
+                    "appendText", "appendBytes", "forEachLine", "forEachBlock", "useLines", "copyTo",
+                    "copyRecursively", "deleteRecursively", "bufferedReader", "bufferedWriter", "reader", "writer",
+                    "inputStream", "outputStream", "printWriter"), null, "does file I/O"),
+
+            new Rule("java/net/URL", Set.of("openStream", "openConnection", "getContent"), null, "does network I/O"),
+            new Rule("java/net/URLConnection", Set.of("connect", "getInputStream", "getOutputStream", "getContent"), null, "does network I/O"),
+            new Rule("java/net/HttpURLConnection", Set.of("connect", "getInputStream", "getOutputStream", "getResponseCode", "getContent"), null, "does network I/O"),
+            new Rule("java/net/Socket", Set.of(), null, "does network I/O"),
+            new Rule("java/net/ServerSocket", Set.of(), null, "does network I/O"),
+            new Rule("java/net/InetAddress", Set.of("getByName", "getAllByName", "getLocalHost"), null, "does network I/O"),
+            new Rule("java/net/http/HttpClient", Set.of("send"), null, "does network I/O"),
+            new Rule("kotlin/io/TextStreamsKt", Set.of("readText", "readBytes"), "Ljava/net/URL;", "does network I/O"),
+            new Rule("java/sql/", Set.of(), null, "does database I/O"),
+
+            new Rule(API + "FsStorage", Set.of("save", "reload"), null, "does storage file I/O")
+    );
+
+    private record MethodRef(String owner, String name, String desc) {}
+
+    private record Call(String owner, String name, String desc, int line) {}
+
+    /** A handler passed to a registration: an indy lambda implementation or a module class instance. */
+    private record Root(String label, MethodRef lambda, String instanceClass) {}
+
+    private static final class MethodInfo {
+        final List<Call> calls = new ArrayList<>();
+        final List<MethodRef> lambdas = new ArrayList<>();
+    }
+
+    private static final class ClassInfo {
+        String name;
+        String superName;
+        String sourceFile;
+        final Map<String, MethodInfo> methods = new LinkedHashMap<>();
+    }
+
+    private BlockingCallLint() {}
+
+    /**
+     * @param classes jar entries of the module (name -> bytes); entries that are not classes are ignored
+     * @param packageInternal the module's package in internal form ({@code kr/codename/focuscript/modules/x})
+     */
+    static List<Finding> scan(Map<String, byte[]> classes, String packageInternal) {
+        String ownPrefix = packageInternal + "/";
+        Map<String, ClassInfo> module = new HashMap<>();
+        List<Root> roots = new ArrayList<>();
+        for (Map.Entry<String, byte[]> e : classes.entrySet()) {
+            if (!e.getKey().endsWith(".class")) continue;
+            ClassInfo info = new ClassInfo();
+            new ClassReader(e.getValue()).accept(new Reader(info, ownPrefix, roots), ClassReader.SKIP_FRAMES);
+            module.put(info.name, info);
+        }
+
+        List<Finding> findings = new ArrayList<>();
+        Set<String> reported = new LinkedHashSet<>();
+        for (Root root : roots) {
+            walk(root, module, findings, reported);
+        }
+        return findings;
+    }
+
+    private static void walk(Root root, Map<String, ClassInfo> module, List<Finding> findings, Set<String> reported) {
+        Deque<MethodRef> queue = new ArrayDeque<>();
+        Set<MethodRef> entry = new LinkedHashSet<>();
+        if (root.lambda() != null) {
+            entry.add(root.lambda());
+        } else {
+            ClassInfo handlerClass = module.get(root.instanceClass());
+            if (handlerClass == null) return;
+            for (String key : handlerClass.methods.keySet()) {
+                int paren = key.indexOf('(');
+                String name = key.substring(0, paren);
+                if (!name.equals("<init>") && !name.equals("<clinit>")) {
+                    entry.add(new MethodRef(handlerClass.name, name, key.substring(paren)));
+                }
+            }
+        }
+        queue.addAll(entry);
+        Set<MethodRef> seen = new LinkedHashSet<>(entry);
+
+        while (!queue.isEmpty()) {
+            MethodRef ref = queue.poll();
+            ClassInfo owner = module.get(ref.owner());
+            MethodInfo method = owner == null ? null : owner.methods.get(ref.name() + ref.desc());
+            if (method == null) continue;
+
+            for (Call call : method.calls) {
+                MethodRef target = resolve(module, call.owner(), call.name(), call.desc());
+                if (target != null) {
+                    if (seen.add(target)) queue.add(target);
+                    continue;
+                }
+                Rule rule = match(call);
+                if (rule == null) continue;
+                String key = ref.owner() + "." + ref.name() + ref.desc() + "@" + call.line() + ":" + call.owner() + "." + call.name();
+                if (!reported.add(key)) continue;
+                String via = entry.contains(ref) || isSynthetic(ref.name()) ? null : ref.name();
+                findings.add(new Finding(owner.sourceFile, call.line(), describe(call), rule.reason(), root.label(), via));
+            }
+            for (MethodRef lambda : method.lambdas) {
+                if (module.containsKey(lambda.owner()) && seen.add(lambda)) queue.add(lambda);
+            }
+        }
+    }
+
+    /** The module method a call lands on, looking through module superclasses; null if not in the module. */
+    private static MethodRef resolve(Map<String, ClassInfo> module, String owner, String name, String desc) {
+        ClassInfo cls = module.get(owner);
+        while (cls != null) {
+            if (cls.methods.containsKey(name + desc)) return new MethodRef(cls.name, name, desc);
+            cls = cls.superName == null ? null : module.get(cls.superName);
+        }
+        return null;
+    }
+
+    private static Rule match(Call call) {
+        String name = sourceName(call.name());
+        for (Rule rule : RULES) {
+            if (rule.matches(call.owner(), name, call.desc())) return rule;
+        }
+        return null;
+    }
+
+    private static String describe(Call call) {
+        String simple = call.owner().substring(call.owner().lastIndexOf('/') + 1);
+        String name = sourceName(call.name());
+        if (name.equals("<init>")) return "new " + simple;
+        if (simple.endsWith("Kt")) return name; // Kotlin top-level/extension function
+        return simple + "." + name;
+    }
+
+    /** Kotlin calls a function with omitted default arguments through a {@code name$default} bridge. */
+    private static String sourceName(String methodName) {
+        return methodName.endsWith("$default") ? methodName.substring(0, methodName.length() - "$default".length()) : methodName;
+    }
+
+    /** Compiler-generated names (lambda bodies, accessors) mean nothing in a .fs file. */
+    private static boolean isSynthetic(String methodName) {
+        return methodName.contains("$");
+    }
+
+    private static final class Reader extends ClassVisitor {
+        private final ClassInfo info;
+        private final String ownPrefix;
+        private final List<Root> roots;
+
+        Reader(ClassInfo info, String ownPrefix, List<Root> roots) {
+            super(ASM_API);
+            this.info = info;
+            this.ownPrefix = ownPrefix;
+            this.roots = roots;
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            info.name = name;
+            info.superName = superName;
+        }
+
+        @Override
+        public void visitSource(String source, String debug) {
+            info.sourceFile = source;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            MethodInfo method = new MethodInfo();
+            info.methods.put(name + descriptor, method);
+            return new MethodVisitor(ASM_API) {
+                private int line;
+                /**
+                 * The value on top of the stack if it is a handler candidate. Registrations take their handler
+                 * as the last argument, so anything else pushed, stored or called in between drops it.
+                 */
+                private Root pending;
+                /** False between {@code NEW} of a lambda class and its constructor call. */
+                private boolean pendingConstructed;
+
+                @Override
+                public void visitLineNumber(int lineNumber, Label start) {
+                    line = lineNumber;
+                }
+
+                @Override
+                public void visitTypeInsn(int opcode, String type) {
+                    if (opcode == Opcodes.NEW && type.startsWith(ownPrefix)) {
+                        pending = new Root(null, null, type);
+                        pendingConstructed = false;
+                    }
+                }
+
+                @Override
+                public void visitVarInsn(int opcode, int varIndex) {
+                    // Loads between NEW and <init> are the lambda's captured values.
+                    if (pendingConstructed) pending = null;
+                }
+
+                @Override
+                public void visitFieldInsn(int opcode, String owner, String fieldName, String fieldDescriptor) {
+                    // Non-capturing lambdas compiled as classes are singletons.
+                    if (opcode == Opcodes.GETSTATIC && owner.startsWith(ownPrefix) && fieldName.equals("INSTANCE")) {
+                        pending = new Root(null, null, owner);
+                        pendingConstructed = true;
+                    } else if (pendingConstructed) {
+                        pending = null;
+                    }
+                }
+
+                @Override
+                public void visitInvokeDynamicInsn(String indyName, String indyDescriptor, Handle bootstrap, Object... args) {
+                    if (!LAMBDA_METAFACTORY.equals(bootstrap.getOwner()) || args.length < 2 || !(args[1] instanceof Handle impl)) {
+                        pending = null;
+                        return;
+                    }
+                    MethodRef ref = new MethodRef(impl.getOwner(), impl.getName(), impl.getDesc());
+                    method.lambdas.add(ref);
+                    pending = new Root(null, ref, null);
+                    pendingConstructed = true;
+                }
+
+                @Override
+                public void visitMethodInsn(int opcode, String owner, String callName, String callDescriptor, boolean isInterface) {
+                    method.calls.add(new Call(owner, callName, callDescriptor, line));
+                    if (pending == null) return;
+                    Root candidate = pending;
+                    pending = null;
+                    if (!pendingConstructed) {
+                        if (callName.equals("<init>") && owner.equals(candidate.instanceClass())) {
+                            pending = candidate;
+                            pendingConstructed = true;
+                        }
+                        return;
+                    }
+                    if (candidate.lambda() != null && runsOffThread(owner, callName)) {
+                        method.lambdas.remove(candidate.lambda());
+                        return;
+                    }
+                    String label = registrationLabel(owner, callName);
+                    if (label != null) {
+                        roots.add(new Root(label, candidate.lambda(), candidate.instanceClass()));
+                    }
+                }
+            };
+        }
+    }
+
+    private static boolean runsOffThread(String owner, String name) {
+        Set<String> methods = OFF_THREAD.get(owner);
+        return methods != null && methods.contains(sourceName(name));
+    }
+
+    private static String registrationLabel(String owner, String name) {
+        Map<String, String> methods = REGISTRATIONS.get(owner);
+        if (methods == null) return null;
+        for (Map.Entry<String, String> e : methods.entrySet()) {
+            if (name.startsWith(e.getKey())) return e.getValue() + name;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,266 @@
+package kr.codename.focuscript.core.compiler;
+
+import org.jetbrains.org.objectweb.asm.AnnotationVisitor;
+import org.jetbrains.org.objectweb.asm.ClassReader;
+import org.jetbrains.org.objectweb.asm.ClassVisitor;
+import org.jetbrains.org.objectweb.asm.FieldVisitor;
+import org.jetbrains.org.objectweb.asm.MethodVisitor;
+import org.jetbrains.org.objectweb.asm.Opcodes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the parts of a compiled class that matter for incremental builds.
+ *
+ * <p>Uses the ASM copy shaded into kotlin-compiler-embeddable, so no extra runtime dependency.</p>
+ *
+ * <ul>
+ *   <li><b>ABI</b>: class header, the {@code kotlin.Metadata} annotation, public/protected members
+ *       (including synthetic {@code $default} and accessor stubs that callers link against), their
+ *       nullability annotations and compile-time constant values. Private members and method bodies
+ *       are excluded, so editing a function body does not change the ABI.</li>
+ *   <li><b>References</b>: classes of the module's own package mentioned anywhere in the constant pool
+ *       (owners, descriptors, method types) or in the SMAP of inlined code. Used to find which
+ *       generated files depend on which.</li>
+ * </ul>
+ *
+ * <p>Uses of {@code const val} leave no trace in the caller's bytecode, so classes that declare
+ * constants are flagged instead ({@link Info#declaresConstants()}). Likewise a call that a new
+ * overload elsewhere in the package would capture has no reference to it yet, so the top-level
+ * declarations a class adds to the package scope are listed as well ({@link Info#topLevel()}).</p>
+ */
+final class ClassFileAbi {
+
+    private static final int ASM_API = Opcodes.ASM9;
+
+    private static final int TAG_CLASS = 7;
+    private static final int TAG_NAME_AND_TYPE = 12;
+    private static final int TAG_METHOD_TYPE = 16;
+
+    private static final String KOTLIN_METADATA_DESC = "Lkotlin/Metadata;";
+    private static final String SOURCE_DEBUG_DESC = "Lkotlin/jvm/internal/SourceDebugExtension;";
+
+    /** {@code kotlin.Metadata.k} of a file facade ({@code FooKt}), which holds top-level functions and properties. */
+    private static final int KIND_FILE_FACADE = 2;
+
+    private ClassFileAbi() {}
+
+    /**
+     * @param className    internal name (e.g. {@code kr/codename/focuscript/modules/x/FooKt})
+     * @param sourceFile   value of the SourceFile attribute (generated .kt file name), or null
+     * @param abi          ABI lines in declaration order; empty for non-public classes
+     * @param references   internal names in {@code packageInternal} referenced by this class
+     * @param declaresConstants whether the class has public compile-time constants
+     * @param topLevel     top-level declarations this class puts in the package scope: the members of a
+     *                     file facade (name and descriptor, so overloads count), or the class name itself
+     */
+    record Info(
+            String className,
+            String sourceFile,
+            List<String> abi,
+            Set<String> references,
+            boolean declaresConstants,
+            Set<String> topLevel
+    ) {}
+
+    static Info read(byte[] classBytes, String packageInternal) {
+        ClassReader reader = new ClassReader(classBytes);
+        Pattern ownPackageRef = Pattern.compile(Pattern.quote(packageInternal + "/") + "[A-Za-z0-9_$]+");
+
+        Set<String> refs = new LinkedHashSet<>();
+        collectConstantPoolReferences(reader, ownPackageRef, refs);
+
+        AbiVisitor visitor = new AbiVisitor(ownPackageRef, refs);
+        reader.accept(visitor, ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
+
+        refs.remove(visitor.className);
+        Set<String> topLevel = new LinkedHashSet<>();
+        if (visitor.publicClass) {
+            String simpleName = visitor.className.substring(visitor.className.lastIndexOf('/') + 1);
+            if (visitor.fileFacade) {
+                topLevel.addAll(visitor.facadeMembers);
+            } else if (simpleName.indexOf('$') < 0) {
+                topLevel.add("class " + simpleName);
+            }
+        }
+        return new Info(
+                visitor.className,
+                visitor.sourceFile,
+                visitor.publicClass ? visitor.abi : List.of(),
+                refs,
+                visitor.publicClass && visitor.constants,
+                topLevel
+        );
+    }
+
+    private static void collectConstantPoolReferences(ClassReader reader, Pattern ownPackageRef, Set<String> out) {
+        char[] buf = new char[reader.getMaxStringLength()];
+        int count = reader.getItemCount();
+        for (int i = 1; i < count; i++) {
+            int offset = reader.getItem(i);
+            if (offset == 0) continue; // second slot of long/double
+            int tag = reader.readByte(offset - 1);
+            String text = switch (tag) {
+                case TAG_CLASS, TAG_METHOD_TYPE -> reader.readUTF8(offset, buf);
+                case TAG_NAME_AND_TYPE -> reader.readUTF8(offset + 2, buf);
+                default -> null;
+            };
+            addMatches(text, ownPackageRef, out);
+        }
+    }
+
+    private static void addMatches(String text, Pattern ownPackageRef, Set<String> out) {
+        if (text == null) return;
+        Matcher m = ownPackageRef.matcher(text);
+        while (m.find()) {
+            out.add(m.group());
+        }
+    }
+
+    private static boolean isAbiVisible(int access) {
+        // Synthetic members stay in: removing a default argument only drops the `$default` stub.
+        return (access & (Opcodes.ACC_PUBLIC | Opcodes.ACC_PROTECTED)) != 0;
+    }
+
+    private static String valueText(Object value) {
+        if (value instanceof int[] ints) return Arrays.toString(ints);
+        return String.valueOf(value);
+    }
+
+    private static final class AbiVisitor extends ClassVisitor {
+        private final Pattern ownPackageRef;
+        private final Set<String> refs;
+        private final List<String> abi = new ArrayList<>();
+        private final Set<String> facadeMembers = new LinkedHashSet<>();
+
+        private String className;
+        private String sourceFile;
+        private boolean publicClass;
+        private boolean constants;
+        private boolean fileFacade;
+
+        private AbiVisitor(Pattern ownPackageRef, Set<String> refs) {
+            super(ASM_API);
+            this.ownPackageRef = ownPackageRef;
+            this.refs = refs;
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            this.className = name;
+            this.publicClass = (access & Opcodes.ACC_PUBLIC) != 0;
+            abi.add("class " + access + " " + name + " " + signature + " " + superName + " " + String.join(",", interfaces == null ? new String[0] : interfaces));
+            addMatches(signature, ownPackageRef, refs);
+        }
+
+        @Override
+        public void visitSource(String source, String debug) {
+            this.sourceFile = source;
+            // SMAP: names the classes whose inline functions were copied into this one.
+            addMatches(debug, ownPackageRef, refs);
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            // The SMAP copy appears once a body inlines anything; it is debug info, not ABI.
+            if (SOURCE_DEBUG_DESC.equals(descriptor)) return null;
+            if (!KOTLIN_METADATA_DESC.equals(descriptor)) {
+                abi.add("annotation " + descriptor);
+                return null;
+            }
+            // Nullability of type arguments, operator/infix and similar modifiers only exist in the
+            // metadata. It also describes private declarations, so those changes count too; reading
+            // the public part alone would need kotlin-metadata-jvm.
+            StringBuilder line = new StringBuilder("metadata");
+            abi.add("");
+            int index = abi.size() - 1;
+            return new AnnotationVisitor(ASM_API) {
+                @Override
+                public void visit(String name, Object value) {
+                    if ("k".equals(name)) fileFacade = Integer.valueOf(KIND_FILE_FACADE).equals(value);
+                    line.append(' ').append(name).append('=').append(valueText(value));
+                }
+
+                @Override
+                public AnnotationVisitor visitArray(String name) {
+                    line.append(' ').append(name).append("=[");
+                    return new AnnotationVisitor(ASM_API) {
+                        @Override
+                        public void visit(String ignored, Object value) {
+                            line.append(valueText(value)).append(',');
+                        }
+
+                        @Override
+                        public void visitEnd() {
+                            line.append(']');
+                        }
+                    };
+                }
+
+                @Override
+                public void visitEnd() {
+                    abi.set(index, line.toString());
+                }
+            };
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+            addMatches(descriptor, ownPackageRef, refs);
+            addMatches(signature, ownPackageRef, refs);
+            if (!isAbiVisible(access)) return null;
+
+            // Constant values are inlined into callers, so they are part of the ABI.
+            if (value != null && (access & Opcodes.ACC_STATIC) != 0) constants = true;
+            addFacadeMember(access, name, descriptor, signature);
+            String line = "field " + access + " " + name + " " + descriptor + " " + signature + " " + value;
+            abi.add(line);
+            int index = abi.size() - 1;
+            return new FieldVisitor(ASM_API) {
+                @Override
+                public AnnotationVisitor visitAnnotation(String annotationDescriptor, boolean visible) {
+                    abi.set(index, abi.get(index) + " @" + annotationDescriptor);
+                    return null;
+                }
+            };
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            addMatches(descriptor, ownPackageRef, refs);
+            addMatches(signature, ownPackageRef, refs);
+            if (!isAbiVisible(access)) return null;
+
+            addFacadeMember(access, name, descriptor, signature);
+            String line = "method " + access + " " + name + descriptor + " " + signature
+                    + (exceptions == null ? "" : " throws " + String.join(",", exceptions));
+            abi.add(line);
+            int index = abi.size() - 1;
+            return new MethodVisitor(ASM_API) {
+                @Override
+                public AnnotationVisitor visitAnnotation(String annotationDescriptor, boolean visible) {
+                    abi.set(index, abi.get(index) + " @" + annotationDescriptor);
+                    return null;
+                }
+
+                @Override
+                public AnnotationVisitor visitParameterAnnotation(int parameter, String annotationDescriptor, boolean visible) {
+                    abi.set(index, abi.get(index) + " @" + parameter + ":" + annotationDescriptor);
+                    return null;
+                }
+            };
+        }
+
+        private void addFacadeMember(int access, String name, String descriptor, String signature) {
+            // Metadata is visited before members, so fileFacade is already known here.
+            if (!fileFacade || (access & (Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC)) != Opcodes.ACC_STATIC) return;
+            facadeMembers.add(name + descriptor + " " + signature);
+        }
+    }
+}
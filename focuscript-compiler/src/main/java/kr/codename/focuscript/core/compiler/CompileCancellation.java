@@ -0,0 +1,82 @@
+package kr.codename.focuscript.core.compiler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Cancellation flag of one compile, handed down from {@link CompileJobs} to the {@link CompilerBackend}.
+ *
+ * <p>The build checks it between phases; kotlinc polls it while running (in process) or is told over the
+ * worker protocol. Work is always done in a private directory, so a cancelled compile leaves no
+ * half-published state behind.</p>
+ *
+ * <p>Implements {@link BooleanSupplier} so it can cross into the isolated compiler loader as a JDK type.</p>
+ */
+public final class CompileCancellation implements BooleanSupplier {
+
+    private volatile boolean cancelled;
+    private final List<Runnable> listeners = new ArrayList<>();
+
+    /**
+     * A token that is only cancelled if someone calls {@link #cancel()} on it; for callers outside
+     * {@link CompileJobs}.
+     */
+    public static CompileCancellation none() {
+        return new CompileCancellation();
+    }
+
+    /**
+     * Cancels and runs the registered listeners (on the calling thread). Later calls do nothing.
+     */
+    public void cancel() {
+        List<Runnable> toRun;
+        synchronized (this) {
+            if (cancelled) return;
+            cancelled = true;
+            toRun = List.copyOf(listeners);
+            listeners.clear();
+        }
+        for (Runnable listener : toRun) {
+            try {
+                listener.run();
+            } catch (RuntimeException ignored) {
+                // A listener only speeds up stopping; the compile still sees the flag.
+            }
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public boolean getAsBoolean() {
+        return cancelled;
+    }
+
+    public void throwIfCancelled() {
+        if (cancelled) throw new CancellationException("Compile cancelled");
+    }
+
+    /**
+     * Runs {@code listener} on cancellation, right away if already cancelled.
+     *
+     * @return removes the listener again
+     */
+    public Runnable onCancel(Runnable listener) {
+        synchronized (this) {
+            if (!cancelled) {
+                listeners.add(listener);
+                return () -> {
+                    synchronized (this) {
+                        listeners.remove(listener);
+                    }
+                };
+            }
+        }
+        listener.run();
+        return () -> {};
+    }
+}
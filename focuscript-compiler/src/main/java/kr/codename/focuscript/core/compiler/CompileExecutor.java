@@ -0,0 +1,129 @@
+package kr.codename.focuscript.core.compiler;
+
+import java.util.Comparator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dedicated, bounded pool for module compiles.
+ *
+ * <p>Compiles used to go through Bukkit's async scheduler, which grows without bound. A mass reload
+ * could then run one kotlinc per workspace at once and starve the main thread of CPU. This pool caps
+ * concurrency (by default one core is left for the server tick) and runs at a lower thread priority.</p>
+ *
+ * <p>Queued tasks are ordered, not first-come first-served: {@link Priority#INTERACTIVE} work (a
+ * single-module reload someone is waiting for) runs before {@link Priority#BULK} work, and bulk
+ * compiles run by ascending dependency depth, so modules others depend on are ready first. Ties keep
+ * submission order. Running tasks are never preempted.</p>
+ */
+public final class CompileExecutor implements Executor, AutoCloseable {
+
+    public enum Priority {
+        /** A reload a user is waiting for (command, Web IDE). */
+        INTERACTIVE,
+        /** Full reloads, exports, warm-up. */
+        BULK
+    }
+
+    private static final Comparator<Queued> ORDER = Comparator
+            .comparing(Queued::priority)
+            .thenComparingInt(Queued::depth)
+            .thenComparingLong(Queued::seq);
+
+    /** A queued task with its place in line. */
+    private record Queued(Runnable task, Priority priority, int depth, long seq) implements Runnable, Comparable<Queued> {
+        @Override
+        public void run() {
+            task.run();
+        }
+
+        @Override
+        public int compareTo(Queued other) {
+            return ORDER.compare(this, other);
+        }
+    }
+
+    private final ThreadPoolExecutor pool;
+    private final int threads;
+    private final AtomicLong seq = new AtomicLong();
+
+    public CompileExecutor(int configuredThreads) {
+        this(configuredThreads, "Focuscript-Compile");
+    }
+
+    CompileExecutor(int configuredThreads, String threadPrefix) {
+        this.threads = resolveThreads(configuredThreads);
+        this.pool = new ThreadPoolExecutor(
+                threads,
+                threads,
+                30L,
+                TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(),
+                new CompileThreadFactory(threadPrefix)
+        );
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * {@code <= 0} means auto: available cores minus one (for the main thread), at least one.
+     */
+    static int resolveThreads(int configured) {
+        if (configured > 0) return configured;
+        int cores = Runtime.getRuntime().availableProcessors();
+        return Math.max(1, cores - 1);
+    }
+
+    /**
+     * Runs {@code task} as {@link Priority#BULK} work at depth 0.
+     */
+    @Override
+    public void execute(Runnable task) {
+        execute(task, Priority.BULK, 0);
+    }
+
+    /**
+     * @param depth dependency depth of the module compiled by {@code task} (0 = depends on nothing);
+     *              orders work of the same priority
+     */
+    public void execute(Runnable task, Priority priority, int depth) {
+        pool.execute(new Queued(task, priority, Math.max(0, depth), seq.incrementAndGet()));
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getActiveCount() {
+        return pool.getActiveCount();
+    }
+
+    public int getQueuedCount() {
+        return pool.getQueue().size();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    private static final class CompileThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicLong seq = new AtomicLong();
+
+        private CompileThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, prefix + "-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        }
+    }
+}
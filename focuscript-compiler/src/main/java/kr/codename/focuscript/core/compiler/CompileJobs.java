@@ -0,0 +1,208 @@
+package kr.codename.focuscript.core.compiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * At most one compile job per module id.
+ *
+ * <p>Submitting for a module that already has a job does not queue another compile. The new request
+ * replaces the job's pending one, cancels the compile in flight if there is one, and the caller gets the
+ * same future as every earlier caller. When the running compile stops, the latest request runs and all
+ * waiters get its result; results of superseded compiles are dropped. Of five quick saves, only the last
+ * compiles to the end.</p>
+ *
+ * <p>Jobs are queued on the {@link CompileExecutor} with the priority of their most urgent request: an
+ * interactive reload joining a job that is still waiting behind bulk work moves it to the front.</p>
+ *
+ * <p>Futures complete on the compile thread. A job cancelled through {@link #cancel(String)} completes
+ * with a {@link CancellationException}.</p>
+ */
+public final class CompileJobs {
+
+    /** One compile request; should stop early (e.g. via {@link CompileCancellation#throwIfCancelled()}) once cancelled. */
+    @FunctionalInterface
+    public interface Task {
+        ModuleArtifact compile(CompileCancellation cancellation) throws Exception;
+    }
+
+    /**
+     * Counters since startup.
+     *
+     * @param coalesced  requests that joined an existing job instead of starting a compile
+     * @param superseded running compiles cancelled because a newer request came in
+     */
+    public record Stats(int active, long submitted, long coalesced, long superseded, long cancelled) {}
+
+    private static final class Job {
+        private final String moduleId;
+        private final CompletableFuture<ModuleArtifact> future = new CompletableFuture<>();
+        private Task pending;
+        private CompileCancellation running;
+        /** Priority the job is queued at; null while running or done. */
+        private CompileExecutor.Priority queuedAt;
+
+        private Job(String moduleId) {
+            this.moduleId = moduleId;
+        }
+    }
+
+    private final CompileExecutor executor;
+
+    // Guarded by this.
+    private final Map<String, Job> jobs = new HashMap<>();
+    private long submitted;
+    private long coalesced;
+    private long superseded;
+    private long cancelled;
+
+    public CompileJobs(CompileExecutor executor) {
+        this.executor = Objects.requireNonNull(executor, "executor");
+    }
+
+    /**
+     * Requests a compile of {@code moduleId}, replacing any request that has not started yet and
+     * cancelling one that has.
+     *
+     * @param depth dependency depth of the module, see {@link CompileExecutor#execute(Runnable, CompileExecutor.Priority, int)}
+     * @return the job's future, shared with every other caller until it completes
+     */
+    public CompletableFuture<ModuleArtifact> submit(String moduleId, CompileExecutor.Priority priority, int depth, Task task) {
+        Objects.requireNonNull(moduleId, "moduleId");
+        Objects.requireNonNull(priority, "priority");
+        Objects.requireNonNull(task, "task");
+
+        Job job;
+        boolean enqueue;
+        CompileCancellation toCancel = null;
+        synchronized (this) {
+            submitted++;
+            job = jobs.get(moduleId);
+            if (job == null) {
+                job = new Job(moduleId);
+                jobs.put(moduleId, job);
+                enqueue = true;
+            } else {
+                coalesced++;
+                if (job.running != null && !job.running.isCancelled()) {
+                    toCancel = job.running;
+                    superseded++;
+                }
+                // Still waiting in the queue behind less urgent work: queue it again at this priority.
+                // Whichever copy runs first takes the job; the other finds nothing to do.
+                enqueue = job.running == null && job.queuedAt != null && priority.compareTo(job.queuedAt) < 0;
+            }
+            job.pending = task;
+            if (enqueue) job.queuedAt = priority;
+        }
+
+        if (toCancel != null) toCancel.cancel();
+        if (enqueue) {
+            Job queued = job;
+            executor.execute(() -> run(queued), priority, depth);
+        }
+        return job.future;
+    }
+
+    /**
+     * Drops the pending request of {@code moduleId} and cancels its running compile. Waiters get a
+     * {@link CancellationException} once the compile has stopped.
+     *
+     * @return true if there was a job
+     */
+    public boolean cancel(String moduleId) {
+        Job job;
+        CompileCancellation toCancel;
+        synchronized (this) {
+            job = jobs.get(moduleId);
+            if (job == null) return false;
+            cancelled++;
+            job.pending = null;
+            toCancel = job.running;
+            if (toCancel == null) {
+                // Not started: the queued run finds nothing to do.
+                jobs.remove(moduleId);
+            }
+        }
+
+        if (toCancel != null) {
+            toCancel.cancel();
+        } else {
+            job.future.completeExceptionally(new CancellationException("Compile of " + moduleId + " cancelled"));
+        }
+        return true;
+    }
+
+    /**
+     * {@link #cancel(String)} for every job, e.g. when a full reload makes them all obsolete.
+     *
+     * @return the number of jobs cancelled
+     */
+    public int cancelAll() {
+        List<String> ids;
+        synchronized (this) {
+            ids = new ArrayList<>(jobs.keySet());
+        }
+        int n = 0;
+        for (String id : ids) {
+            if (cancel(id)) n++;
+        }
+        return n;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(jobs.size(), submitted, coalesced, superseded, cancelled);
+    }
+
+    private void run(Job job) {
+        Task task;
+        CompileCancellation token;
+        synchronized (this) {
+            task = job.pending;
+            // Cancelled before it started, or already taken by another queued copy.
+            if (task == null || job.running != null) return;
+            job.pending = null;
+            job.queuedAt = null;
+            token = new CompileCancellation();
+            job.running = token;
+        }
+
+        ModuleArtifact result;
+        Throwable error;
+        while (true) {
+            try {
+                result = task.compile(token);
+                error = null;
+            } catch (Throwable t) {
+                result = null;
+                error = t;
+            }
+
+            synchronized (this) {
+                job.running = null;
+                if (job.pending == null) {
+                    jobs.remove(job.moduleId, job);
+                    break;
+                }
+                // Superseded while running: the result is stale, compile the latest request instead.
+                task = job.pending;
+                job.pending = null;
+                token = new CompileCancellation();
+                job.running = token;
+            }
+        }
+
+        if (token.isCancelled()) {
+            job.future.completeExceptionally(new CancellationException("Compile of " + job.moduleId + " cancelled"));
+        } else if (error != null) {
+            job.future.completeExceptionally(error);
+        } else {
+            job.future.complete(result);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package kr.codename.focuscript.core.compiler;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Per-phase timings of {@link FsCompiler#compileIfNeeded} runs, kept as a rolling history per module.
+ *
+ * <p>Every compile (cache hit, shared hit, build, failure or cancellation) adds one {@link Sample}; each
+ * module keeps its last {@link #HISTORY} samples. Only memory, nothing is written to disk, so the history
+ * starts over with the server.</p>
+ */
+public final class CompileMetrics {
+
+    /** Samples kept per module. */
+    public static final int HISTORY = 32;
+
+    /** {@code SHARED}: taken from the {@link ArtifactStore}, built earlier under another cache key. */
+    public enum Outcome { HIT, SHARED, COMPILED, FAILED, CANCELLED }
+
+    /**
+     * One compile. Phases that did not run are 0.
+     *
+     * @param at            end of the compile (epoch ms)
+     * @param sources       .fs files in the workspace
+     * @param sourceBytes   their total size
+     * @param rehashed      sources whose content had to be hashed (fingerprint miss)
+     * @param hashMs        collecting sources and computing the cache key
+     * @param preprocessMs  include expansion and Kotlin source generation
+     * @param writeMs       writing the generated sources
+     * @param compileMs     incremental build, including {@code kotlincMs}
+     * @param kotlincMs     time spent inside kotlinc
+     * @param packageMs     writing and publishing the jar (0 for in-memory compiles: written in the background)
+     * @param units         generated Kotlin files
+     * @param compiledUnits of those, how many kotlinc compiled
+     * @param fullBuild     whether the incremental state was rebuilt from scratch
+     * @param classBytes    uncompressed size of the compiled output
+     * @param jarBytes      size of the cached jar, or -1 if not on disk yet
+     */
+    public record Sample(
+            long at,
+            Outcome outcome,
+            int sources,
+            long sourceBytes,
+            int rehashed,
+            long hashMs,
+            long preprocessMs,
+            long writeMs,
+            long compileMs,
+            long kotlincMs,
+            long packageMs,
+            int units,
+            int compiledUnits,
+            boolean fullBuild,
+            long classBytes,
+            long jarBytes,
+            long totalMs
+    ) {
+        /** One line for logs and {@code /fs timings}. */
+        public String summary() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(outcome.name().toLowerCase(java.util.Locale.ROOT)).append(' ').append(totalMs).append(" ms")
+                    .append(" | ").append(sources).append(" src, ").append(sourceBytes / 1024L).append(" KB")
+                    .append(" | hash ").append(hashMs);
+            if (outcome != Outcome.HIT && outcome != Outcome.SHARED) {
+                sb.append(", preprocess ").append(preprocessMs)
+                        .append(", write ").append(writeMs)
+                        .append(", kotlinc ").append(kotlincMs);
+                if (compileMs > kotlincMs) sb.append(" (+").append(compileMs - kotlincMs).append(" incremental)");
+                sb.append(", package ").append(packageMs);
+                if (units > 0) {
+                    sb.append(" | ").append(fullBuild ? "full " : "").append(compiledUnits).append('/').append(units).append(" unit(s)");
+                }
+            }
+            if (jarBytes >= 0) sb.append(" | jar ").append(jarBytes / 1024L).append(" KB");
+            return sb.toString();
+        }
+    }
+
+    /** Collects one compile's numbers as it runs; {@link #lap()} times consecutive phases. */
+    static final class Recorder {
+        private final long startNanos = System.nanoTime();
+        private long lapNanos = startNanos;
+
+        Outcome outcome = Outcome.FAILED;
+        int sources;
+        long sourceBytes;
+        int rehashed;
+        long hashMs;
+        long preprocessMs;
+        long writeMs;
+        long compileMs;
+        long kotlincMs;
+        long packageMs;
+        int units;
+        int compiledUnits;
+        boolean fullBuild;
+        long classBytes;
+        long jarBytes = -1L;
+
+        /** Milliseconds since the previous lap (or the start). */
+        long lap() {
+            long now = System.nanoTime();
+            long ms = (now - lapNanos) / 1_000_000L;
+            lapNanos = now;
+            return ms;
+        }
+
+        Sample finish() {
+            return new Sample(System.currentTimeMillis(), outcome, sources, sourceBytes, rehashed, hashMs, preprocessMs,
+                    writeMs, compileMs, kotlincMs, packageMs, units, compiledUnits, fullBuild, classBytes, jarBytes,
+                    (System.nanoTime() - startNanos) / 1_000_000L);
+        }
+    }
+
+    private final Map<String, Deque<Sample>> history = new TreeMap<>();
+
+    synchronized void record(String moduleId, Sample sample) {
+        Deque<Sample> samples = history.computeIfAbsent(moduleId, k -> new ArrayDeque<>(HISTORY));
+        if (samples.size() == HISTORY) samples.removeFirst();
+        samples.addLast(sample);
+    }
+
+    /** Samples of {@code moduleId}, oldest first; empty if it was never compiled. */
+    public synchronized List<Sample> history(String moduleId) {
+        Deque<Sample> samples = history.get(moduleId);
+        return samples == null ? List.of() : List.copyOf(samples);
+    }
+
+    /** Every module's history, by module id. */
+    public synchronized Map<String, List<Sample>> snapshot() {
+        Map<String, List<Sample>> out = new TreeMap<>();
+        history.forEach((id, samples) -> out.put(id, List.copyOf(samples)));
+        return out;
+    }
+
+    /** Mean total time of the builds (not cache hits) in {@code samples}, or -1 if there are none. */
+    public static long meanBuildMs(List<Sample> samples) {
+        long sum = 0L;
+        int n = 0;
+        for (Sample s : samples) {
+            if (s.outcome() != Outcome.COMPILED) continue;
+            sum += s.totalMs();
+            n++;
+        }
+        return n == 0 ? -1L : sum / n;
+    }
+}
@@ -0,0 +1,101 @@
+package kr.codename.focuscript.core.compiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Entry point of a compile worker JVM started by {@link CompileWorkerPool}.
+ *
+ * <p>Runs with only the plugin jar and the Kotlin compiler libraries on its classpath; no server
+ * classes are available here. Exits when stdin is closed.</p>
+ *
+ * <p>stdin is read on its own thread so a cancel frame reaches the compile that is running.</p>
+ */
+public final class CompileWorkerMain {
+
+    private record Job(int id, CompileWorkerProtocol.Request request) {}
+
+    private static final Job END = new Job(-1, null);
+
+    private CompileWorkerMain() {}
+
+    public static void main(String[] args) throws IOException {
+        // Keep the compiler environment alive between requests, like the in-process session.
+        System.setProperty("kotlin.environment.keepalive", "true");
+
+        // stdout carries the protocol; anything else printed goes to the worker log (stderr).
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+        System.setOut(System.err);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+
+        KotlinCompilerInvoker invoker = new KotlinCompilerInvoker();
+
+        out.writeInt(CompileWorkerProtocol.READY);
+        out.writeInt(CompileWorkerProtocol.VERSION);
+        out.flush();
+
+        BlockingQueue<Job> jobs = new LinkedBlockingQueue<>();
+        AtomicInteger cancelledId = new AtomicInteger(-1);
+        Thread reader = new Thread(() -> {
+            try {
+                while (true) {
+                    byte tag = in.readByte();
+                    int id = in.readInt();
+                    if (tag == CompileWorkerProtocol.REQUEST) {
+                        jobs.add(new Job(id, CompileWorkerProtocol.readRequest(in)));
+                    } else if (tag == CompileWorkerProtocol.CANCEL) {
+                        cancelledId.set(id);
+                    } else {
+                        throw new IOException("Unknown frame tag: " + tag);
+                    }
+                }
+            } catch (IOException e) {
+                // EOF: pool closed our stdin. Anything else: the stream is out of sync. Retire either way.
+            } finally {
+                jobs.add(END);
+            }
+        }, "Focuscript-CompileWorker-Reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        while (true) {
+            Job job;
+            try {
+                job = jobs.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (job == END) return;
+
+            CompileWorkerProtocol.Request request = job.request();
+            BooleanSupplier cancelled = () -> cancelledId.get() == job.id();
+            KotlinCompilerInvoker.CompileResult result = request.analyzeOnly()
+                    ? invoker.analyzeJvm(
+                            request.sources(),
+                            request.classpath(),
+                            request.moduleName(),
+                            request.jvmTarget(),
+                            cancelled
+                    )
+                    : invoker.compileJvmJar(
+                            request.sources(),
+                            request.classpath(),
+                            request.outDir(),
+                            request.moduleName(),
+                            request.jvmTarget(),
+                            request.friendPaths(),
+                            cancelled
+                    );
+            CompileWorkerProtocol.writeResult(out, result);
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package kr.codename.focuscript.core.compiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * {@link CompilerBackend} that runs kotlinc in a small pool of local worker JVMs.
+ *
+ * <p>Each worker is a {@link CompileWorkerMain} process with its own heap cap, talking
+ * {@link CompileWorkerProtocol} over stdin/stdout. A worker handles one compile at a time, keeps a warm
+ * compiler session between compiles, and is recycled after
+ * {@link Settings#maxCompilesPerWorker()} compiles so compiler heap/metaspace growth is thrown away
+ * with the process.</p>
+ *
+ * <p>Workers start lazily. Each pool slot uses its own CDS archive
+ * ({@code _build/_workers/worker-<slot>.jsa}, created on the first clean exit), so recycled workers
+ * start with the compiler's classes already mapped.</p>
+ *
+ * <p>Analysis-only requests ({@link #analyze}) run on the same workers and their warm sessions.</p>
+ *
+ * <p>A worker that dies or times out is replaced and the compile retried once; if the replacement fails
+ * too, the compile fails. Only when no worker JVM can be started at all does the compile fall back to the
+ * in-process compiler, so modules still load; a compile that crashed or hung a worker never runs inside the
+ * server. A cancelled compile is stopped inside the worker, which stays warm for the next request.</p>
+ */
+public final class CompileWorkerPool implements CompilerBackend {
+
+    /**
+     * @param workers              max worker JVMs (= max parallel compiles through the pool)
+     * @param maxCompilesPerWorker recycle a worker after this many compiles; {@code <= 0} never
+     * @param maxHeapMb            {@code -Xmx} of each worker
+     * @param timeoutSeconds       a compile taking longer kills its worker; {@code <= 0} disables
+     * @param cds                  use a per-slot CDS archive
+     */
+    public record Settings(int workers, int maxCompilesPerWorker, int maxHeapMb, int timeoutSeconds, boolean cds) {}
+
+    /** Counters since startup. */
+    public record Stats(int workers, int running, long compiles, long started, long recycled, long failures, long fallbacks) {}
+
+    private static final long STOP_WAIT_MS = 5_000L;
+    private static final long SLOT_POLL_MS = 250L;
+
+    private final Path workDir;
+    private final Settings settings;
+    private final CompilerLog log;
+
+    private final Worker[] slots;
+    private final LinkedBlockingQueue<Integer> freeSlots = new LinkedBlockingQueue<>();
+    private final CompilerBackend fallback;
+
+    private final AtomicLong compiles = new AtomicLong();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong recycled = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    private volatile boolean closed;
+
+    /**
+     * @param fallback in-process compiler used only while no worker JVM can be started; closed with the pool
+     */
+    public CompileWorkerPool(Path workDir, Settings settings, CompilerBackend fallback, CompilerLog log) {
+        this.workDir = Objects.requireNonNull(workDir, "workDir");
+        this.settings = Objects.requireNonNull(settings, "settings");
+        this.fallback = Objects.requireNonNull(fallback, "fallback");
+        this.log = Objects.requireNonNull(log, "log");
+
+        int n = Math.max(1, settings.workers());
+        this.slots = new Worker[n];
+        for (int i = 0; i < n; i++) {
+            freeSlots.add(i);
+        }
+    }
+
+    public Settings getSettings() {
+        return settings;
+    }
+
+    @Override
+    public KotlinCompilerInvoker.CompileResult compile(
+            List<Path> sources,
+            String classpath,
+            Path outDir,
+            String moduleName,
+            String jvmTarget,
+            List<Path> friendPaths,
+            CompileCancellation cancellation
+    ) {
+        CompileWorkerProtocol.Request request = new CompileWorkerProtocol.Request(
+                List.copyOf(sources),
+                classpath,
+                outDir,
+                moduleName,
+                jvmTarget,
+                friendPaths == null ? List.of() : List.copyOf(friendPaths)
+        );
+        return run(request, cancellation,
+                () -> fallback.compile(sources, classpath, outDir, moduleName, jvmTarget, friendPaths, cancellation));
+    }
+
+    @Override
+    public KotlinCompilerInvoker.CompileResult analyze(
+            List<Path> sources,
+            String classpath,
+            String moduleName,
+            String jvmTarget,
+            CompileCancellation cancellation
+    ) {
+        CompileWorkerProtocol.Request request = new CompileWorkerProtocol.Request(
+                List.copyOf(sources),
+                classpath,
+                null,
+                moduleName,
+                jvmTarget,
+                List.of()
+        );
+        return run(request, cancellation,
+                () -> fallback.analyze(sources, classpath, moduleName, jvmTarget, cancellation));
+    }
+
+    private KotlinCompilerInvoker.CompileResult run(
+            CompileWorkerProtocol.Request request,
+            CompileCancellation cancellation,
+            Supplier<KotlinCompilerInvoker.CompileResult> inProcess
+    ) {
+        Integer slot = null;
+        try {
+            while (slot == null) {
+                if (cancellation.isCancelled()) return cancelled();
+                if (closed) return shutDown();
+                slot = freeSlots.poll(SLOT_POLL_MS, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new KotlinCompilerInvoker.CompileResult(false, List.of("Interrupted while waiting for a compile worker"));
+        }
+
+        IOException lastFailure = null;
+        boolean ranOnWorker = false;
+        try {
+            for (int attempt = 1; attempt <= 2; attempt++) {
+                if (closed) return shutDown();
+                Worker worker = slots[slot];
+                try {
+                    if (worker == null || !worker.process.isAlive()) {
+                        worker = start(slot);
+                        slots[slot] = worker;
+                    }
+                    ranOnWorker = true;
+                    KotlinCompilerInvoker.CompileResult result = worker.compile(request, cancellation);
+                    compiles.incrementAndGet();
+
+                    if (settings.maxCompilesPerWorker() > 0 && worker.compiles >= settings.maxCompilesPerWorker()) {
+                        slots[slot] = null;
+                        recycled.incrementAndGet();
+                        worker.stop(false);
+                    }
+                    return result;
+                } catch (IOException e) {
+                    if (worker != null) worker.stop(true);
+                    slots[slot] = null;
+                    if (cancellation.isCancelled()) return cancelled();
+
+                    failures.incrementAndGet();
+                    lastFailure = e;
+                    log.warn("Compile worker " + slot + " failed (attempt " + attempt + "): " + e.getMessage()
+                            + " — see " + logFile(slot));
+                }
+            }
+        } finally {
+            freeSlots.add(slot);
+        }
+
+        if (closed) return shutDown();
+        if (ranOnWorker) {
+            // The compile crashed or hung a worker; running it inside the server would do the same there.
+            String reason = lastFailure instanceof TimedOutException
+                    ? "timed out after " + settings.timeoutSeconds() + " s"
+                    : "crashed its worker (" + (lastFailure == null ? "unknown error" : lastFailure.getMessage()) + ")";
+            return new KotlinCompilerInvoker.CompileResult(false, List.of(
+                    "Compile of " + request.moduleName() + " " + reason + "; see " + logFile(slot)));
+        }
+
+        fallbacks.incrementAndGet();
+        log.warn("Compile workers could not be started; compiling " + request.moduleName() + " in process.");
+        return inProcess.get();
+    }
+
+    private static KotlinCompilerInvoker.CompileResult shutDown() {
+        return new KotlinCompilerInvoker.CompileResult(false, List.of("Compile workers are shut down"));
+    }
+
+    /** The watchdog killed the worker because the compile exceeded {@link Settings#timeoutSeconds()}. */
+    private static final class TimedOutException extends IOException {
+        TimedOutException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private static KotlinCompilerInvoker.CompileResult cancelled() {
+        return new KotlinCompilerInvoker.CompileResult(false, List.of(KotlinCompilerInvoker.CANCELLED_MESSAGE));
+    }
+
+    public Stats stats() {
+        int running = 0;
+        for (Worker w : slots) {
+            if (w != null && w.process.isAlive()) running++;
+        }
+        return new Stats(slots.length, running, compiles.get(), started.get(), recycled.get(), failures.get(), fallbacks.get());
+    }
+
+    /**
+     * Stops all workers. Idle workers exit on their own once stdin closes (and write their CDS
+     * archive); a worker still compiling is killed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (int i = 0; i < slots.length; i++) {
+            Worker w = slots[i];
+            slots[i] = null;
+            if (w != null) w.stop(false);
+        }
+        fallback.close();
+    }
+
+    private Worker start(int slot) throws IOException {
+        Files.createDirectories(workDir);
+
+        List<String> cmd = new ArrayList<>();
+        cmd.add(javaExecutable());
+        cmd.add("-Xmx" + Math.max(128, settings.maxHeapMb()) + "m");
+        // Short-lived, single-threaded compiles: the serial collector has the smallest footprint.
+        cmd.add("-XX:+UseSerialGC");
+        cmd.add("-Dfile.encoding=UTF-8");
+        if (settings.cds()) {
+            cmd.add("-XX:+AutoCreateSharedArchive");
+            cmd.add("-XX:SharedArchiveFile=" + workDir.resolve("worker-" + slot + ".jsa"));
+        }
+        cmd.add("-cp");
+        cmd.add(CompilerClasspath.asString());
+        cmd.add(CompileWorkerMain.class.getName());
+
+        ProcessBuilder pb = new ProcessBuilder(cmd)
+                .directory(workDir.toFile())
+                .redirectError(ProcessBuilder.Redirect.appendTo(logFile(slot).toFile()));
+
+        Process process = pb.start();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+
+        Worker worker = new Worker(slot, process, in, out);
+        try {
+            int magic = in.readInt();
+            int version = in.readInt();
+            if (magic != CompileWorkerProtocol.READY || version != CompileWorkerProtocol.VERSION) {
+                throw new IOException("unexpected handshake " + Integer.toHexString(magic) + "/" + version);
+            }
+        } catch (IOException e) {
+            worker.stop(true);
+            throw new IOException("worker did not start: " + e.getMessage(), e);
+        }
+
+        started.incrementAndGet();
+        return worker;
+    }
+
+    private Path logFile(int slot) {
+        return workDir.resolve("worker-" + slot + ".log");
+    }
+
+    private static String javaExecutable() {
+        boolean windows = System.getProperty("os.name", "").toLowerCase().contains("win");
+        return Path.of(System.getProperty("java.home"), "bin", windows ? "java.exe" : "java").toString();
+    }
+
+    private final class Worker {
+        private final int slot;
+        private final Process process;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private int compiles;
+        private int nextRequestId;
+        private volatile boolean timedOut;
+
+        private Worker(int slot, Process process, DataInputStream in, DataOutputStream out) {
+            this.slot = slot;
+            this.process = process;
+            this.in = in;
+            this.out = out;
+        }
+
+        private KotlinCompilerInvoker.CompileResult compile(
+                CompileWorkerProtocol.Request request,
+                CompileCancellation cancellation
+        ) throws IOException {
+            int id = ++nextRequestId;
+            CompletableFuture<Void> watchdog = null;
+            if (settings.timeoutSeconds() > 0) {
+                // Killing the process unblocks the read below with an EOF.
+                watchdog = CompletableFuture.runAsync(
+                        () -> {
+                            if (process.isAlive()) {
+                                timedOut = true;
+                                log.warn("Compile worker " + slot + " timed out after " + settings.timeoutSeconds() + " s; killing it.");
+                                process.destroyForcibly();
+                            }
+                        },
+                        CompletableFuture.delayedExecutor(settings.timeoutSeconds(), TimeUnit.SECONDS)
+                );
+            }
+            Runnable unregister = cancellation.onCancel(() -> sendCancel(id));
+            try {
+                synchronized (out) {
+                    CompileWorkerProtocol.writeRequest(out, id, request);
+                }
+                KotlinCompilerInvoker.CompileResult result = CompileWorkerProtocol.readResult(in);
+                compiles++;
+                return result;
+            } catch (IOException e) {
+                if (timedOut) {
+                    throw new TimedOutException("timed out after " + settings.timeoutSeconds() + " s", e);
+                }
+                throw e;
+            } finally {
+                unregister.run();
+                if (watchdog != null) watchdog.cancel(false);
+            }
+        }
+
+        private void sendCancel(int id) {
+            try {
+                synchronized (out) {
+                    CompileWorkerProtocol.writeCancel(out, id);
+                }
+            } catch (IOException ignored) {
+                // Worker already gone; the pending read fails and the compile reports cancelled.
+            }
+        }
+
+        /**
+         * @param force kill right away instead of letting the worker exit on its own
+         */
+        private void stop(boolean force) {
+            try {
+                out.close();
+            } catch (IOException ignored) {
+            }
+            if (force) {
+                process.destroyForcibly();
+                return;
+            }
+            process.onExit()
+                    .orTimeout(STOP_WAIT_MS, TimeUnit.MILLISECONDS)
+                    .exceptionally(t -> {
+                        process.destroyForcibly();
+                        return null;
+                    });
+        }
+    }
+}
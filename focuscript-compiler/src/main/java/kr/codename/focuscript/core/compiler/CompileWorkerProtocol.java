@@ -0,0 +1,129 @@
+package kr.codename.focuscript.core.compiler;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Framing between {@link CompileWorkerPool} and {@link CompileWorkerMain} over the worker's
+ * stdin/stdout.
+ *
+ * <p>The worker writes {@link #READY} once started, then answers one {@link Request} at a time. Each
+ * frame to the worker starts with a tag and a request id; a {@link #CANCEL} frame for the running
+ * request makes it stop early and answer with a failed result. Strings are length-prefixed UTF-8 (classpaths can exceed {@code writeUTF}'s 64 KB limit). Output
+ * classes are written by the worker straight into the requested directory on the shared disk; only
+ * the result travels back over the pipe.</p>
+ */
+final class CompileWorkerProtocol {
+
+    static final int READY = 0x46534357; // "FSCW"
+    static final int VERSION = 4;
+
+    static final byte REQUEST = 1;
+    static final byte CANCEL = 2;
+
+    private CompileWorkerProtocol() {}
+
+    /**
+     * @param outDir null for an analysis-only request (frontend diagnostics, no output)
+     */
+    record Request(
+            List<Path> sources,
+            String classpath,
+            Path outDir,
+            String moduleName,
+            String jvmTarget,
+            List<Path> friendPaths
+    ) {
+        boolean analyzeOnly() {
+            return outDir == null;
+        }
+    }
+
+    static void writeRequest(DataOutputStream out, int id, Request request) throws IOException {
+        out.writeByte(REQUEST);
+        out.writeInt(id);
+        writePaths(out, request.sources());
+        writeString(out, request.classpath());
+        writeString(out, request.analyzeOnly() ? "" : request.outDir().toString());
+        writeString(out, request.moduleName());
+        writeString(out, request.jvmTarget());
+        writePaths(out, request.friendPaths());
+        out.flush();
+    }
+
+    static void writeCancel(DataOutputStream out, int id) throws IOException {
+        out.writeByte(CANCEL);
+        out.writeInt(id);
+        out.flush();
+    }
+
+    /**
+     * Reads the body of a {@link #REQUEST} frame (after its tag and id).
+     */
+    static Request readRequest(DataInputStream in) throws IOException {
+        List<Path> sources = readPaths(in);
+        String classpath = readString(in);
+        String out = readString(in);
+        Path outDir = out.isEmpty() ? null : Path.of(out);
+        String moduleName = readString(in);
+        String jvmTarget = readString(in);
+        List<Path> friendPaths = readPaths(in);
+        return new Request(sources, classpath, outDir, moduleName, jvmTarget, friendPaths);
+    }
+
+    static void writeResult(DataOutputStream out, KotlinCompilerInvoker.CompileResult result) throws IOException {
+        out.writeBoolean(result.success());
+        out.writeBoolean(result.coldStart());
+        out.writeInt(result.messages().size());
+        for (String message : result.messages()) {
+            writeString(out, message);
+        }
+        out.flush();
+    }
+
+    static KotlinCompilerInvoker.CompileResult readResult(DataInputStream in) throws IOException {
+        boolean success = in.readBoolean();
+        boolean coldStart = in.readBoolean();
+        int n = in.readInt();
+        List<String> messages = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            messages.add(readString(in));
+        }
+        return new KotlinCompilerInvoker.CompileResult(success, messages, coldStart);
+    }
+
+    private static void writePaths(DataOutputStream out, List<Path> paths) throws IOException {
+        out.writeInt(paths.size());
+        for (Path p : paths) {
+            writeString(out, p.toString());
+        }
+    }
+
+    private static List<Path> readPaths(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        List<Path> paths = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            paths.add(Path.of(readString(in)));
+        }
+        return paths;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n < 0) throw new IOException("Invalid string length: " + n);
+        byte[] bytes = in.readNBytes(n);
+        if (bytes.length != n) throw new java.io.EOFException();
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
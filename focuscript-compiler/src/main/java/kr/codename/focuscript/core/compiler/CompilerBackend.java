@@ -0,0 +1,51 @@
+package kr.codename.focuscript.core.compiler;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Where kotlinc actually runs.
+ *
+ * <ul>
+ *   <li>{@link KotlinCompilerInvoker}: directly in the calling JVM and classloader (standalone compiler).</li>
+ *   <li>{@link IsolatedCompilerBackend}: inside the server JVM, in a disposable classloader owned by
+ *       {@link FsCompiler} (default).</li>
+ *   <li>{@link CompileWorkerPool}: in separate worker JVMs, so compiler heap and metaspace never
+ *       touch the game server.</li>
+ * </ul>
+ *
+ * <p>Implementations must be thread-safe; compiles run on several {@link CompileExecutor} threads.</p>
+ */
+public interface CompilerBackend extends AutoCloseable {
+
+    /**
+     * Compiles {@code sources} into {@code outDir} (a directory or a {@code .jar}).
+     *
+     * @param friendPaths  classpath roots whose {@code internal} declarations are visible to the sources
+     * @param cancellation stop as soon as possible once cancelled; the result is then unsuccessful
+     */
+    KotlinCompilerInvoker.CompileResult compile(
+            List<Path> sources,
+            String classpath,
+            Path outDir,
+            String moduleName,
+            String jvmTarget,
+            List<Path> friendPaths,
+            CompileCancellation cancellation
+    );
+
+    /**
+     * Type-checks {@code sources} without generating code: only the compiler frontend runs, and the
+     * result carries its diagnostics.
+     */
+    KotlinCompilerInvoker.CompileResult analyze(
+            List<Path> sources,
+            String classpath,
+            String moduleName,
+            String jvmTarget,
+            CompileCancellation cancellation
+    );
+
+    @Override
+    default void close() {}
+}
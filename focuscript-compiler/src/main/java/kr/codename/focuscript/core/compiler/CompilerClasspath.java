@@ -0,0 +1,68 @@
+package kr.codename.focuscript.core.compiler;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Jars needed to run kotlinc outside the plugin classloader: the plugin jar (for
+ * {@link KotlinCompilerInvoker} / {@link CompileWorkerMain}) plus every jar of the loader that provides
+ * the Kotlin compiler (Paper's plugin.yml libraries loader). No server classes are included.
+ *
+ * <p>The compiler is found by resource lookups only. Referencing one of its classes here would load it,
+ * and everything it links, into the plugin loader for the server's lifetime, which is exactly what the
+ * isolated loaders built from this classpath exist to avoid.</p>
+ */
+final class CompilerClasspath {
+
+    private static final String COMPILER_RESOURCE = "org/jetbrains/kotlin/cli/jvm/K2JVMCompiler.class";
+
+    private static volatile List<Path> cached;
+
+    private CompilerClasspath() {}
+
+    static List<Path> locate() {
+        List<Path> cp = cached;
+        if (cp == null) {
+            cp = List.copyOf(scan());
+            cached = cp;
+        }
+        return cp;
+    }
+
+    static String asString() {
+        return locate().stream()
+                .map(Path::toString)
+                .collect(Collectors.joining(File.pathSeparator));
+    }
+
+    private static Set<Path> scan() {
+        Set<Path> cp = new LinkedHashSet<>();
+        addIfPresent(cp, JarUtil.locationOf(CompilerClasspath.class));
+
+        // The stdlib comes from the same libraries loader as the compiler and is loaded by the plugin anyway.
+        ClassLoader librariesLoader = kotlin.Unit.class.getClassLoader();
+        if (librariesLoader instanceof URLClassLoader urls && urls.findResource(COMPILER_RESOURCE) != null) {
+            for (URL url : urls.getURLs()) {
+                if (!"file".equalsIgnoreCase(url.getProtocol())) continue;
+                try {
+                    addIfPresent(cp, Path.of(url.toURI()));
+                } catch (Exception ignored) {
+                }
+            }
+        }
+        ClassLoader own = CompilerClasspath.class.getClassLoader();
+        addIfPresent(cp, JarUtil.locationOf(own.getResource(COMPILER_RESOURCE), COMPILER_RESOURCE));
+        addIfPresent(cp, JarUtil.locationOf(kotlin.Unit.class));
+        return cp;
+    }
+
+    private static void addIfPresent(Set<Path> cp, Path path) {
+        if (path != null) cp.add(path);
+    }
+}
@@ -0,0 +1,16 @@
+package kr.codename.focuscript.core.compiler;
+
+/**
+ * Where the compiler reports progress and problems: the plugin's logger on a server, the console in the
+ * standalone compiler.
+ */
+public interface CompilerLog {
+
+    void info(String message);
+
+    void warn(String message);
+
+    void error(String message);
+
+    void error(String message, Throwable throwable);
+}
@@ -0,0 +1,828 @@
+package kr.codename.focuscript.core.compiler;
+
+import kr.codename.focuscript.api.FsApi;
+import kr.codename.focuscript.core.workspace.ScriptManifest;
+import kr.codename.focuscript.core.workspace.Workspace;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * .fs -> Kotlin source -> compile to module.jar (bytecode) with caching.
+ *
+ * <p>Compiled jars live in {@code _build/<id>/cache/<key>.jar} and are never rewritten once published,
+ * so modules load straight from the cache entry.</p>
+ */
+public final class FsCompiler {
+
+    /**
+     * IMPORTANT:
+     * Must match plugin.yml libraries version.
+     */
+    public static final String KOTLIN_COMPILER_VERSION = "2.2.20";
+
+    private static final String MODULE_PACKAGE_BASE = "kr.codename.focuscript.modules";
+    private static final String ENTRY_UNIT = "__FocuscriptEntry.kt";
+    /** {@code [SEVERITY] path:line:column: } as written by {@link KotlinCompilerInvoker}. */
+    private static final Pattern MESSAGE_LOCATION = Pattern.compile("^(\\[[A-Z_]+] )(.+?):(\\d+):(\\d+): ");
+    private static final Pattern DIAGNOSTIC = Pattern.compile("^\\[([A-Z_]+)] (?:(.+?):(\\d+):(\\d+): )?");
+
+    private final String pluginVersion;
+    private final Path apiJarPath;
+    private final Path runtimeJarPath;
+    private final Path buildRoot;
+    private final KotlinCompilerService kotlin;
+    private final IncrementalCompiler incremental;
+    private final JarCache jarCache;
+    private final CompileExecutor cacheWriter;
+    private final CompileMetrics metrics = new CompileMetrics();
+    private final ArtifactStore store;
+    private final BlockingCallLint.Mode blockingCalls;
+    private final CompilerLog log;
+
+    /** The disposable in-process compiler; null when the caller supplied the backend. */
+    private final IsolatedCompilerBackend isolated;
+
+    /**
+     * Compiles with {@code backend}, which is closed with this compiler. For the standalone compiler, which
+     * runs kotlinc directly.
+     *
+     * @param pluginVersion version of the Focuscript plugin the output is for; part of every cache key, so the
+     *                      standalone compiler must pass the version of the plugin that will load its cache
+     * @param blockingCalls what to do with blocking calls found in handlers ({@link BlockingCallLint})
+     */
+    public FsCompiler(String pluginVersion, Path apiJarPath, Path runtimeJarPath, Path buildRoot, JarCache jarCache, CompilerBackend backend, BlockingCallLint.Mode blockingCalls, CompilerLog log) {
+        this(pluginVersion, apiJarPath, runtimeJarPath, buildRoot, jarCache, Objects.requireNonNull(backend, "backend"), null, null, blockingCalls, log);
+    }
+
+    /**
+     * Compiles in the server. kotlinc is loaded in a classloader this compiler owns
+     * ({@link IsolatedCompilerBackend}), never in the caller's loader, and is dropped after
+     * {@code unloadAfterIdleMs} without compiles ({@link #releaseCompilerIfIdle()}).
+     *
+     * @param workers           run kotlinc in worker JVMs instead, with the isolated compiler only as the
+     *                          fallback for when no worker can be started; null to compile in process
+     * @param unloadAfterIdleMs {@code <= 0} keeps the compiler loaded once it is first used
+     */
+    public FsCompiler(String pluginVersion, Path apiJarPath, Path runtimeJarPath, Path buildRoot, JarCache jarCache, CompileWorkerPool.Settings workers, long unloadAfterIdleMs, BlockingCallLint.Mode blockingCalls, CompilerLog log) {
+        this(pluginVersion, apiJarPath, runtimeJarPath, buildRoot, jarCache, null, workers,
+                new IsolatedCompilerBackend(unloadAfterIdleMs, Objects.requireNonNull(log, "log")), blockingCalls, log);
+    }
+
+    private FsCompiler(String pluginVersion, Path apiJarPath, Path runtimeJarPath, Path buildRoot, JarCache jarCache, CompilerBackend backend, CompileWorkerPool.Settings workers, IsolatedCompilerBackend isolated, BlockingCallLint.Mode blockingCalls, CompilerLog log) {
+        this.pluginVersion = Objects.requireNonNull(pluginVersion, "pluginVersion");
+        this.apiJarPath = Objects.requireNonNull(apiJarPath, "apiJarPath");
+        this.runtimeJarPath = Objects.requireNonNull(runtimeJarPath, "runtimeJarPath");
+        this.buildRoot = Objects.requireNonNull(buildRoot, "buildRoot");
+        this.jarCache = Objects.requireNonNull(jarCache, "jarCache");
+        this.blockingCalls = Objects.requireNonNull(blockingCalls, "blockingCalls");
+        this.log = Objects.requireNonNull(log, "log");
+        this.isolated = isolated;
+        if (backend == null) {
+            backend = workers == null ? isolated : new CompileWorkerPool(buildRoot.resolve("_workers"), workers, isolated, log);
+        }
+        this.kotlin = new KotlinCompilerService(apiJarPath, runtimeJarPath, buildRoot.resolve("_warmup"), backend, log);
+        this.incremental = new IncrementalCompiler(kotlin);
+        this.cacheWriter = new CompileExecutor(1, "Focuscript-CacheWriter");
+        this.store = new ArtifactStore(buildRoot);
+    }
+
+    /**
+     * Drops the in-process compiler if it has been idle for the configured period. Cheap; call periodically
+     * from an async thread.
+     *
+     * @return true if it was released
+     */
+    public boolean releaseCompilerIfIdle() {
+        return isolated != null && isolated.releaseIfIdle();
+    }
+
+    /**
+     * Bootstraps the shared Kotlin compiler session. Blocking; call from an async thread.
+     */
+    public void warmUp() {
+        kotlin.warmUp();
+    }
+
+    public KotlinCompilerService getCompilerService() {
+        return kotlin;
+    }
+
+    /** Per-phase timings of recent compiles, per module. */
+    public CompileMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void close() {
+        cacheWriter.close();
+        kotlin.close();
+    }
+
+    public String getModulePackage(ScriptManifest manifest) {
+        return MODULE_PACKAGE_BASE + "." + sanitizeIdAsPackagePart(manifest.id());
+    }
+
+    /**
+     * Name kotlinc gives the module ({@code META-INF/<name>.kotlin_module}, {@code internal} name mangling).
+     * Derived from the package rather than the id, so the output depends on nothing the package does not.
+     */
+    private static String getKotlinModuleName(ScriptManifest manifest) {
+        return sanitizeIdAsPackagePart(manifest.id());
+    }
+
+    public String getEntrypointClassName(ScriptManifest manifest) {
+        // @file:JvmName("FocuscriptEntry")
+        return getModulePackage(manifest) + ".FocuscriptEntry";
+    }
+
+    /**
+     * {@code _build/<id>/}: cache, incremental state and other per-module build files.
+     */
+    public Path getBuildDir(String moduleId) {
+        return buildRoot.resolve(sanitizeIdAsPath(moduleId));
+    }
+
+    /**
+     * Cache key of the workspace as it is on disk now. Only workspace-relative paths go into the key,
+     * so the same sources give the same key on every server.
+     */
+    public String computeCacheKey(Workspace workspace) throws Exception {
+        Path buildDir = getBuildDir(workspace.manifest().id());
+        Files.createDirectories(buildDir);
+        return computeInputKeys(workspace, collectFsSources(workspace.root()), buildDir, new CompileMetrics.Recorder()).cacheKey();
+    }
+
+    public ModuleArtifact compileIfNeeded(Workspace workspace) throws Exception {
+        return compileIfNeeded(workspace, false);
+    }
+
+    public ModuleArtifact compileIfNeeded(Workspace workspace, boolean inMemory) throws Exception {
+        return compileIfNeeded(workspace, inMemory, CompileCancellation.none());
+    }
+
+    /**
+     * @param inMemory     on a cache miss, return the compiled classes in memory and write the cache jar in
+     *                     the background instead of before returning. Cache hits always return the jar.
+     * @param cancellation checked before kotlinc starts and polled while it runs
+     * @throws java.util.concurrent.CancellationException if cancelled before the classes were compiled
+     */
+    public ModuleArtifact compileIfNeeded(Workspace workspace, boolean inMemory, CompileCancellation cancellation) throws Exception {
+        ScriptManifest manifest = workspace.manifest();
+        CompileMetrics.Recorder rec = new CompileMetrics.Recorder();
+        try {
+            return compileIfNeeded(workspace, inMemory, cancellation, rec);
+        } catch (java.util.concurrent.CancellationException e) {
+            rec.outcome = CompileMetrics.Outcome.CANCELLED;
+            throw e;
+        } finally {
+            CompileMetrics.Sample sample = rec.finish();
+            metrics.record(manifest.id(), sample);
+            if (manifest.debug()) {
+                log.info("[" + manifest.id() + "] timings: " + sample.summary());
+            }
+        }
+    }
+
+    private ModuleArtifact compileIfNeeded(Workspace workspace, boolean inMemory, CompileCancellation cancellation, CompileMetrics.Recorder rec) throws Exception {
+        ScriptManifest manifest = workspace.manifest();
+
+        Path buildDir = getBuildDir(manifest.id());
+        Path cacheDir = buildDir.resolve("cache");
+        Path tmpRoot = buildDir.resolve("tmp");
+
+        Files.createDirectories(buildDir);
+        Files.createDirectories(cacheDir);
+        Files.createDirectories(tmpRoot);
+
+        // Collect inputs
+        List<Path> sources = collectFsSources(workspace.root());
+        InputKeys keys = computeInputKeys(workspace, sources, buildDir, rec);
+        String cacheKey = keys.cacheKey();
+        rec.hashMs = rec.lap();
+
+        Path cachedJar = cacheDir.resolve(cacheKey + ".jar");
+        if (Files.isRegularFile(cachedJar)) {
+            // cache hit: the cached jar is immutable, so hand it out as is (no copy)
+            jarCache.recordHit(cachedJar);
+            rec.outcome = CompileMetrics.Outcome.HIT;
+            rec.jarBytes = sizeOrUnknown(cachedJar);
+            if (manifest.debug()) {
+                log.info("[" + manifest.id() + "] cache hit: " + cacheKey);
+            }
+            return new ModuleArtifact(cachedJar, cacheKey, null);
+        }
+        if (linkFromStore(manifest, keys.artifactKey(), cachedJar)) {
+            // Built before under another id or cache key: same classes, only script.yml differs.
+            jarCache.recordSharedHit(cachedJar);
+            jarCache.trimModule(cacheDir);
+            rec.outcome = CompileMetrics.Outcome.SHARED;
+            rec.jarBytes = sizeOrUnknown(cachedJar);
+            if (manifest.debug()) {
+                log.info("[" + manifest.id() + "] shared cache hit: " + keys.artifactKey());
+            }
+            return new ModuleArtifact(cachedJar, cacheKey, null);
+        }
+        jarCache.recordMiss();
+        cancellation.throwIfCancelled();
+
+        // Every compile works in its own directory, so overlapping compiles of the same id
+        // never see each other's half-written files. Results are published by atomic rename.
+        Path workDir = Files.createTempDirectory(tmpRoot, "compile-");
+        try {
+            String modulePackage = getModulePackage(manifest);
+            GeneratedSources generated = generateSources(workspace, sources, modulePackage, FsPreprocessor.DISK);
+            Map<String, String> units = generated.units();
+            Map<String, LineMap> lineMaps = generated.lineMaps();
+            rec.units = units.size();
+            rec.preprocessMs = rec.lap();
+
+            Path genSrcDir = workDir.resolve("gen-src");
+            Files.createDirectories(genSrcDir);
+            for (Map.Entry<String, String> unit : units.entrySet()) {
+                Files.writeString(genSrcDir.resolve(unit.getKey()), unit.getValue(), StandardCharsets.UTF_8);
+            }
+            rec.writeMs = rec.lap();
+
+            // Compile
+            if (manifest.debug()) {
+                log.info("[" + manifest.id() + "] compiling (cache miss): " + cacheKey);
+            }
+
+            IncrementalCompiler.Result result = incremental.build(
+                    getKotlinModuleName(manifest),
+                    modulePackage,
+                    computeEnvironmentKey(manifest, modulePackage),
+                    units,
+                    genSrcDir,
+                    buildDir.resolve("incremental"),
+                    workDir,
+                    cancellation
+            );
+            rec.compileMs = rec.lap();
+            rec.kotlincMs = result.kotlincMs();
+            rec.compiledUnits = result.compiledUnits().size();
+            rec.fullBuild = result.fullBuild();
+            if (manifest.debug()) {
+                log.info("[" + manifest.id() + "] kotlinc " + result.kotlincMs() + " ms, "
+                        + (result.fullBuild() ? "full build" : "incremental: " + result.compiledUnits().size() + "/" + units.size() + " file(s)")
+                        + (result.coldStart() ? " (cold)"
+                                : result.savedMs() > 0 ? " (warm session, ~" + result.savedMs() + " ms saved vs cold)" : " (warm session)"));
+            }
+
+            // Keep the last generated sources around for debugging compiler messages.
+            publishDirectory(genSrcDir, buildDir.resolve("gen-src"), workDir);
+
+            if (!result.success()) {
+                List<String> messages = remapMessages(result.messages(), lineMaps, workspace.root());
+                log.error("[" + manifest.id() + "] Kotlin compile failed:");
+                for (String line : messages) {
+                    log.error(line);
+                }
+                throw new KotlinCompilationException(
+                        "Kotlin compilation failed for module " + manifest.id(),
+                        messages
+                );
+            }
+
+            lintBlockingCalls(manifest, result.output(), modulePackage, lineMaps, workspace.root());
+
+            for (byte[] bytes : result.output().values()) {
+                rec.classBytes += bytes.length;
+            }
+            rec.outcome = CompileMetrics.Outcome.COMPILED;
+
+            if (inMemory) {
+                Map<String, byte[]> entries = result.output();
+                cacheWriter.execute(() -> writeCacheJar(manifest, entries, tmpRoot, cachedJar, cacheDir, keys.artifactKey()));
+                return new ModuleArtifact(cachedJar, cacheKey, entries);
+            }
+
+            Path compiledJar = workDir.resolve("module.jar");
+            IncrementalCompiler.writeJar(result.output(), compiledJar);
+
+            // Publish into the cache. If an identical build got there first, keep theirs: it may
+            // already be open by a loaded module.
+            publishIfAbsent(compiledJar, cachedJar);
+            jarCache.recordWrite(cachedJar);
+            publishToStore(manifest, cachedJar, keys.artifactKey());
+            jarCache.trimModule(cacheDir);
+            rec.jarBytes = sizeOrUnknown(cachedJar);
+            rec.packageMs = rec.lap();
+
+            return new ModuleArtifact(cachedJar, cacheKey, null);
+        } finally {
+            deleteRecursively(workDir);
+        }
+    }
+
+    /**
+     * Reports blocking calls reachable from event, scheduler and command handlers. In strict mode they fail
+     * the compile before anything is published, so the module never loads from this build.
+     */
+    private void lintBlockingCalls(ScriptManifest manifest, Map<String, byte[]> output, String modulePackage, Map<String, LineMap> lineMaps, Path workspaceRoot) throws KotlinCompilationException {
+        if (blockingCalls == BlockingCallLint.Mode.OFF) return;
+        List<BlockingCallLint.Finding> findings = BlockingCallLint.scan(output, modulePackage.replace('.', '/'));
+        if (findings.isEmpty()) return;
+
+        boolean strict = blockingCalls == BlockingCallLint.Mode.STRICT;
+        List<String> raw = new ArrayList<>(findings.size());
+        for (BlockingCallLint.Finding finding : findings) {
+            raw.add(finding.toMessage(strict ? "ERROR" : "WARNING"));
+        }
+        List<String> messages = remapMessages(raw, lineMaps, workspaceRoot);
+        if (!strict) {
+            log.warn("[" + manifest.id() + "] " + findings.size() + " blocking call(s) in handlers:");
+            for (String line : messages) {
+                log.warn(line);
+            }
+            return;
+        }
+        log.error("[" + manifest.id() + "] Blocking calls in handlers (compiler.blocking-calls: strict):");
+        for (String line : messages) {
+            log.error(line);
+        }
+        throw new KotlinCompilationException("Blocking calls in handlers of module " + manifest.id(), messages);
+    }
+
+    /** Generated Kotlin units (file name -> text) and where each of their lines came from. */
+    private record GeneratedSources(Map<String, String> units, Map<String, LineMap> lineMaps) {}
+
+    /**
+     * Generates the Kotlin sources. Names are stable per .fs path so the incremental state can match them
+     * up between builds.
+     */
+    private GeneratedSources generateSources(Workspace workspace, List<Path> sources, String modulePackage, FsPreprocessor.SourceReader reader) throws Exception {
+        ScriptManifest manifest = workspace.manifest();
+        Map<String, String> units = new LinkedHashMap<>();
+        Map<String, LineMap> lineMaps = new HashMap<>();
+
+        // Module DSL + helpers come from the shared runtime jar (KotlinSourceTemplates.PRELUDE_PACKAGE).
+
+        // 1) Entry (converted from entry .fs)
+        Path entryFs = manifest.resolveEntry(workspace.root());
+        if (!Files.isRegularFile(entryFs)) {
+            throw new IOException("Entry file not found: " + entryFs);
+        }
+        String entryText = reader.read(entryFs);
+        if (entryText.strip().isEmpty()) {
+            throw new IOException("Entry file is empty: " + entryFs);
+        }
+        FsPreprocessor.Result expandedEntry = FsPreprocessor.expandEntry(entryFs, entryText, workspace.root(), reader);
+        String entryModuleExpression = toEntryModuleExpression(expandedEntry.text(), entryFs);
+        Set<Path> includedEntrySources = expandedEntry.includedSources();
+
+        String entryUnit = KotlinSourceTemplates.entry(modulePackage, entryModuleExpression);
+        units.put(ENTRY_UNIT, entryUnit);
+        // Body line 1 follows the `= module {` line.
+        lineMaps.put(ENTRY_UNIT, expandedEntry.lines().shift(KotlinSourceTemplates.contentStartLine(entryUnit, entryModuleExpression)));
+
+        // 2) Other sources
+        for (Path fs : sources) {
+            Path normalized = fs.toAbsolutePath().normalize();
+            if (fs.equals(entryFs) || includedEntrySources.contains(normalized)) continue;
+            String src = reader.read(normalized);
+            LineMap lines = FsPreprocessor.check(fs, src).lines();
+
+            String unitName = scriptUnitName(workspace.root(), fs);
+            String unit = KotlinSourceTemplates.source(modulePackage, src, fs);
+            units.put(unitName, unit);
+            // The template trims the source, leading blank lines included.
+            lineMaps.put(unitName, lines.shift(KotlinSourceTemplates.contentStartLine(unit, src) - 1 - leadingNewlines(src)));
+        }
+
+        return new GeneratedSources(units, lineMaps);
+    }
+
+    /**
+     * One compiler message.
+     *
+     * @param severity {@code error}, {@code warning} or {@code info}
+     * @param file     workspace-relative .fs path ({@code src/main.fs}); a generated file name if the message
+     *                 points into generated code; null without a location
+     * @param line     1-based; 0 without a location
+     */
+    public record Diagnostic(String severity, String file, int line, int column, String message) {}
+
+    /** Result of {@link #diagnose}; {@code success} means no errors. */
+    public record Diagnostics(boolean success, List<Diagnostic> diagnostics, long elapsedMs) {}
+
+    /**
+     * Type-checks the workspace without building it: sources are generated as for a compile, then only the
+     * Kotlin frontend runs on the warm session. Nothing is cached or published and loaded modules are not
+     * touched.
+     *
+     * @param overlay      text to use instead of a file's saved contents (unsaved editor buffers), by path
+     * @param cancellation polled while the frontend runs
+     * @throws java.util.concurrent.CancellationException if cancelled
+     */
+    public Diagnostics diagnose(Workspace workspace, Map<Path, String> overlay, CompileCancellation cancellation) throws Exception {
+        long start = System.nanoTime();
+        ScriptManifest manifest = workspace.manifest();
+        Path root = workspace.root();
+        Path tmpRoot = getBuildDir(manifest.id()).resolve("tmp");
+        Files.createDirectories(tmpRoot);
+
+        Map<Path, String> unsaved = new HashMap<>();
+        overlay.forEach((path, text) -> unsaved.put(path.toAbsolutePath().normalize(), text));
+        FsPreprocessor.SourceReader reader = file -> {
+            String text = unsaved.get(file.toAbsolutePath().normalize());
+            return text != null ? text : FsPreprocessor.DISK.read(file);
+        };
+
+        GeneratedSources generated;
+        try {
+            generated = generateSources(workspace, collectFsSources(root), getModulePackage(manifest), reader);
+        } catch (FsPreprocessor.SourceException e) {
+            Diagnostic error = new Diagnostic("error", relativeName(root, e.file()), e.line(), 1, e.getMessage());
+            return new Diagnostics(false, List.of(error), (System.nanoTime() - start) / 1_000_000L);
+        }
+        cancellation.throwIfCancelled();
+
+        Path workDir = Files.createTempDirectory(tmpRoot, "check-");
+        try {
+            List<Path> files = new ArrayList<>();
+            for (Map.Entry<String, String> unit : generated.units().entrySet()) {
+                Path file = workDir.resolve(unit.getKey());
+                Files.writeString(file, unit.getValue(), StandardCharsets.UTF_8);
+                files.add(file);
+            }
+
+            KotlinCompilerService.SessionResult result = kotlin.analyze(files, getKotlinModuleName(manifest), cancellation);
+            cancellation.throwIfCancelled();
+
+            List<Diagnostic> diagnostics = new ArrayList<>();
+            for (String message : remapMessages(result.messages(), generated.lineMaps(), root)) {
+                diagnostics.add(toDiagnostic(message));
+            }
+            return new Diagnostics(result.success(), diagnostics, (System.nanoTime() - start) / 1_000_000L);
+        } finally {
+            deleteRecursively(workDir);
+        }
+    }
+
+    /** Parses a (remapped) compiler message; see {@link KotlinCompilerInvoker} for the format. */
+    static Diagnostic toDiagnostic(String message) {
+        Matcher m = DIAGNOSTIC.matcher(message);
+        if (!m.find()) {
+            // Crash reports and the like.
+            return new Diagnostic("error", null, 0, 0, message);
+        }
+        String severity = switch (m.group(1)) {
+            case "ERROR", "EXCEPTION" -> "error";
+            case "WARNING", "STRONG_WARNING" -> "warning";
+            default -> "info";
+        };
+        String file = m.group(2);
+        if (file == null) {
+            return new Diagnostic(severity, null, 0, 0, message.substring(m.end()));
+        }
+        if (file.endsWith(".kt")) {
+            // Generated code outside any .fs line: the temp directory means nothing to the caller.
+            file = file.substring(Math.max(file.lastIndexOf('/'), file.lastIndexOf('\\')) + 1);
+        }
+        return new Diagnostic(severity, file, Integer.parseInt(m.group(3)), Integer.parseInt(m.group(4)), message.substring(m.end()));
+    }
+
+    private void writeCacheJar(ScriptManifest manifest, Map<String, byte[]> entries, Path tmpRoot, Path cachedJar, Path cacheDir, String artifactKey) {
+        Path tmp = null;
+        try {
+            tmp = Files.createTempFile(tmpRoot, "cache-", ".jar");
+            IncrementalCompiler.writeJar(entries, tmp);
+            publishIfAbsent(tmp, cachedJar);
+            jarCache.recordWrite(cachedJar);
+            publishToStore(manifest, cachedJar, artifactKey);
+            jarCache.trimModule(cacheDir);
+        } catch (IOException e) {
+            log.warn("[" + manifest.id() + "] Failed to write cache jar " + cachedJar.getFileName() + ": " + e.getMessage());
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private boolean linkFromStore(ScriptManifest manifest, String artifactKey, Path cachedJar) {
+        try {
+            return store.linkTo(artifactKey, cachedJar);
+        } catch (IOException e) {
+            log.warn("[" + manifest.id() + "] Failed to reuse shared jar " + artifactKey + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /** The shared store is an optimization: failing to add to it never fails the compile. */
+    private void publishToStore(ScriptManifest manifest, Path cachedJar, String artifactKey) {
+        try {
+            store.publish(cachedJar, artifactKey);
+        } catch (IOException e) {
+            log.warn("[" + manifest.id() + "] Failed to add " + cachedJar.getFileName() + " to the shared store: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Moves {@code source} over {@code target}, atomically where the file system allows it.
+     */
+    static void atomicReplace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Moves {@code source} to {@code target} unless {@code target} already exists.
+     */
+    static void publishIfAbsent(Path source, Path target) throws IOException {
+        if (Files.exists(target)) return;
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            try {
+                Files.move(source, target);
+            } catch (FileAlreadyExistsException ignored) {
+            }
+        } catch (IOException e) {
+            // Lost a race to an identical build whose jar is already open (Windows refuses the replace).
+            if (!Files.exists(target)) throw e;
+        }
+    }
+
+    /**
+     * Replaces directory {@code target} with {@code source}. The previous directory is renamed into
+     * {@code trashParent} first, so readers see either the old or the new tree, never a mix.
+     */
+    static void publishDirectory(Path source, Path target, Path trashParent) throws IOException {
+        if (Files.exists(target)) {
+            Path trash = trashParent.resolve("old-" + target.getFileName());
+            try {
+                Files.move(target, trash, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                deleteRecursively(target);
+            }
+        }
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Another compile of the same id published first; theirs is as good as ours.
+        }
+    }
+
+    /**
+     * All .fs files under {@code src/}, ordered by workspace-relative path.
+     */
+    private static List<Path> collectFsSources(Path workspaceRoot) throws IOException {
+        Path srcDir = workspaceRoot.resolve("src");
+        if (!Files.isDirectory(srcDir)) return List.of();
+
+        try (var walk = Files.walk(srcDir)) {
+            return walk.filter(Files::isRegularFile)
+                    .filter(p -> p.toString().endsWith(".fs"))
+                    .sorted(Comparator.comparing(p -> relativeName(workspaceRoot, p)))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Workspace-relative path with {@code /} separators, e.g. {@code src/util/math.fs}.
+     */
+    private static String relativeName(Path workspaceRoot, Path file) {
+        return workspaceRoot.toAbsolutePath().normalize()
+                .relativize(file.toAbsolutePath().normalize())
+                .toString()
+                .replace('\\', '/');
+    }
+
+    /**
+     * @param cacheKey    identifies this workspace's inputs: the artifact inputs plus script.yml. Names the jar
+     *                    in the module cache; a change means the module must be reloaded.
+     * @param artifactKey identifies the compiled classes, independent of the id and of script.yml fields that
+     *                    do not reach the compiler. Names the jar in the shared {@link ArtifactStore}.
+     */
+    private record InputKeys(String cacheKey, String artifactKey) {}
+
+    private InputKeys computeInputKeys(Workspace workspace, List<Path> sources, Path buildDir, CompileMetrics.Recorder rec) throws Exception {
+        ScriptManifest manifest = workspace.manifest();
+        SourceFingerprints fingerprints = SourceFingerprints.load(buildDir);
+        InputKeys keys = computeInputKeys(workspace.readScriptYmlText(), workspace.root(), sources, manifest, fingerprints);
+        rec.sources = sources.size();
+        rec.sourceBytes = fingerprints.totalBytes();
+        rec.rehashed = fingerprints.hashedCount();
+        try {
+            fingerprints.save();
+        } catch (IOException e) {
+            log.warn("[" + manifest.id() + "] Failed to save source fingerprints: " + e.getMessage());
+        }
+        if (manifest.debug()) {
+            log.info("[" + manifest.id() + "] fingerprints: " + fingerprints.reusedCount() + " reused, "
+                    + fingerprints.hashedCount() + " hashed");
+        }
+        return keys;
+    }
+
+    /**
+     * Both keys in one pass over the sources. The cache key covers the environment, script.yml and each
+     * source's relative path and content hash; the artifact key swaps script.yml for the package, kotlinc
+     * module name and entry path it implies. Content hashes come from the fingerprint index, so unchanged
+     * files are not read at all.
+     */
+    private InputKeys computeInputKeys(String scriptYmlText, Path workspaceRoot, List<Path> sources, ScriptManifest manifest, SourceFingerprints fingerprints) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        MessageDigest artifact = MessageDigest.getInstance("SHA-256");
+
+        for (MessageDigest d : List.of(digest, artifact)) {
+            d.update(("focuscript-plugin-version:" + pluginVersion).getBytes(StandardCharsets.UTF_8));
+            d.update(("focuscript-api-version:" + FsApi.API_VERSION).getBytes(StandardCharsets.UTF_8));
+            d.update(("module-api-field:" + manifest.api()).getBytes(StandardCharsets.UTF_8));
+            d.update(("kotlin-compiler-version:" + KOTLIN_COMPILER_VERSION).getBytes(StandardCharsets.UTF_8));
+            d.update(("jvmTarget:" + KotlinCompilerService.JVM_TARGET).getBytes(StandardCharsets.UTF_8));
+            d.update(("prelude:" + KotlinSourceTemplates.PRELUDE_PACKAGE).getBytes(StandardCharsets.UTF_8));
+            // Jars built without the strict check must not satisfy a strict lookup; other modes share jars.
+            if (blockingCalls == BlockingCallLint.Mode.STRICT) {
+                d.update("blocking-calls:strict".getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        digest.update("script.yml".getBytes(StandardCharsets.UTF_8));
+        digest.update(scriptYmlText.getBytes(StandardCharsets.UTF_8));
+
+        artifact.update(("package:" + getModulePackage(manifest)).getBytes(StandardCharsets.UTF_8));
+        artifact.update(("kotlin-module:" + getKotlinModuleName(manifest)).getBytes(StandardCharsets.UTF_8));
+        artifact.update(("entry:" + relativeName(workspaceRoot, manifest.resolveEntry(workspaceRoot))).getBytes(StandardCharsets.UTF_8));
+
+        for (Path p : sources) {
+            byte[] rel = relativeName(workspaceRoot, p).getBytes(StandardCharsets.UTF_8);
+            byte[] hash = fingerprints.hash(p).getBytes(StandardCharsets.UTF_8);
+            digest.update(rel);
+            digest.update(hash);
+            artifact.update(rel);
+            artifact.update(hash);
+        }
+
+        return new InputKeys(toHex(digest.digest()), toHex(artifact.digest()));
+    }
+
+    /**
+     * Everything besides the generated sources that affects compiled output. Incremental state from a
+     * different environment is discarded.
+     */
+    private String computeEnvironmentKey(ScriptManifest manifest, String modulePackage) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(("focuscript-plugin-version:" + pluginVersion).getBytes(StandardCharsets.UTF_8));
+        digest.update(("focuscript-api-version:" + FsApi.API_VERSION).getBytes(StandardCharsets.UTF_8));
+        digest.update(("kotlin-compiler-version:" + KOTLIN_COMPILER_VERSION).getBytes(StandardCharsets.UTF_8));
+        digest.update(("jvmTarget:" + KotlinCompilerService.JVM_TARGET).getBytes(StandardCharsets.UTF_8));
+        digest.update(("prelude:" + KotlinSourceTemplates.PRELUDE_PACKAGE).getBytes(StandardCharsets.UTF_8));
+        digest.update(("package:" + modulePackage).getBytes(StandardCharsets.UTF_8));
+        digest.update(("kotlin-module:" + getKotlinModuleName(manifest)).getBytes(StandardCharsets.UTF_8));
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Stable generated file name for a non-entry .fs source, e.g. {@code Script_utils_1a2b3c4d.kt}.
+     */
+    private static String scriptUnitName(Path workspaceRoot, Path fs) throws Exception {
+        String rel = relativeName(workspaceRoot, fs);
+        String stem = fs.getFileName().toString();
+        if (stem.endsWith(".fs")) stem = stem.substring(0, stem.length() - 3);
+        stem = stem.replaceAll("[^a-zA-Z0-9_]", "_");
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        String pathHash = toHex(digest.digest(rel.getBytes(StandardCharsets.UTF_8))).substring(0, 8);
+        return "Script_" + stem + "_" + pathHash + ".kt";
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit((b & 0xF), 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Rewrites locations in generated Kotlin files ({@code gen-src/<unit>.kt:line:col}) to the
+     * workspace-relative {@code .fs} file and line they came from. Lines without an origin (the generated
+     * header) keep their location.
+     */
+    static List<String> remapMessages(List<String> messages, Map<String, LineMap> lineMaps, Path workspaceRoot) {
+        List<String> out = new ArrayList<>(messages.size());
+        for (String message : messages) {
+            Matcher m = MESSAGE_LOCATION.matcher(message);
+            if (m.find()) {
+                String path = m.group(2);
+                String unit = path.substring(Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1);
+                LineMap map = lineMaps.get(unit);
+                LineMap.Origin origin = map == null ? null : map.originOf(Integer.parseInt(m.group(3)));
+                if (origin != null) {
+                    message = m.group(1) + relativeName(workspaceRoot, origin.file()) + ":" + origin.line()
+                            + ":" + m.group(4) + ": " + message.substring(m.end());
+                }
+            }
+            out.add(message);
+        }
+        return out;
+    }
+
+    /** Line breaks before the first non-blank character, i.e. the lines {@link String#trim()} drops. */
+    private static int leadingNewlines(String text) {
+        int n = 0;
+        for (int i = 0; i < text.length() && text.charAt(i) <= ' '; i++) {
+            if (text.charAt(i) == '\n') n++;
+        }
+        return n;
+    }
+
+    private static String toEntryModuleExpression(String expandedEntry, Path entryFs) throws IOException {
+        // Explicit module wrappers in entry are no longer supported.
+        if (startsWithModuleCall(expandedEntry)) {
+            throw new IOException("Entry file must be plain body (do not wrap with `module { ... }`): " + entryFs);
+        }
+
+        // Entry .fs is treated as module body and wrapped automatically.
+        String body = expandedEntry.stripTrailing();
+        return "module {\n" + body + "\n}";
+    }
+
+    private static boolean startsWithModuleCall(String text) {
+        // Allow whitespace + //comments + /*comments*/ before `module`
+        int i = 0;
+        int n = text.length();
+
+        while (i < n) {
+            // whitespace
+            while (i < n && Character.isWhitespace(text.charAt(i))) i++;
+            if (i >= n) return false;
+
+            // line comment
+            if (i + 1 < n && text.charAt(i) == '/' && text.charAt(i + 1) == '/') {
+                i += 2;
+                while (i < n && text.charAt(i) != '\n') i++;
+                continue;
+            }
+
+            // block comment
+            if (i + 1 < n && text.charAt(i) == '/' && text.charAt(i + 1) == '*') {
+                i += 2;
+                while (i + 1 < n && !(text.charAt(i) == '*' && text.charAt(i + 1) == '/')) i++;
+                if (i + 1 < n) i += 2;
+                continue;
+            }
+
+            // actual token
+            break;
+        }
+
+        return text.startsWith("module", i);
+    }
+
+    private static String sanitizeIdAsPackagePart(String id) {
+        // allow a-zA-Z0-9_ only
+        String s = id.replaceAll("[^a-zA-Z0-9_]", "_");
+        if (s.isEmpty()) s = "module";
+        if (Character.isDigit(s.charAt(0))) s = "m_" + s;
+        return s;
+    }
+
+    /**
+     * Directory/file name for a module id. Never starts with {@code _} (reserved for the build root's own
+     * directories such as {@code _warmup}, {@code _store} and {@code _workers}) or {@code .}.
+     */
+    public static String sanitizeIdAsPath(String id) {
+        if (id == null || id.isBlank()) return "module";
+        String s = id.replaceAll("[^a-zA-Z0-9_.-]", "_");
+        if (s.isBlank()) s = "module";
+        if (s.startsWith("_") || s.startsWith(".")) s = "m" + s;
+        return s;
+    }
+
+    private static long sizeOrUnknown(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return -1L;
+        }
+    }
+
+    static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) return;
+        try (var walk = Files.walk(path)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException ignored) {
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package kr.codename.focuscript.core.compiler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Single-pass preprocessor for {@code .fs} sources.
+ *
+ * <p>Each file is read once and scanned once by a small Kotlin-aware tokenizer (strings, raw strings,
+ * string templates, char literals, backtick names, nested block comments). In that same pass it</p>
+ * <ul>
+ *   <li>expands {@code #include "path.fs"} lines in place, recursively (entry files only),</li>
+ *   <li>rejects {@code package}/{@code import} declarations,</li>
+ *   <li>records the original file and line of every output line in a {@link LineMap}.</li>
+ * </ul>
+ *
+ * <p>Directives and declarations are only recognized at the start of a line of code, never inside a
+ * string or comment. Included text is appended straight to one output buffer, so expanding an include
+ * tree costs time linear in its total size.</p>
+ */
+final class FsPreprocessor {
+
+    /**
+     * @param text            the expanded text; every line ends with {@code \n}
+     * @param lines           origin of each line of {@code text}
+     * @param includedSources every file pulled in through {@code #include} (normalized, absolute)
+     */
+    record Result(String text, LineMap lines, Set<Path> includedSources) {}
+
+    /** Reads included files; lets a caller substitute contents that are not saved yet. */
+    @FunctionalInterface
+    interface SourceReader {
+        String read(Path file) throws IOException;
+    }
+
+    static final SourceReader DISK = file -> Files.readString(file, StandardCharsets.UTF_8);
+
+    /** A problem in the sources themselves, at a known file and line. */
+    static final class SourceException extends IOException {
+        private final Path file;
+        private final int line;
+
+        SourceException(String message, Path file, int line) {
+            super(message);
+            this.file = file;
+            this.line = line;
+        }
+
+        Path file() {
+            return file;
+        }
+
+        int line() {
+            return line;
+        }
+    }
+
+    private static final String INCLUDE = "#include";
+
+    // Lexer modes.
+    private static final int CODE = 0;
+    private static final int TEMPLATE = 1; // code inside ${...}; depth = open braces
+    private static final int STRING = 2;
+    private static final int RAW_STRING = 3;
+    private static final int BLOCK_COMMENT = 4; // depth = nesting
+
+    private final Path workspaceRoot;
+    private final SourceReader reader;
+    private final boolean includes;
+    private final StringBuilder out;
+    private final LineMap.Builder lines = new LineMap.Builder();
+    private final LinkedHashSet<Path> stack = new LinkedHashSet<>();
+    private final LinkedHashSet<Path> included = new LinkedHashSet<>();
+
+    private int[] modes = new int[8];
+    private int[] depths = new int[8];
+    private int sp;
+
+    private FsPreprocessor(Path workspaceRoot, SourceReader reader, boolean includes, int capacity) {
+        this.workspaceRoot = workspaceRoot;
+        this.reader = reader;
+        this.includes = includes;
+        this.out = includes ? new StringBuilder(capacity) : null;
+    }
+
+    /**
+     * Expands an entry file: includes are resolved relative to the including file and must stay inside
+     * {@code workspaceRoot}.
+     */
+    static Result expandEntry(Path entryFs, String text, Path workspaceRoot) throws IOException {
+        return expandEntry(entryFs, text, workspaceRoot, DISK);
+    }
+
+    /**
+     * @param reader reads included files (given as normalized absolute paths)
+     */
+    static Result expandEntry(Path entryFs, String text, Path workspaceRoot, SourceReader reader) throws IOException {
+        Path entry = entryFs.toAbsolutePath().normalize();
+        FsPreprocessor p = new FsPreprocessor(workspaceRoot.toAbsolutePath().normalize(), reader, true, text.length() + 256);
+        p.stack.add(entry);
+        p.process(entry, text);
+        return new Result(p.out.toString(), p.lines.build(), Set.copyOf(p.included));
+    }
+
+    /**
+     * Checks a non-entry source; its text is returned as given. {@code #include} is not allowed here.
+     */
+    static Result check(Path fs, String text) throws IOException {
+        FsPreprocessor p = new FsPreprocessor(null, null, false, 0);
+        p.process(fs.toAbsolutePath().normalize(), text);
+        return new Result(text, p.lines.build(), Set.of());
+    }
+
+    private void process(Path file, String text) throws IOException {
+        int base = sp;
+        push(CODE, 0);
+
+        int n = text.length();
+        int lineNo = 0;
+        int start = 0;
+        while (start < n) {
+            lineNo++;
+            int nl = text.indexOf('\n', start);
+            int end = nl < 0 ? n : nl;
+
+            if (sp == base + 1 && modes[sp - 1] == CODE) {
+                int j = skipBlanks(text, start, end);
+                if (text.startsWith(INCLUDE, j)) {
+                    include(file, lineNo, text, j, end);
+                    start = end + 1;
+                    continue;
+                }
+                if (startsWithKeyword(text, j, end, "package") || startsWithKeyword(text, j, end, "import")) {
+                    throw new SourceException("Focuscript .fs must not declare package/import (prelude is automatic). Offending file: "
+                            + file + ":" + lineNo, file, lineNo);
+                }
+            }
+
+            scanLine(text, start, end);
+
+            lines.add(file, lineNo);
+            if (out != null) out.append(text, start, end).append('\n');
+            start = end + 1;
+        }
+
+        // Whatever is left open (unterminated string/comment) is for kotlinc to report.
+        sp = base;
+    }
+
+    private void include(Path file, int lineNo, String text, int from, int end) throws IOException {
+        String where = file + ":" + lineNo;
+        if (!includes) {
+            throw new SourceException("#include is only allowed in the entry file and files it includes: " + where, file, lineNo);
+        }
+
+        int i = from + INCLUDE.length();
+        int afterKeyword = i;
+        i = skipBlanks(text, i, end);
+        if (i == afterKeyword || i >= end || text.charAt(i) != '"') {
+            throw new SourceException("Malformed #include (expected #include \"file.fs\"): " + where, file, lineNo);
+        }
+        int close = indexOf(text, '"', i + 1, end);
+        if (close < 0 || skipBlanks(text, close + 1, end) != end) {
+            throw new SourceException("Malformed #include (expected #include \"file.fs\"): " + where, file, lineNo);
+        }
+
+        String rel = text.substring(i + 1, close).trim();
+        if (rel.isEmpty()) {
+            throw new SourceException("Empty #include path in: " + where, file, lineNo);
+        }
+
+        Path includePath = file.getParent().resolve(rel).normalize();
+        if (!includePath.startsWith(workspaceRoot)) {
+            throw new SourceException("#include escapes workspace root: " + rel + " in " + where, file, lineNo);
+        }
+        if (!includePath.toString().endsWith(".fs")) {
+            throw new SourceException("#include must target a .fs file: " + rel + " in " + where, file, lineNo);
+        }
+        if (!Files.isRegularFile(includePath)) {
+            throw new SourceException("#include file not found: " + includePath + " (" + where + ")", file, lineNo);
+        }
+        if (!stack.add(includePath)) {
+            throw new SourceException("Circular #include detected: " + includePath + " (" + where + ")", file, lineNo);
+        }
+        try {
+            process(includePath, reader.read(includePath));
+        } finally {
+            stack.remove(includePath);
+        }
+        included.add(includePath);
+    }
+
+    /** Advances the lexer over one line (without its newline). */
+    private void scanLine(String text, int i, int end) {
+        while (i < end) {
+            char c = text.charAt(i);
+            int mode = modes[sp - 1];
+            switch (mode) {
+                case CODE, TEMPLATE -> {
+                    if (c == '/' && i + 1 < end && text.charAt(i + 1) == '/') {
+                        i = end; // line comment
+                    } else if (c == '/' && i + 1 < end && text.charAt(i + 1) == '*') {
+                        push(BLOCK_COMMENT, 1);
+                        i += 2;
+                    } else if (c == '"') {
+                        if (text.startsWith("\"\"\"", i)) {
+                            push(RAW_STRING, 0);
+                            i += 3;
+                        } else {
+                            push(STRING, 0);
+                            i++;
+                        }
+                    } else if (c == '\'') {
+                        i = skipCharLiteral(text, i, end);
+                    } else if (c == '`') {
+                        int close = indexOf(text, '`', i + 1, end);
+                        i = close < 0 ? end : close + 1;
+                    } else if (mode == TEMPLATE && c == '{') {
+                        depths[sp - 1]++;
+                        i++;
+                    } else if (mode == TEMPLATE && c == '}') {
+                        if (--depths[sp - 1] == 0) sp--;
+                        i++;
+                    } else {
+                        i++;
+                    }
+                }
+                case STRING -> {
+                    if (c == '\\') {
+                        i += 2;
+                    } else if (c == '"') {
+                        sp--;
+                        i++;
+                    } else if (c == '$' && i + 1 < end && text.charAt(i + 1) == '{') {
+                        push(TEMPLATE, 1);
+                        i += 2;
+                    } else {
+                        i++;
+                    }
+                }
+                case RAW_STRING -> {
+                    if (c == '"' && text.startsWith("\"\"\"", i)) {
+                        // """" closes with the last three quotes; extra ones belong to the string.
+                        int q = i;
+                        while (q < end && text.charAt(q) == '"') q++;
+                        sp--;
+                        i = q;
+                    } else if (c == '$' && i + 1 < end && text.charAt(i + 1) == '{') {
+                        push(TEMPLATE, 1);
+                        i += 2;
+                    } else {
+                        i++;
+                    }
+                }
+                default -> { // BLOCK_COMMENT
+                    if (c == '/' && i + 1 < end && text.charAt(i + 1) == '*') {
+                        depths[sp - 1]++;
+                        i += 2;
+                    } else if (c == '*' && i + 1 < end && text.charAt(i + 1) == '/') {
+                        if (--depths[sp - 1] == 0) sp--;
+                        i += 2;
+                    } else {
+                        i++;
+                    }
+                }
+            }
+        }
+
+        // Plain strings cannot span lines; an unterminated one ends here (kotlinc reports it).
+        while (sp > 0 && modes[sp - 1] == STRING) sp--;
+    }
+
+    private void push(int mode, int depth) {
+        if (sp == modes.length) {
+            modes = Arrays.copyOf(modes, sp * 2);
+            depths = Arrays.copyOf(depths, sp * 2);
+        }
+        modes[sp] = mode;
+        depths[sp] = depth;
+        sp++;
+    }
+
+    private static int skipCharLiteral(String text, int i, int end) {
+        int j = i + 1;
+        if (j < end && text.charAt(j) == '\\') j += 2;
+        while (j < end && text.charAt(j) != '\'') j++;
+        return Math.min(end, j + 1);
+    }
+
+    /** Like {@link String#indexOf(int, int)}, but never looks past {@code end}. */
+    private static int indexOf(String text, char c, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (text.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+
+    private static int skipBlanks(String text, int i, int end) {
+        while (i < end) {
+            char c = text.charAt(i);
+            if (c != ' ' && c != '\t' && c != '\r' && c != '\f') break;
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean startsWithKeyword(String text, int i, int end, String keyword) {
+        int after = i + keyword.length();
+        return after < end && text.startsWith(keyword, i) && Character.isWhitespace(text.charAt(after));
+    }
+}
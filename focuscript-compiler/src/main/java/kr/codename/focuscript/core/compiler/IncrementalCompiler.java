@@ -0,0 +1,469 @@
+package kr.codename.focuscript.core.compiler;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Per-file incremental compilation for one module.
+ *
+ * <p>Each generated Kotlin file is a <i>unit</i>. After every successful build the exploded classes and
+ * a small state file are kept under {@code _build/<id>/incremental}: for every unit its text hash, ABI
+ * hash ({@link ClassFileAbi}), hash of its top-level declarations, output class files and the units it
+ * references.</p>
+ *
+ * <p>On the next build only units whose text changed are recompiled, against the previous classes.
+ * If a recompiled unit's ABI changed, the units that reference it are recompiled in a further round,
+ * until the ABI settles. Constants are inlined without leaving a reference, so an ABI change in a unit
+ * that declares {@code const val}s recompiles every other unit. All units share one package, so a
+ * top-level function, property or class added, removed or re-typed in one unit can change how calls in
+ * any other unit resolve; that also recompiles every other unit. The merged classes are returned in
+ * memory; the caller decides when to write them out as a jar ({@link #writeJar}).</p>
+ *
+ * <p>A full build is done when there is no usable state, when files were added or removed, or when
+ * the environment key (plugin/API/compiler version, package) changed.</p>
+ */
+final class IncrementalCompiler {
+
+    private static final String STATE_FILE = "state.tsv";
+    private static final String STATE_HEADER = "# focuscript incremental state v2";
+    private static final String CLASSES_DIR = "classes";
+    private static final String MAPPING_EXT = ".kotlin_module";
+    private static final String MANIFEST_PATH = "META-INF/MANIFEST.MF";
+
+    /** Each incremental round adds a package mapping file; past this many, start over with a full build. */
+    private static final int MAX_MAPPING_FILES = 8;
+
+    /** Jar entries get a fixed timestamp so identical classes produce identical jars. */
+    private static final long FIXED_ENTRY_TIME = 315532800000L; // 1980-01-01
+
+    /** Inline bodies are copied into callers, so any edit to such a unit counts as an ABI change. */
+    private static final Pattern INLINE_DECLARATION = Pattern.compile("\\binline\\s+(?:[a-z]+\\s+)*(?:fun|val|var)\\b");
+
+    private final KotlinCompilerService kotlin;
+
+    IncrementalCompiler(KotlinCompilerService kotlin) {
+        this.kotlin = Objects.requireNonNull(kotlin, "kotlin");
+    }
+
+    /**
+     * @param coldStart at least one kotlinc run bootstrapped the compiler environment
+     * @param output    jar entries (name -> bytes, sorted by name) of the whole module; empty on failure
+     */
+    record Result(
+            boolean success,
+            List<String> messages,
+            boolean fullBuild,
+            Set<String> compiledUnits,
+            long kotlincMs,
+            long savedMs,
+            boolean coldStart,
+            Map<String, byte[]> output
+    ) {}
+
+    private record UnitState(String textHash, String abiHash, String scopeHash, List<String> outputs, Set<String> deps) {}
+
+    /**
+     * Compiles {@code units} (generated file name -> Kotlin source).
+     *
+     * <p>Works only inside {@code workDir}; on success the new state is published to
+     * {@code stateDir} atomically.</p>
+     *
+     * @throws java.util.concurrent.CancellationException if {@code cancellation} fires before the last
+     *                                                    round has compiled; nothing is published then
+     */
+    Result build(
+            String moduleName,
+            String modulePackage,
+            String envKey,
+            Map<String, String> units,
+            Path genSrcDir,
+            Path stateDir,
+            Path workDir,
+            CompileCancellation cancellation
+    ) throws IOException {
+        return build(moduleName, modulePackage, envKey, units, genSrcDir, stateDir, workDir, cancellation, false);
+    }
+
+    private Result build(
+            String moduleName,
+            String modulePackage,
+            String envKey,
+            Map<String, String> units,
+            Path genSrcDir,
+            Path stateDir,
+            Path workDir,
+            CompileCancellation cancellation,
+            boolean forceFull
+    ) throws IOException {
+        String packageInternal = modulePackage.replace('.', '/');
+
+        Map<String, String> textHashes = new LinkedHashMap<>();
+        for (Map.Entry<String, String> e : units.entrySet()) {
+            textHashes.put(e.getKey(), sha256(e.getValue()));
+        }
+
+        Map<String, UnitState> previous = forceFull ? null : loadState(stateDir, envKey);
+        boolean full = previous == null
+                || !previous.keySet().equals(units.keySet())
+                || countMappingFiles(stateDir.resolve(CLASSES_DIR)) > MAX_MAPPING_FILES;
+
+        Path classesDir = workDir.resolve(CLASSES_DIR);
+        FsCompiler.deleteRecursively(classesDir);
+        Files.createDirectories(classesDir);
+
+        Map<String, UnitState> state = new TreeMap<>();
+        Set<String> compiled = new LinkedHashSet<>();
+        long kotlincMs = 0L;
+        long savedMs = 0L;
+        boolean coldStart = false;
+
+        Set<String> round;
+        if (full) {
+            round = new LinkedHashSet<>(units.keySet());
+        } else {
+            copyTree(stateDir.resolve(CLASSES_DIR), classesDir);
+            state.putAll(previous);
+            round = new LinkedHashSet<>();
+            for (String unit : units.keySet()) {
+                if (!textHashes.get(unit).equals(previous.get(unit).textHash())) {
+                    round.add(unit);
+                }
+            }
+        }
+
+        boolean attributed = true;
+        int roundNo = 0;
+        while (!round.isEmpty()) {
+            cancellation.throwIfCancelled();
+            roundNo++;
+
+            // Drop stale outputs of the units being recompiled so they are not seen on the classpath.
+            for (String unit : round) {
+                UnitState old = state.get(unit);
+                if (old == null) continue;
+                for (String output : old.outputs()) {
+                    Files.deleteIfExists(classesDir.resolve(output));
+                }
+            }
+
+            List<Path> sources = new ArrayList<>();
+            for (String unit : round) {
+                sources.add(genSrcDir.resolve(unit));
+            }
+
+            Path chunkJar = workDir.resolve("chunk-" + roundNo + ".jar");
+            KotlinCompilerService.SessionResult result = kotlin.compile(
+                    sources,
+                    chunkJar,
+                    moduleName,
+                    full ? List.of() : List.of(classesDir),
+                    cancellation
+            );
+            cancellation.throwIfCancelled();
+            kotlincMs += result.elapsedMs();
+            savedMs += result.savedMs();
+            coldStart |= result.coldStart();
+            compiled.addAll(round);
+
+            if (!result.success()) {
+                return new Result(false, result.messages(), full, compiled, kotlincMs, savedMs, coldStart, Map.of());
+            }
+
+            Map<String, byte[]> entries = readJar(chunkJar);
+            Map<String, List<String>> outputsByUnit = new HashMap<>();
+            Map<String, List<String>> abiByUnit = new HashMap<>();
+            Map<String, Set<String>> refsByUnit = new HashMap<>();
+            Map<String, Set<String>> topLevelByUnit = new HashMap<>();
+            Set<String> constantUnits = new HashSet<>();
+
+            for (Map.Entry<String, byte[]> e : entries.entrySet()) {
+                String name = e.getKey();
+                if (MANIFEST_PATH.equals(name)) continue;
+
+                if (name.startsWith("META-INF/") && name.endsWith(MAPPING_EXT) && !full) {
+                    // Keep the mapping of earlier rounds: the compiler reads every *.kotlin_module in META-INF.
+                    String base = name.substring(0, name.length() - MAPPING_EXT.length());
+                    name = base + ".inc-" + sha256(String.join(",", round)).substring(0, 12) + MAPPING_EXT;
+                }
+
+                Path target = classesDir.resolve(name);
+                Files.createDirectories(target.getParent());
+                Files.write(target, e.getValue());
+
+                if (!name.endsWith(".class")) continue;
+                ClassFileAbi.Info info = ClassFileAbi.read(e.getValue(), packageInternal);
+                String unit = info.sourceFile();
+                if (unit == null || !units.containsKey(unit)) {
+                    // Cannot attribute this class; next build must start from scratch.
+                    unit = "?";
+                }
+                outputsByUnit.computeIfAbsent(unit, k -> new ArrayList<>()).add(name);
+                abiByUnit.computeIfAbsent(unit, k -> new ArrayList<>()).addAll(info.abi());
+                refsByUnit.computeIfAbsent(unit, k -> new LinkedHashSet<>()).addAll(info.references());
+                topLevelByUnit.computeIfAbsent(unit, k -> new TreeSet<>()).addAll(info.topLevel());
+                if (info.declaresConstants()) constantUnits.add(unit);
+            }
+
+            if (outputsByUnit.containsKey("?")) {
+                // A class we cannot map back to its file: dependency tracking is unreliable for this
+                // module, so build everything. The published state is replaced once that build is done.
+                if (!full) {
+                    Result retry = build(moduleName, modulePackage, envKey, units, genSrcDir, stateDir, workDir, cancellation, true);
+                    return new Result(retry.success(), retry.messages(), true, retry.compiledUnits(),
+                            kotlincMs + retry.kotlincMs(), savedMs + retry.savedMs(), coldStart || retry.coldStart(), retry.output());
+                }
+                attributed = false;
+            }
+
+            Set<String> abiChanged = new TreeSet<>();
+            boolean scopeChanged = false;
+            for (String unit : round) {
+                List<String> abi = new ArrayList<>(abiByUnit.getOrDefault(unit, List.of()));
+                abi.sort(Comparator.naturalOrder());
+                String abiHash = sha256(String.join("\n", abi));
+                if (INLINE_DECLARATION.matcher(units.get(unit)).find()) {
+                    abiHash = sha256(abiHash + textHashes.get(unit));
+                }
+
+                String scopeHash = sha256(String.join("\n", topLevelByUnit.getOrDefault(unit, Set.of())));
+
+                UnitState old = state.get(unit);
+                if (old == null || !old.abiHash().equals(abiHash)) {
+                    abiChanged.add(unit);
+                }
+                if (old == null || !old.scopeHash().equals(scopeHash)) {
+                    scopeChanged = true;
+                }
+                state.put(unit, new UnitState(
+                        textHashes.get(unit),
+                        abiHash,
+                        scopeHash,
+                        List.copyOf(outputsByUnit.getOrDefault(unit, List.of())),
+                        Set.of() // resolved below, once every unit's outputs are known
+                ));
+            }
+
+            Map<String, String> unitByClass = indexClasses(state);
+            for (String unit : round) {
+                Set<String> deps = new TreeSet<>();
+                for (String ref : refsByUnit.getOrDefault(unit, Set.of())) {
+                    String owner = unitByClass.get(ref);
+                    if (owner != null && !owner.equals(unit)) deps.add(owner);
+                }
+                UnitState s = state.get(unit);
+                state.put(unit, new UnitState(s.textHash(), s.abiHash(), s.scopeHash(), s.outputs(), deps));
+            }
+
+            Set<String> next = new LinkedHashSet<>();
+            if (!full && (scopeChanged || !abiChanged.isEmpty())) {
+                // Inlined constants and same-package name resolution leave no reference to follow.
+                boolean everyUnit = scopeChanged || abiChanged.stream().anyMatch(constantUnits::contains);
+                for (Map.Entry<String, UnitState> e : state.entrySet()) {
+                    if (compiled.contains(e.getKey())) continue;
+                    if (everyUnit) {
+                        next.add(e.getKey());
+                        continue;
+                    }
+                    for (String dep : e.getValue().deps()) {
+                        if (abiChanged.contains(dep)) {
+                            next.add(e.getKey());
+                            break;
+                        }
+                    }
+                }
+            }
+            round = next;
+        }
+
+        Map<String, byte[]> output = readTree(classesDir);
+
+        // Publish state: classes + state file, replacing the previous state as a whole. Without reliable
+        // attribution an empty state is published instead, so the next build is a full one.
+        Path newState = workDir.resolve("incremental");
+        Files.createDirectories(newState);
+        if (attributed) {
+            Files.move(classesDir, newState.resolve(CLASSES_DIR));
+            writeState(newState.resolve(STATE_FILE), envKey, state);
+        }
+        FsCompiler.publishDirectory(newState, stateDir, workDir);
+
+        return new Result(true, List.of(), full, compiled, kotlincMs, savedMs, coldStart, output);
+    }
+
+    private static Map<String, String> indexClasses(Map<String, UnitState> state) {
+        Map<String, String> out = new HashMap<>();
+        for (Map.Entry<String, UnitState> e : state.entrySet()) {
+            for (String output : e.getValue().outputs()) {
+                if (!output.endsWith(".class")) continue;
+                out.put(output.substring(0, output.length() - ".class".length()), e.getKey());
+            }
+        }
+        return out;
+    }
+
+    private static Map<String, UnitState> loadState(Path stateDir, String envKey) {
+        Path file = stateDir.resolve(STATE_FILE);
+        if (!Files.isRegularFile(file) || !Files.isDirectory(stateDir.resolve(CLASSES_DIR))) return null;
+
+        try {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            if (lines.isEmpty() || !STATE_HEADER.equals(lines.get(0))) return null;
+
+            Map<String, UnitState> out = new TreeMap<>();
+            boolean envMatches = false;
+            for (String line : lines.subList(1, lines.size())) {
+                if (line.isBlank()) continue;
+                String[] cols = line.split("\t", -1);
+                if (cols.length == 2 && "env".equals(cols[0])) {
+                    envMatches = envKey.equals(cols[1]);
+                } else if (cols.length == 7 && "unit".equals(cols[0])) {
+                    out.put(cols[1], new UnitState(cols[2], cols[3], cols[4], splitList(cols[5]), new TreeSet<>(splitList(cols[6]))));
+                } else {
+                    return null;
+                }
+            }
+            return envMatches ? out : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void writeState(Path file, String envKey, Map<String, UnitState> state) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append(STATE_HEADER).append('\n');
+        sb.append("env\t").append(envKey).append('\n');
+        for (Map.Entry<String, UnitState> e : state.entrySet()) {
+            UnitState s = e.getValue();
+            sb.append("unit\t").append(e.getKey())
+                    .append('\t').append(s.textHash())
+                    .append('\t').append(s.abiHash())
+                    .append('\t').append(s.scopeHash())
+                    .append('\t').append(String.join(",", s.outputs()))
+                    .append('\t').append(String.join(",", s.deps()))
+                    .append('\n');
+        }
+        Files.writeString(file, sb.toString(), StandardCharsets.UTF_8);
+    }
+
+    private static List<String> splitList(String s) {
+        if (s == null || s.isEmpty()) return List.of();
+        return List.of(s.split(","));
+    }
+
+    private static int countMappingFiles(Path classesDir) {
+        Path metaInf = classesDir.resolve("META-INF");
+        if (!Files.isDirectory(metaInf)) return 0;
+        try (var list = Files.list(metaInf)) {
+            return (int) list.filter(p -> p.getFileName().toString().endsWith(MAPPING_EXT)).count();
+        } catch (IOException e) {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    static Map<String, byte[]> readJar(Path jar) throws IOException {
+        Map<String, byte[]> out = new LinkedHashMap<>();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(jar));
+             ZipInputStream zip = new ZipInputStream(in)) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.isDirectory()) continue;
+                ByteArrayOutputStream buf = new ByteArrayOutputStream();
+                zip.transferTo(buf);
+                out.put(entry.getName(), buf.toByteArray());
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Every file under {@code classesDir} as jar entries, sorted by name.
+     */
+    private static Map<String, byte[]> readTree(Path classesDir) throws IOException {
+        Map<String, byte[]> out = new TreeMap<>();
+        try (var walk = Files.walk(classesDir)) {
+            for (Path file : (Iterable<Path>) walk::iterator) {
+                if (!Files.isRegularFile(file)) continue;
+                String name = classesDir.relativize(file).toString().replace('\\', '/');
+                if (MANIFEST_PATH.equals(name)) continue;
+                out.put(name, Files.readAllBytes(file));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Writes {@code entries} into a jar with stable ordering and timestamps, so identical classes give
+     * identical jars.
+     */
+    static void writeJar(Map<String, byte[]> entries, Path outJar) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue("Created-By", "Focuscript");
+
+        try (OutputStream out = Files.newOutputStream(outJar);
+             JarOutputStream jar = new JarOutputStream(out)) {
+            JarEntry mf = new JarEntry(MANIFEST_PATH);
+            mf.setTime(FIXED_ENTRY_TIME);
+            jar.putNextEntry(mf);
+            manifest.write(jar);
+            jar.closeEntry();
+
+            for (Map.Entry<String, byte[]> e : new TreeMap<>(entries).entrySet()) {
+                if (MANIFEST_PATH.equals(e.getKey())) continue;
+                JarEntry entry = new JarEntry(e.getKey());
+                entry.setTime(FIXED_ENTRY_TIME);
+                jar.putNextEntry(entry);
+                jar.write(e.getValue());
+                jar.closeEntry();
+            }
+        }
+    }
+
+    private static void copyTree(Path from, Path to) throws IOException {
+        try (var walk = Files.walk(from)) {
+            for (Path p : (Iterable<Path>) walk::iterator) {
+                Path target = to.resolve(from.relativize(p).toString());
+                if (Files.isDirectory(p)) {
+                    Files.createDirectories(target);
+                } else {
+                    Files.copy(p, target);
+                }
+            }
+        }
+    }
+
+    private static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return FsCompiler.toHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
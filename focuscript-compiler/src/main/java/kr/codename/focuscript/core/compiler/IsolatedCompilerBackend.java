@@ -0,0 +1,284 @@
+package kr.codename.focuscript.core.compiler;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.Cleaner;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BooleanSupplier;
+
+/**
+ * In-process {@link CompilerBackend} whose compiler can be thrown away.
+ *
+ * <p>The Kotlin compiler is loaded through a dedicated {@link URLClassLoader} over
+ * {@link CompilerClasspath} (parent: the platform loader), so none of its classes, static caches or the
+ * kept-alive compiler environment are reachable from the plugin. {@link #releaseIfIdle()} drops that
+ * loader once no compile has run for the idle period; the next compile loads it again.</p>
+ *
+ * <p>Owned by {@link FsCompiler}, which compiles through it in process and hands it to
+ * {@link CompileWorkerPool} as the fallback for when no worker JVM can be started.</p>
+ *
+ * <p>Calls cross the loader boundary reflectively with JDK types only, since the loader has its own
+ * copy of {@link KotlinCompilerInvoker}. The memory given back is logged once the loader has actually
+ * been collected (no GC is forced).</p>
+ *
+ * <p>The compiler leaves ThreadLocals on the threads that ran it. {@link CompileExecutor} threads
+ * exit after 30 s idle, so the idle period should stay well above that or the loader lingers until
+ * they do.</p>
+ */
+final class IsolatedCompilerBackend implements CompilerBackend {
+
+    private static final String INVOKER_CLASS = "kr.codename.focuscript.core.compiler.KotlinCompilerInvoker";
+    private static final String ENVIRONMENT_CLASS = "org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment";
+    private static final Cleaner CLEANER = Cleaner.create();
+    private static final long DISPOSE_WAIT_MS = 10_000L;
+
+    /** The compiler as loaded by one isolated loader. */
+    private record Loaded(URLClassLoader loader, Object invoker, MethodHandle compile, MethodHandle analyze, MethodHandle success, MethodHandle messages, MethodHandle coldStart) {}
+
+    /** One call into the loaded invoker; returns its (foreign) CompileResult. */
+    @FunctionalInterface
+    private interface Call {
+        Object invoke(Loaded compiler) throws Throwable;
+    }
+
+    private final long idleMs;
+    private final CompilerLog log;
+
+    private Loaded loaded;
+    private int active;
+    private long lastUsedAt;
+    private int loads;
+
+    /**
+     * @param idleMs release the compiler after this long without compiles; {@code <= 0} never
+     */
+    IsolatedCompilerBackend(long idleMs, CompilerLog log) {
+        this.idleMs = idleMs;
+        this.log = Objects.requireNonNull(log, "log");
+    }
+
+    @Override
+    public KotlinCompilerInvoker.CompileResult compile(
+            List<Path> sources,
+            String classpath,
+            Path outDir,
+            String moduleName,
+            String jvmTarget,
+            List<Path> friendPaths,
+            CompileCancellation cancellation
+    ) {
+        return call(compiler -> compiler.compile().invoke(
+                compiler.invoker(),
+                List.copyOf(sources),
+                classpath,
+                outDir,
+                moduleName,
+                jvmTarget,
+                friendPaths == null ? List.<Path>of() : List.copyOf(friendPaths),
+                (BooleanSupplier) cancellation
+        ));
+    }
+
+    @Override
+    public KotlinCompilerInvoker.CompileResult analyze(
+            List<Path> sources,
+            String classpath,
+            String moduleName,
+            String jvmTarget,
+            CompileCancellation cancellation
+    ) {
+        return call(compiler -> compiler.analyze().invoke(
+                compiler.invoker(),
+                List.copyOf(sources),
+                classpath,
+                moduleName,
+                jvmTarget,
+                (BooleanSupplier) cancellation
+        ));
+    }
+
+    private KotlinCompilerInvoker.CompileResult call(Call call) {
+        Loaded compiler;
+        try {
+            compiler = acquire();
+        } catch (Exception e) {
+            return new KotlinCompilerInvoker.CompileResult(false, List.of("Failed to load the Kotlin compiler: " + e));
+        }
+
+        Thread thread = Thread.currentThread();
+        ClassLoader previous = thread.getContextClassLoader();
+        thread.setContextClassLoader(compiler.loader());
+        try {
+            Object result = call.invoke(compiler);
+            @SuppressWarnings("unchecked")
+            List<String> messages = (List<String>) compiler.messages().invoke(result);
+            return new KotlinCompilerInvoker.CompileResult((boolean) compiler.success().invoke(result), List.copyOf(messages),
+                    (boolean) compiler.coldStart().invoke(result));
+        } catch (Throwable t) {
+            return new KotlinCompilerInvoker.CompileResult(false, List.of("Kotlin compiler crashed: " + t));
+        } finally {
+            thread.setContextClassLoader(previous);
+            release();
+        }
+    }
+
+    synchronized boolean isLoaded() {
+        return loaded != null;
+    }
+
+    /**
+     * Drops the compiler if it is loaded, idle for the configured period and not compiling.
+     *
+     * @return true if it was released
+     */
+    boolean releaseIfIdle() {
+        Loaded dropped;
+        synchronized (this) {
+            if (loaded == null || active > 0 || idleMs <= 0) return false;
+            if (System.currentTimeMillis() - lastUsedAt < idleMs) return false;
+            dropped = loaded;
+            loaded = null;
+        }
+        unload(dropped, "idle for " + (idleMs / 1000L) + " s");
+        return true;
+    }
+
+    @Override
+    public void close() {
+        Loaded dropped;
+        synchronized (this) {
+            dropped = loaded;
+            loaded = null;
+        }
+        if (dropped != null) unload(dropped, null);
+    }
+
+    private synchronized Loaded acquire() throws Exception {
+        if (loaded == null) {
+            long start = System.nanoTime();
+            loaded = load();
+            loads++;
+            if (loads > 1) {
+                log.info("Kotlin compiler reloaded in " + ((System.nanoTime() - start) / 1_000_000L) + " ms.");
+            }
+        }
+        active++;
+        return loaded;
+    }
+
+    private synchronized void release() {
+        active--;
+        lastUsedAt = System.currentTimeMillis();
+    }
+
+    private static Loaded load() throws Exception {
+        List<Path> jars = CompilerClasspath.locate();
+        URL[] urls = new URL[jars.size()];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = jars.get(i).toUri().toURL();
+        }
+
+        URLClassLoader loader = new URLClassLoader("focuscript-kotlinc", urls, ClassLoader.getPlatformClassLoader());
+        try {
+            Class<?> invokerClass = Class.forName(INVOKER_CLASS, true, loader);
+            Class<?> resultClass = Class.forName(INVOKER_CLASS + "$CompileResult", true, loader);
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+            Object invoker = lookup.findConstructor(invokerClass, MethodType.methodType(void.class)).invoke();
+            MethodHandle compile = lookup.findVirtual(invokerClass, "compileJvmJar", MethodType.methodType(
+                    resultClass, List.class, String.class, Path.class, String.class, String.class, List.class, BooleanSupplier.class));
+            MethodHandle analyze = lookup.findVirtual(invokerClass, "analyzeJvm", MethodType.methodType(
+                    resultClass, List.class, String.class, String.class, String.class, BooleanSupplier.class));
+            MethodHandle success = lookup.findVirtual(resultClass, "success", MethodType.methodType(boolean.class));
+            MethodHandle messages = lookup.findVirtual(resultClass, "messages", MethodType.methodType(List.class));
+            MethodHandle coldStart = lookup.findVirtual(resultClass, "coldStart", MethodType.methodType(boolean.class));
+            return new Loaded(loader, invoker, compile, analyze, success, messages, coldStart);
+        } catch (Throwable t) {
+            loader.close();
+            if (t instanceof Exception e) throw e;
+            throw new IllegalStateException(t);
+        }
+    }
+
+    /**
+     * Disposes the kept-alive compiler environment, closes the loader and logs what was reclaimed once
+     * the loader is collected.
+     *
+     * @param reason null for shutdown (nothing is logged)
+     */
+    private void unload(Loaded dropped, String reason) {
+        URLClassLoader loader = dropped.loader();
+
+        // Disposing touches the compiler's message bus, which parks a queue in a ThreadLocal of the
+        // calling thread. Do it on a throwaway thread so no pooled thread keeps the loader reachable.
+        Thread disposer = new Thread(() -> {
+            try {
+                Class.forName(ENVIRONMENT_CLASS, false, loader).getMethod("disposeApplicationEnvironment").invoke(null);
+            } catch (Throwable ignored) {
+                // Older/newer compilers: the loader still goes away, the environment with it.
+            }
+        }, "Focuscript-CompilerUnload");
+        disposer.setDaemon(true);
+        disposer.setContextClassLoader(loader);
+        disposer.start();
+        try {
+            disposer.join(DISPOSE_WAIT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            loader.close();
+        } catch (Exception ignored) {
+        }
+        if (reason == null) return;
+
+        ClassLoadingMXBean classes = ManagementFactory.getClassLoadingMXBean();
+        long unloadedBefore = classes.getUnloadedClassCount();
+        long metaspaceBefore = metaspaceUsed();
+        long heapBefore = heapUsedAfterLastGc();
+
+        log.info("Kotlin compiler released (" + reason + "); it is loaded again on the next compile.");
+        CLEANER.register(loader, () -> {
+            long unloaded = ManagementFactory.getClassLoadingMXBean().getUnloadedClassCount() - unloadedBefore;
+            log.info("Kotlin compiler unloaded: " + unloaded + " classes, ~"
+                    + toMb(metaspaceBefore - metaspaceUsed()) + " MB metaspace and ~"
+                    + toMb(heapBefore - heapUsedAfterLastGc()) + " MB heap reclaimed.");
+        });
+    }
+
+    private static long metaspaceUsed() {
+        long used = 0L;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.NON_HEAP && pool.getName().contains("Metaspace")) {
+                used += pool.getUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    /** Heap still live after each pool's most recent collection (ignores garbage not yet collected). */
+    private static long heapUsedAfterLastGc() {
+        long used = 0L;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.HEAP) continue;
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (usage != null) used += usage.getUsed();
+        }
+        return used;
+    }
+
+    private static long toMb(long bytes) {
+        return Math.max(0L, bytes) / (1024L * 1024L);
+    }
+}
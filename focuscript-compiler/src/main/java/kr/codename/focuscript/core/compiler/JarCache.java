@@ -0,0 +1,339 @@
+package kr.codename.focuscript.core.compiler;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds the compiled jar cache under {@code _build/<id>/cache}.
+ *
+ * <p>Every cache miss leaves a {@code <key>.jar} behind. Its access time is the mtime of an empty
+ * {@code <key>.used} marker next to it, touched on every hit, so sorting by it gives LRU order without
+ * relying on the file system's atime (often disabled). The jar's own mtime cannot serve: jars hard-linked
+ * from the shared {@link ArtifactStore} are one file, so touching one module's link would make every other
+ * module's link look just as recently used. A hit touches the shared file as well, which then dates the
+ * store entry: the last use through any link. Jars without a marker (written before markers existed)
+ * fall back to their mtime.</p>
+ *
+ * <p>{@link #sweep()} evicts, in this order: jars older than the age limit, the least recently used
+ * jars of a module over the per-module cap, then the least recently used jars overall until the total
+ * fits. The most recently used jar of each module is never evicted, and neither is a jar
+ * {@linkplain #pin pinned} by a loaded module, since modules load straight from the cache.</p>
+ *
+ * <p>Jars may be hard links into the shared {@link ArtifactStore}; sizes are counted once per file. Store
+ * entries that no module cache links to anymore are subject to the age and total limits like any other
+ * jar.</p>
+ */
+public final class JarCache {
+
+    /**
+     * @param maxTotalBytes     cap over all modules; {@code <= 0} disables
+     * @param maxPerModuleBytes cap per module; {@code <= 0} disables
+     * @param maxAgeMs          evict jars not used for this long; {@code <= 0} disables
+     */
+    public record Limits(long maxTotalBytes, long maxPerModuleBytes, long maxAgeMs) {}
+
+    /** Counters since startup, plus the size seen by the last sweep. */
+    public record Stats(
+            long hits,
+            long sharedHits,
+            long misses,
+            long evictions,
+            long evictedBytes,
+            int jars,
+            long totalBytes,
+            long lastSweepAt
+    ) {}
+
+    /** @param fileKey identity of the underlying file (shared by hard links), or null if unknown */
+    private record CachedJar(Path path, long size, long lastUsedMs, Object fileKey) {}
+
+    private static final String CACHE_DIR = "cache";
+    private static final String JAR_EXT = ".jar";
+    private static final String USED_EXT = ".used";
+
+    private final Path buildRoot;
+    private final Limits limits;
+    private final CompilerLog log;
+
+    private final Map<Path, Integer> pinned = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong sharedHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong evictedBytes = new AtomicLong();
+
+    private volatile int lastJarCount = -1;
+    private volatile long lastTotalBytes = -1L;
+    private volatile long lastSweepAt = 0L;
+
+    public JarCache(Path buildRoot, Limits limits, CompilerLog log) {
+        this.buildRoot = Objects.requireNonNull(buildRoot, "buildRoot");
+        this.limits = Objects.requireNonNull(limits, "limits");
+        this.log = Objects.requireNonNull(log, "log");
+    }
+
+    /**
+     * Limits from the {@code cache} section of config.yml (sizes in MB, age in days).
+     */
+    public static Limits limitsFromConfig(long maxTotalMb, long maxPerModuleMb, long maxAgeDays) {
+        return new Limits(
+                maxTotalMb * 1024L * 1024L,
+                maxPerModuleMb * 1024L * 1024L,
+                TimeUnit.DAYS.toMillis(maxAgeDays)
+        );
+    }
+
+    public Limits getLimits() {
+        return limits;
+    }
+
+    /**
+     * Marks {@code jar} as just used so it sorts last for eviction.
+     */
+    void recordHit(Path jar) {
+        hits.incrementAndGet();
+        markUsed(jar);
+    }
+
+    /**
+     * A jar just written for this module; marks it as used without counting a hit.
+     */
+    void recordWrite(Path jar) {
+        markUsed(jar);
+    }
+
+    /**
+     * A hit on a jar taken from the shared store for this module; counts as a hit as well.
+     */
+    void recordSharedHit(Path jar) {
+        sharedHits.incrementAndGet();
+        recordHit(jar);
+    }
+
+    /**
+     * Protects {@code jar} from eviction while a module has it open. Calls nest; each needs an
+     * {@link #unpin}.
+     */
+    public void pin(Path jar) {
+        pinned.merge(jar.toAbsolutePath().normalize(), 1, Integer::sum);
+    }
+
+    public void unpin(Path jar) {
+        pinned.computeIfPresent(jar.toAbsolutePath().normalize(), (k, n) -> n > 1 ? n - 1 : null);
+    }
+
+    private static void markUsed(Path jar) {
+        FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+        Path marker = usedMarker(jar);
+        try {
+            try {
+                Files.createFile(marker);
+            } catch (FileAlreadyExistsException ignored) {
+            }
+            Files.setLastModifiedTime(marker, now);
+            Files.setLastModifiedTime(jar, now);
+        } catch (IOException ignored) {
+            // Worst case the jar is evicted a little early.
+        }
+    }
+
+    private static Path usedMarker(Path jar) {
+        String name = jar.getFileName().toString();
+        return jar.resolveSibling(name.substring(0, name.length() - JAR_EXT.length()) + USED_EXT);
+    }
+
+    void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    /**
+     * Applies the age and per-module limits to a single module's cache directory. Called right after a
+     * new jar is written, so one busy module cannot grow far past its cap between sweeps.
+     */
+    synchronized void trimModule(Path cacheDir) {
+        List<CachedJar> jars = listJars(cacheDir);
+        evictModule(jars, System.currentTimeMillis());
+    }
+
+    /**
+     * Enforces all limits over every module. Blocking; call from an async thread.
+     *
+     * @return number of jars evicted by this sweep
+     */
+    public synchronized int sweep() {
+        long before = evictions.get();
+        long now = System.currentTimeMillis();
+
+        Map<Path, List<CachedJar>> byModule = new LinkedHashMap<>();
+        if (Files.isDirectory(buildRoot)) {
+            try (DirectoryStream<Path> modules = Files.newDirectoryStream(buildRoot, Files::isDirectory)) {
+                for (Path moduleDir : modules) {
+                    Path cacheDir = moduleDir.resolve(CACHE_DIR);
+                    if (!Files.isDirectory(cacheDir)) continue;
+                    byModule.put(moduleDir, listJars(cacheDir));
+                }
+            } catch (IOException e) {
+                log.warn("Jar cache sweep failed to list " + buildRoot + ": " + e.getMessage());
+                return 0;
+            }
+        }
+
+        // Per module: age + per-module cap. Survivors except each module's newest jar are candidates
+        // for the global cap.
+        List<CachedJar> candidates = new ArrayList<>();
+        Map<Object, Integer> links = new HashMap<>();
+        long total = 0L;
+        int count = 0;
+        for (List<CachedJar> jars : byModule.values()) {
+            List<CachedJar> kept = evictModule(jars, now);
+            for (int i = 0; i < kept.size(); i++) {
+                CachedJar jar = kept.get(i);
+                total += link(links, jar);
+                count++;
+                if (i > 0) candidates.add(jar);
+            }
+        }
+
+        // Shared store: an entry a module cache links to costs nothing extra. The others are only kept
+        // for later reuse, within the age and total limits.
+        Path storeDir = buildRoot.resolve(ArtifactStore.DIR);
+        if (Files.isDirectory(storeDir)) {
+            for (CachedJar jar : listJars(storeDir)) {
+                if (jar.fileKey() != null && links.containsKey(jar.fileKey())) continue;
+                boolean expired = limits.maxAgeMs() > 0 && now - jar.lastUsedMs() > limits.maxAgeMs();
+                if (expired && evict(jar)) continue;
+                total += link(links, jar);
+                count++;
+                candidates.add(jar);
+            }
+        }
+
+        if (limits.maxTotalBytes() > 0 && total > limits.maxTotalBytes()) {
+            candidates.sort(Comparator.comparingLong(CachedJar::lastUsedMs));
+            for (CachedJar jar : candidates) {
+                if (total <= limits.maxTotalBytes()) break;
+                if (evict(jar)) {
+                    total -= unlink(links, jar);
+                    count--;
+                }
+            }
+        }
+
+        lastJarCount = count;
+        lastTotalBytes = total;
+        lastSweepAt = now;
+
+        int evicted = (int) (evictions.get() - before);
+        if (evicted > 0) {
+            log.info("Jar cache: evicted " + evicted + " jar(s), " + count + " left (" + (total / 1024L) + " KB).");
+        }
+        return evicted;
+    }
+
+    public Stats stats() {
+        return new Stats(
+                hits.get(),
+                sharedHits.get(),
+                misses.get(),
+                evictions.get(),
+                evictedBytes.get(),
+                lastJarCount,
+                lastTotalBytes,
+                lastSweepAt
+        );
+    }
+
+    /**
+     * @param jars one module's jars, any order
+     * @return surviving jars, most recently used first
+     */
+    private List<CachedJar> evictModule(List<CachedJar> jars, long now) {
+        List<CachedJar> sorted = new ArrayList<>(jars);
+        sorted.sort(Comparator.comparingLong(CachedJar::lastUsedMs).reversed());
+
+        List<CachedJar> kept = new ArrayList<>();
+        long moduleBytes = 0L;
+        for (int i = 0; i < sorted.size(); i++) {
+            CachedJar jar = sorted.get(i);
+            boolean newest = i == 0;
+            boolean expired = limits.maxAgeMs() > 0 && now - jar.lastUsedMs() > limits.maxAgeMs();
+            boolean overCap = limits.maxPerModuleBytes() > 0 && moduleBytes + jar.size() > limits.maxPerModuleBytes();
+
+            if (!newest && (expired || overCap) && evict(jar)) {
+                continue;
+            }
+            kept.add(jar);
+            moduleBytes += jar.size();
+        }
+        return kept;
+    }
+
+    /** Bytes {@code jar} adds to the total: its size, unless another counted jar is the same file. */
+    private static long link(Map<Object, Integer> links, CachedJar jar) {
+        if (jar.fileKey() == null) return jar.size();
+        return links.merge(jar.fileKey(), 1, Integer::sum) == 1 ? jar.size() : 0L;
+    }
+
+    /** Bytes freed by removing {@code jar}: its size, if it was the file's last counted link. */
+    private static long unlink(Map<Object, Integer> links, CachedJar jar) {
+        if (jar.fileKey() == null) return jar.size();
+        return links.computeIfPresent(jar.fileKey(), (k, n) -> n > 1 ? n - 1 : null) == null ? jar.size() : 0L;
+    }
+
+    private boolean evict(CachedJar jar) {
+        if (pinned.containsKey(jar.path().toAbsolutePath().normalize())) return false;
+        try {
+            if (Files.deleteIfExists(jar.path())) {
+                evictions.incrementAndGet();
+                evictedBytes.addAndGet(jar.size());
+            }
+            Files.deleteIfExists(usedMarker(jar.path()));
+            return true;
+        } catch (IOException e) {
+            // Locked (e.g. open on Windows); try again next sweep.
+            return false;
+        }
+    }
+
+    /** The jar's own marker if it has one, else the (possibly shared) file's mtime. */
+    private static long lastUsedMs(Path jar, BasicFileAttributes attrs) {
+        try {
+            return Files.getLastModifiedTime(usedMarker(jar)).toMillis();
+        } catch (IOException e) {
+            return attrs.lastModifiedTime().toMillis();
+        }
+    }
+
+    private static List<CachedJar> listJars(Path cacheDir) {
+        List<CachedJar> out = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir, "*" + JAR_EXT)) {
+            for (Path jar : stream) {
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(jar, BasicFileAttributes.class);
+                    if (!attrs.isRegularFile()) continue;
+                    out.add(new CachedJar(jar, attrs.size(), lastUsedMs(jar, attrs), attrs.fileKey()));
+                } catch (IOException ignored) {
+                    // Removed concurrently.
+                }
+            }
+        } catch (IOException ignored) {
+        }
+        return out;
+    }
+}
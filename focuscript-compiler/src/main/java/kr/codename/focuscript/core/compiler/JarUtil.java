@@ -14,13 +14,31 @@ public final class JarUtil {
     private JarUtil() {}
 
     public static Path locationOf(Class<?> cls) {
-        try {
-            CodeSource source = cls.getProtectionDomain().getCodeSource();
-            if (source == null) return null;
+        CodeSource source = cls.getProtectionDomain().getCodeSource();
+        if (source == null) return null;
+        return toPath(source.getLocation());
+    }
 
-            URL url = source.getLocation();
-            if (url == null) return null;
+    /**
+     * Jar or directory a resource was found in, from the URL {@link ClassLoader#getResource} returned for
+     * {@code name}. Unlike {@link #locationOf(Class)} this does not load anything.
+     */
+    public static Path locationOf(URL resource, String name) {
+        if (resource == null) return null;
+        if ("file".equalsIgnoreCase(resource.getProtocol())) {
+            // Exploded directory: walk back up from the resource to the root it was found in.
+            Path path = toPath(resource);
+            for (int i = name.split("/").length; i > 0 && path != null; i--) {
+                path = path.getParent();
+            }
+            return path;
+        }
+        return toPath(resource);
+    }
 
+    private static Path toPath(URL url) {
+        try {
+            if (url == null) return null;
             // Some classloaders provide a "jar:" URL (e.g. jar:file:/...!/).
             // Path.of(URI) with scheme "jar" requires an attached ZipFileSystem;
             // if it's not mounted you'll get FileSystemNotFoundException.
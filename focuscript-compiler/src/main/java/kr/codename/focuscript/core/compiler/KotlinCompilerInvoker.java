@@ -0,0 +1,290 @@
+package kr.codename.focuscript.core.compiler;
+
+import org.jetbrains.kotlin.cli.common.ExitCode;
+import org.jetbrains.kotlin.cli.common.arguments.K2JVMCompilerArguments;
+import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSourceLocation;
+import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity;
+import org.jetbrains.kotlin.cli.common.messages.MessageCollector;
+import org.jetbrains.kotlin.backend.common.phaser.PhaseBuildersKt;
+import org.jetbrains.kotlin.cli.jvm.K2JVMCompiler;
+import org.jetbrains.kotlin.cli.pipeline.AbstractCliPipeline;
+import org.jetbrains.kotlin.cli.pipeline.ArgumentsPipelineArtifact;
+import org.jetbrains.kotlin.cli.pipeline.PipelineContext;
+import org.jetbrains.kotlin.cli.pipeline.jvm.JvmConfigurationPipelinePhase;
+import org.jetbrains.kotlin.cli.pipeline.jvm.JvmFrontendPipelinePhase;
+import org.jetbrains.kotlin.config.Services;
+import org.jetbrains.kotlin.config.phaser.CompilerPhase;
+import org.jetbrains.kotlin.progress.CompilationCanceledException;
+import org.jetbrains.kotlin.progress.CompilationCanceledStatus;
+import org.jetbrains.kotlin.util.PerformanceManager;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Minimal Kotlin compiler invoker (embeddable).
+ *
+ * <p>The in-process {@link CompilerBackend}. Also what each {@link CompileWorkerMain} runs, so it must not
+ * touch Bukkit/Adventure classes.</p>
+ */
+public final class KotlinCompilerInvoker implements CompilerBackend {
+
+    static final String CANCELLED_MESSAGE = "Compilation cancelled";
+
+    /*
+     * kotlinc keeps its CompilationCanceledStatus in a static field, shared by concurrent compiles.
+     * Every compile registers the same status; it looks up the flag of the compile on the calling thread.
+     */
+    private static final Map<Thread, BooleanSupplier> CANCELLED = new ConcurrentHashMap<>();
+    private static final CompilationCanceledStatus CANCELED_STATUS = () -> {
+        BooleanSupplier cancelled = CANCELLED.get(Thread.currentThread());
+        if (cancelled != null && cancelled.getAsBoolean()) {
+            throw new CompilationCanceledException();
+        }
+    };
+
+    /*
+     * The kept-alive compiler environment lives in kotlinc's statics, so it is warm per class loader: a new
+     * isolated loader or worker JVM starts cold again.
+     */
+    private static volatile boolean environmentStarted;
+
+    public KotlinCompilerInvoker() {}
+
+    /**
+     * @param coldStart this call bootstrapped the compiler environment instead of reusing a warm one
+     */
+    public record CompileResult(boolean success, List<String> messages, boolean coldStart) {
+        public CompileResult(boolean success, List<String> messages) {
+            this(success, messages, false);
+        }
+    }
+
+    @Override
+    public CompileResult compile(
+            List<Path> sources,
+            String classpath,
+            Path outDir,
+            String moduleName,
+            String jvmTarget,
+            List<Path> friendPaths,
+            CompileCancellation cancellation
+    ) {
+        return compileJvmJar(sources, classpath, outDir, moduleName, jvmTarget, friendPaths, cancellation);
+    }
+
+    public CompileResult compileJvmJar(
+            List<Path> sources,
+            String classpath,
+            Path outJar,
+            String moduleName,
+            String jvmTarget
+    ) {
+        return compileJvmJar(sources, classpath, outJar, moduleName, jvmTarget, List.of());
+    }
+
+    /**
+     * @param friendPaths classpath roots whose {@code internal} declarations are visible to the sources
+     *                    (previous output of the same module, used by incremental builds)
+     */
+    public CompileResult compileJvmJar(
+            List<Path> sources,
+            String classpath,
+            Path outJar,
+            String moduleName,
+            String jvmTarget,
+            List<Path> friendPaths
+    ) {
+        return compileJvmJar(sources, classpath, outJar, moduleName, jvmTarget, friendPaths, () -> false);
+    }
+
+    /**
+     * @param cancelled polled by kotlinc on this thread; once true the compile stops and fails with
+     *                  {@link #CANCELLED_MESSAGE}
+     */
+    public CompileResult compileJvmJar(
+            List<Path> sources,
+            String classpath,
+            Path outJar,
+            String moduleName,
+            String jvmTarget,
+            List<Path> friendPaths,
+            BooleanSupplier cancelled
+    ) {
+        Objects.requireNonNull(outJar, "outJar");
+        K2JVMCompilerArguments args = arguments(sources, classpath, moduleName, jvmTarget, friendPaths);
+        args.setDestination(outJar.toString());
+        K2JVMCompiler compiler = new K2JVMCompiler();
+        return run(cancelled, (collector, services) -> compiler.exec(collector, services, args));
+    }
+
+    @Override
+    public CompileResult analyze(
+            List<Path> sources,
+            String classpath,
+            String moduleName,
+            String jvmTarget,
+            CompileCancellation cancellation
+    ) {
+        return analyzeJvm(sources, classpath, moduleName, jvmTarget, cancellation);
+    }
+
+    /**
+     * Runs only the compiler frontend (parsing, resolution, checkers) and reports its diagnostics; no
+     * IR, bytecode or output files.
+     *
+     * @param cancelled polled by kotlinc on this thread, as for {@link #compileJvmJar}
+     */
+    public CompileResult analyzeJvm(
+            List<Path> sources,
+            String classpath,
+            String moduleName,
+            String jvmTarget,
+            BooleanSupplier cancelled
+    ) {
+        K2JVMCompilerArguments args = arguments(sources, classpath, moduleName, jvmTarget, List.of());
+        return run(cancelled, (collector, services) -> new FrontendPipeline().execute(args, services, collector));
+    }
+
+    private static K2JVMCompilerArguments arguments(
+            List<Path> sources,
+            String classpath,
+            String moduleName,
+            String jvmTarget,
+            List<Path> friendPaths
+    ) {
+        Objects.requireNonNull(sources, "sources");
+        Objects.requireNonNull(classpath, "classpath");
+
+        K2JVMCompilerArguments args = new K2JVMCompilerArguments();
+        args.setFreeArgs(sources.stream().map(Path::toString).toList());
+        args.setClasspath(classpath);
+        if (friendPaths != null && !friendPaths.isEmpty()) {
+            args.setFriendPaths(friendPaths.stream().map(Path::toString).toArray(String[]::new));
+        }
+
+        // We provide stdlib explicitly in classpath.
+        args.setNoStdlib(true);
+        args.setNoReflect(true);
+
+        args.setModuleName(sanitizeModuleName(moduleName));
+        args.setJvmTarget(jvmTarget);
+
+        // Be less noisy by default (still collect WARN/ERROR).
+        args.setVerbose(false);
+        return args;
+    }
+
+    @FunctionalInterface
+    private interface Execution {
+        ExitCode exec(MessageCollector collector, Services services);
+    }
+
+    private static CompileResult run(BooleanSupplier cancelled, Execution execution) {
+        CollectingMessageCollector collector = new CollectingMessageCollector();
+
+        if (cancelled.getAsBoolean()) {
+            return new CompileResult(false, List.of(CANCELLED_MESSAGE));
+        }
+
+        Services services = new Services.Builder()
+                .register(CompilationCanceledStatus.class, CANCELED_STATUS)
+                .build();
+
+        Thread thread = Thread.currentThread();
+        CANCELLED.put(thread, cancelled);
+        boolean coldStart = !environmentStarted;
+        ExitCode code;
+        try {
+            code = execution.exec(collector, services);
+        } catch (Throwable t) {
+            if (cancelled.getAsBoolean()) {
+                return new CompileResult(false, List.of(CANCELLED_MESSAGE));
+            }
+            StringWriter sw = new StringWriter();
+            t.printStackTrace(new PrintWriter(sw));
+            List<String> msgs = new ArrayList<>();
+            msgs.add("Kotlin compiler crashed: " + t);
+            msgs.add(sw.toString());
+            return new CompileResult(false, msgs, coldStart);
+        } finally {
+            CANCELLED.remove(thread);
+            environmentStarted = true;
+        }
+
+        if (cancelled.getAsBoolean()) {
+            return new CompileResult(false, List.of(CANCELLED_MESSAGE));
+        }
+        boolean ok = code == ExitCode.OK && !collector.hasErrors();
+        return new CompileResult(ok, collector.messages, coldStart);
+    }
+
+    /**
+     * kotlinc's own JVM pipeline cut after the frontend phase. Diagnostics are reported by the phase's
+     * post-action, exactly as in a full compile.
+     */
+    private static final class FrontendPipeline extends AbstractCliPipeline<K2JVMCompilerArguments> {
+        private final PerformanceManager performanceManager = new K2JVMCompiler().getDefaultPerformanceManager();
+
+        @Override
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        public CompilerPhase<PipelineContext, ArgumentsPipelineArtifact<K2JVMCompilerArguments>, ?> createCompoundPhase(K2JVMCompilerArguments arguments) {
+            return PhaseBuildersKt.then((CompilerPhase) JvmConfigurationPipelinePhase.INSTANCE, JvmFrontendPipelinePhase.INSTANCE);
+        }
+
+        @Override
+        public PerformanceManager getDefaultPerformanceManager() {
+            return performanceManager;
+        }
+    }
+
+    private static String sanitizeModuleName(String s) {
+        if (s == null || s.isBlank()) return "focuscript_module";
+        return s.replaceAll("[^a-zA-Z0-9_.-]", "_");
+    }
+
+    private static final class CollectingMessageCollector implements MessageCollector {
+        private final List<String> messages = new ArrayList<>();
+        private boolean hasErrors = false;
+
+        @Override
+        public void clear() {
+            messages.clear();
+            hasErrors = false;
+        }
+
+        @Override
+        public boolean hasErrors() {
+            return hasErrors;
+        }
+
+        @Override
+        public void report(CompilerMessageSeverity severity, String message, CompilerMessageSourceLocation location) {
+            if (severity == CompilerMessageSeverity.ERROR) {
+                hasErrors = true;
+            }
+            if (severity == CompilerMessageSeverity.LOGGING) {
+                // Skip very verbose logs
+                return;
+            }
+
+            String loc = "";
+            if (location != null && location.getPath() != null) {
+                loc = location.getPath();
+                if (location.getLine() > 0) {
+                    loc += ":" + location.getLine() + ":" + location.getColumn();
+                }
+                loc += ": ";
+            }
+
+            messages.add("[" + severity + "] " + loc + message);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package kr.codename.focuscript.core.compiler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Long-lived Kotlin compiler session owned by {@link FsCompiler}.
+ *
+ * <p>Each {@code K2JVMCompiler.exec} normally builds and tears down the IntelliJ core application
+ * environment, including the jar file system that indexes the stdlib, focuscript-api.jar and
+ * focuscript-runtime.jar. With the
+ * keepalive property set, that environment (and the parsed classpath it holds) survives between
+ * compiles, so only the first compile pays the bootstrap cost.</p>
+ *
+ * <p>The compile itself runs on a {@link CompilerBackend}: in process, or in a pooled worker JVM that
+ * keeps its own warm session.</p>
+ *
+ * <p>{@link #warmUp()} pays that cost up front by compiling a tiny probe twice; the difference between
+ * the cold and warm probe is used as the per-compile "saved" estimate. The backend reports whether each
+ * compile bootstrapped the environment itself (first compile after the compiler was released, or on a
+ * fresh worker JVM); only compiles that reused a session count as saving anything.</p>
+ */
+public final class KotlinCompilerService implements AutoCloseable {
+
+    /** Same key as Kotlin's CompilerSystemProperties.KOTLIN_COMPILER_ENVIRONMENT_KEEPALIVE_PROPERTY. */
+    private static final String KEEPALIVE_PROPERTY = "kotlin.environment.keepalive";
+    public static final String JVM_TARGET = "21";
+
+    private final CompilerBackend backend;
+    private final Path apiJarPath;
+    private final Path runtimeJarPath;
+    private final Path warmupDir;
+    private final CompilerLog log;
+
+    private final boolean keepaliveOwner;
+    private final AtomicBoolean warmupStarted = new AtomicBoolean();
+
+    private volatile String classpath;
+    private volatile long coldCompileMs = -1L;
+    private volatile long bootstrapMs = -1L;
+
+    private final AtomicLong compiles = new AtomicLong();
+    private final AtomicLong totalCompileMs = new AtomicLong();
+    private final AtomicLong totalSavedMs = new AtomicLong();
+
+    public KotlinCompilerService(Path apiJarPath, Path runtimeJarPath, Path warmupDir, CompilerBackend backend, CompilerLog log) {
+        this.apiJarPath = Objects.requireNonNull(apiJarPath, "apiJarPath");
+        this.runtimeJarPath = Objects.requireNonNull(runtimeJarPath, "runtimeJarPath");
+        this.warmupDir = Objects.requireNonNull(warmupDir, "warmupDir");
+        this.log = Objects.requireNonNull(log, "log");
+        this.backend = Objects.requireNonNull(backend, "backend");
+
+        if (System.getProperty(KEEPALIVE_PROPERTY) == null) {
+            System.setProperty(KEEPALIVE_PROPERTY, "true");
+            this.keepaliveOwner = true;
+        } else {
+            this.keepaliveOwner = false;
+        }
+    }
+
+    /**
+     * Result of a compile run through the session.
+     *
+     * @param coldStart the compile bootstrapped the compiler environment itself
+     */
+    public record SessionResult(boolean success, List<String> messages, long elapsedMs, long savedMs, boolean coldStart) {}
+
+    /**
+     * Compiler classpath (Focuscript API + runtime + Kotlin stdlib), resolved once per session.
+     */
+    public String classpath() {
+        String cp = classpath;
+        if (cp == null) {
+            synchronized (this) {
+                cp = classpath;
+                if (cp == null) {
+                    cp = buildCompilerClasspath();
+                    classpath = cp;
+                }
+            }
+        }
+        return cp;
+    }
+
+    public SessionResult compile(List<Path> sources, Path outJar, String moduleName) {
+        return compile(sources, outJar, moduleName, List.of(), CompileCancellation.none());
+    }
+
+    /**
+     * @param previousOutput extra classpath roots holding earlier output of the same module; they are
+     *                       also passed as friend paths so {@code internal} declarations stay visible
+     * @param cancellation   passed to the backend; a cancelled compile returns an unsuccessful result
+     */
+    public SessionResult compile(
+            List<Path> sources,
+            Path outJar,
+            String moduleName,
+            List<Path> previousOutput,
+            CompileCancellation cancellation
+    ) {
+        String cp = classpath();
+        for (Path extra : previousOutput) {
+            cp = cp + java.io.File.pathSeparator + extra;
+        }
+
+        long start = System.nanoTime();
+        KotlinCompilerInvoker.CompileResult result = backend.compile(
+                sources,
+                cp,
+                outJar,
+                moduleName,
+                JVM_TARGET,
+                previousOutput,
+                cancellation
+        );
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000L;
+
+        long saved = 0L;
+        if (result.coldStart()) {
+            // Paid the bootstrap itself.
+            if (coldCompileMs < 0) coldCompileMs = elapsedMs;
+        } else if (bootstrapMs > 0) {
+            saved = bootstrapMs;
+        }
+
+        compiles.incrementAndGet();
+        totalCompileMs.addAndGet(elapsedMs);
+        totalSavedMs.addAndGet(saved);
+        return new SessionResult(result.success(), result.messages(), elapsedMs, saved, result.coldStart());
+    }
+
+    /**
+     * Type-checks {@code sources} on the same warm session without generating code (see
+     * {@link CompilerBackend#analyze}). Not counted in the compile statistics.
+     */
+    public SessionResult analyze(List<Path> sources, String moduleName, CompileCancellation cancellation) {
+        long start = System.nanoTime();
+        KotlinCompilerInvoker.CompileResult result = backend.analyze(sources, classpath(), moduleName, JVM_TARGET, cancellation);
+        return new SessionResult(result.success(), result.messages(), (System.nanoTime() - start) / 1_000_000L, 0L, result.coldStart());
+    }
+
+    /**
+     * Bootstraps the compiler environment by compiling a small probe against the API and runtime jars.
+     *
+     * <p>Blocking; call from an async thread. Only the first call does any work.</p>
+     */
+    public void warmUp() {
+        if (!warmupStarted.compareAndSet(false, true)) return;
+
+        try {
+            Files.createDirectories(warmupDir);
+            Path probe = warmupDir.resolve("FocuscriptWarmup.kt");
+            Files.writeString(probe, """
+                    package kr.codename.focuscript.warmup
+
+                    import kr.codename.focuscript.api.FsContext
+                    import kr.codename.focuscript.prelude.*
+
+                    fun warmup(ctx: FsContext): String = ctx.config.getString("warmup", "ok") + listOf(1, 2).map { it * 2 } + 5.seconds
+                    """, StandardCharsets.UTF_8);
+
+            Path outJar = warmupDir.resolve("warmup.jar");
+
+            long coldStart = System.nanoTime();
+            KotlinCompilerInvoker.CompileResult cold = backend.compile(List.of(probe), classpath(), outJar, "focuscript_warmup", JVM_TARGET, List.of(), CompileCancellation.none());
+            long coldMs = (System.nanoTime() - coldStart) / 1_000_000L;
+
+            long warmStart = System.nanoTime();
+            KotlinCompilerInvoker.CompileResult warm = backend.compile(List.of(probe), classpath(), outJar, "focuscript_warmup", JVM_TARGET, List.of(), CompileCancellation.none());
+            long warmMs = (System.nanoTime() - warmStart) / 1_000_000L;
+
+            if (!cold.success() || !warm.success()) {
+                log.warn("Kotlin compiler warm-up probe failed; compiles will bootstrap on demand.");
+                for (String line : warm.success() ? cold.messages() : warm.messages()) {
+                    log.warn(line);
+                }
+                return;
+            }
+
+            coldCompileMs = coldMs;
+            if (!cold.coldStart() || warm.coldStart()) {
+                // Both probes hit a warm session, or each its own cold one (two workers): nothing to compare.
+                log.info("Kotlin compiler warmed up (" + coldMs + " ms, " + warmMs + " ms).");
+                return;
+            }
+            bootstrapMs = Math.max(0L, coldMs - warmMs);
+            log.info("Kotlin compiler warmed up (cold " + coldMs + " ms, warm " + warmMs + " ms).");
+        } catch (Throwable t) {
+            log.warn("Kotlin compiler warm-up failed: " + t.getMessage());
+        } finally {
+            try {
+                FsCompiler.deleteRecursively(warmupDir);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    public boolean isWarm() {
+        return bootstrapMs >= 0;
+    }
+
+    public long getColdCompileMs() {
+        return coldCompileMs;
+    }
+
+    public long getBootstrapMs() {
+        return bootstrapMs;
+    }
+
+    public long getCompileCount() {
+        return compiles.get();
+    }
+
+    public long getTotalCompileMs() {
+        return totalCompileMs.get();
+    }
+
+    public long getTotalSavedMs() {
+        return totalSavedMs.get();
+    }
+
+    @Override
+    public void close() {
+        backend.close();
+        if (keepaliveOwner) {
+            System.clearProperty(KEEPALIVE_PROPERTY);
+        }
+    }
+
+    private String buildCompilerClasspath() {
+        // Allow only: Focuscript API + shared runtime (module DSL) + Kotlin stdlib
+        List<Path> cp = new ArrayList<>();
+        cp.add(apiJarPath);
+        cp.add(runtimeJarPath);
+
+        // Kotlin stdlib jar location from runtime classpath
+        Path stdlib = JarUtil.locationOf(kotlin.Unit.class);
+        if (stdlib != null) cp.add(stdlib);
+
+        // De-duplicate
+        LinkedHashSet<Path> unique = new LinkedHashSet<>(cp);
+        return unique.stream()
+                .map(Path::toString)
+                .collect(Collectors.joining(java.io.File.pathSeparator));
+    }
+}
@@ -0,0 +1,61 @@
+package kr.codename.focuscript.core.compiler;
+
+import java.nio.file.Path;
+
+/**
+ * Generates Kotlin sources used for compilation.
+ *
+ * IMPORTANT: These generated files are compiled into the module.jar.
+ * The module DSL and helpers ({@code module { }}, {@code text()}, {@code 5.seconds}, ...) are not
+ * generated: they live in the shared focuscript-runtime ({@link #PRELUDE_PACKAGE}), which every
+ * generated file imports.
+ */
+public final class KotlinSourceTemplates {
+    public static final String PRELUDE_PACKAGE = "kr.codename.focuscript.prelude";
+
+    private KotlinSourceTemplates() {}
+
+    public static String entry(String modulePackage, String entryFsContent) {
+        return """
+                @file:Suppress("unused")
+                @file:JvmName("FocuscriptEntry")
+                package %s
+
+                import kr.codename.focuscript.api.FsModule
+                import %s.*
+
+                // Generated entry wrapper. Original entry .fs content is used as the initializer.
+                val focuscriptModule: FsModule = %s
+                """.formatted(modulePackage, PRELUDE_PACKAGE, entryFsContent.trim());
+    }
+
+    public static String source(String modulePackage, String content, Path originalPath) {
+        return """
+                @file:Suppress("unused")
+                package %s
+
+                import %s.*
+
+                // Source: %s
+                %s
+                """.formatted(
+                modulePackage,
+                PRELUDE_PACKAGE,
+                originalPath.toString().replace("\\\\", "/"),
+                content.trim()
+        );
+    }
+
+    /**
+     * 1-based line of {@code generated} (a result of {@link #entry} or {@link #source}) on which the
+     * trimmed {@code content} starts.
+     */
+    static int contentStartLine(String generated, String content) {
+        int start = generated.length() - 1 - content.trim().length();
+        int line = 1;
+        for (int i = 0; i < start; i++) {
+            if (generated.charAt(i) == '\n') line++;
+        }
+        return line;
+    }
+}
@@ -0,0 +1,103 @@
+package kr.codename.focuscript.core.compiler;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Maps lines of preprocessed or generated text back to the {@code .fs} file and line they came from.
+ *
+ * <p>Stored as runs of consecutive lines from the same file, so a file without includes is a single run
+ * and lookups are a binary search over the runs.</p>
+ */
+final class LineMap {
+
+    /** An original location; {@code line} is 1-based. */
+    record Origin(Path file, int line) {}
+
+    private final int[] outStart;
+    private final Path[] files;
+    private final int[] srcStart;
+    private final int[] lengths;
+    private final int count;
+
+    private LineMap(int[] outStart, Path[] files, int[] srcStart, int[] lengths, int count) {
+        this.outStart = outStart;
+        this.files = files;
+        this.srcStart = srcStart;
+        this.lengths = lengths;
+        this.count = count;
+    }
+
+    /**
+     * @param line 1-based line of the mapped text
+     * @return where it came from, or null for lines that have no origin (e.g. generated headers)
+     */
+    Origin originOf(int line) {
+        int lo = 0;
+        int hi = count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (outStart[mid] > line) {
+                hi = mid - 1;
+            } else if (outStart[mid] + lengths[mid] <= line) {
+                lo = mid + 1;
+            } else {
+                return new Origin(files[mid], srcStart[mid] + (line - outStart[mid]));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * This map for the same text placed {@code lines} lines further down (negative moves it up).
+     */
+    LineMap shift(int lines) {
+        int[] moved = new int[count];
+        for (int i = 0; i < count; i++) {
+            moved[i] = outStart[i] + lines;
+        }
+        return new LineMap(moved, files, srcStart, lengths, count);
+    }
+
+    /** Records origins one output line at a time, starting at line 1. */
+    static final class Builder {
+        private int[] outStart = new int[8];
+        private Path[] files = new Path[8];
+        private int[] srcStart = new int[8];
+        private int[] lengths = new int[8];
+        private int count;
+        private int nextLine = 1;
+
+        /** The next output line came from {@code file}:{@code line}. */
+        void add(Path file, int line) {
+            int last = count - 1;
+            if (last >= 0 && files[last] == file && srcStart[last] + lengths[last] == line) {
+                lengths[last]++;
+            } else {
+                if (count == outStart.length) {
+                    int n = count * 2;
+                    outStart = Arrays.copyOf(outStart, n);
+                    files = Arrays.copyOf(files, n);
+                    srcStart = Arrays.copyOf(srcStart, n);
+                    lengths = Arrays.copyOf(lengths, n);
+                }
+                outStart[count] = nextLine;
+                files[count] = file;
+                srcStart[count] = line;
+                lengths[count] = 1;
+                count++;
+            }
+            nextLine++;
+        }
+
+        LineMap build() {
+            return new LineMap(
+                    Arrays.copyOf(outStart, count),
+                    Arrays.copyOf(files, count),
+                    Arrays.copyOf(srcStart, count),
+                    Arrays.copyOf(lengths, count),
+                    count
+            );
+        }
+    }
+}
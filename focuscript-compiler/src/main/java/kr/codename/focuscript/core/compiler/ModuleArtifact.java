@@ -0,0 +1,25 @@
+package kr.codename.focuscript.core.compiler;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Result of {@link FsCompiler#compileIfNeeded(kr.codename.focuscript.core.workspace.Workspace, boolean)}.
+ *
+ * @param jar      the module's jar (in the cache, or an installed bundle)
+ * @param cacheKey cache key of the sources the jar was built from
+ * @param entries  jar entries (name -> bytes) for an in-memory compile, otherwise null. The jar itself
+ *                 may still be being written in the background, so load from these instead.
+ */
+public record ModuleArtifact(Path jar, String cacheKey, Map<String, byte[]> entries) {
+
+    public ModuleArtifact {
+        Objects.requireNonNull(jar, "jar");
+        Objects.requireNonNull(cacheKey, "cacheKey");
+    }
+
+    public boolean inMemory() {
+        return entries != null;
+    }
+}
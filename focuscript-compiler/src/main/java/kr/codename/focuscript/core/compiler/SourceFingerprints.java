@@ -0,0 +1,167 @@
+package kr.codename.focuscript.core.compiler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Per-workspace fingerprint index: path, size, mtime and SHA-256 of every source file.
+ *
+ * <p>Lives in {@code _build/<id>/fingerprints.tsv}, next to the jar cache. A file whose size and mtime
+ * match its entry reuses the stored hash; anything else is rehashed by streaming it through the
+ * digest, so whole files are never held in memory.</p>
+ *
+ * <p>File systems store mtimes with limited precision, so a file written in the same tick it was hashed
+ * could change again without its mtime moving. Entries hashed within {@link #RACY_WINDOW_MS} of their
+ * mtime are therefore not trusted and get rehashed next time.</p>
+ *
+ * <p>Not thread-safe; each compile loads its own copy.</p>
+ */
+final class SourceFingerprints {
+
+    static final String FILE_NAME = "fingerprints.tsv";
+
+    private static final String HEADER = "# focuscript fingerprints v1";
+    private static final long RACY_WINDOW_MS = 2_000L;
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private record Entry(long size, long mtimeMs, long hashedAtMs, String sha256) {}
+
+    private final Path file;
+    private final Map<String, Entry> entries;
+    private final Map<String, Entry> seen = new TreeMap<>();
+
+    private int hashed;
+    private int reused;
+    private long bytes;
+
+    private SourceFingerprints(Path file, Map<String, Entry> entries) {
+        this.file = file;
+        this.entries = entries;
+    }
+
+    /**
+     * Loads the index from {@code buildDir}. A missing or unreadable index just starts empty.
+     */
+    static SourceFingerprints load(Path buildDir) {
+        Path file = buildDir.resolve(FILE_NAME);
+        Map<String, Entry> entries = new TreeMap<>();
+        if (Files.isRegularFile(file)) {
+            try {
+                List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+                if (!lines.isEmpty() && HEADER.equals(lines.get(0))) {
+                    for (String line : lines.subList(1, lines.size())) {
+                        String[] cols = line.split("\t", 5);
+                        if (cols.length != 5) continue;
+                        try {
+                            entries.put(cols[4], new Entry(
+                                    Long.parseLong(cols[0]),
+                                    Long.parseLong(cols[1]),
+                                    Long.parseLong(cols[2]),
+                                    cols[3]
+                            ));
+                        } catch (NumberFormatException ignored) {
+                        }
+                    }
+                }
+            } catch (IOException ignored) {
+                entries.clear();
+            }
+        }
+        return new SourceFingerprints(file, entries);
+    }
+
+    /**
+     * Hex SHA-256 of {@code path}'s content, reused from the index when size and mtime are unchanged.
+     */
+    String hash(Path path) throws IOException {
+        String key = path.toString();
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        long size = attrs.size();
+        long mtimeMs = attrs.lastModifiedTime().toMillis();
+        bytes += size;
+
+        Entry entry = entries.get(key);
+        if (entry != null
+                && entry.size() == size
+                && entry.mtimeMs() == mtimeMs
+                && entry.hashedAtMs() - mtimeMs >= RACY_WINDOW_MS) {
+            reused++;
+            seen.put(key, entry);
+            return entry.sha256();
+        }
+
+        long hashedAtMs = System.currentTimeMillis();
+        String sha256 = streamHash(path);
+        hashed++;
+        seen.put(key, new Entry(size, mtimeMs, hashedAtMs, sha256));
+        return sha256;
+    }
+
+    /** Files hashed by the last {@link #hash} calls (index miss). */
+    int hashedCount() {
+        return hashed;
+    }
+
+    /** Files whose stored hash was reused. */
+    int reusedCount() {
+        return reused;
+    }
+
+    /** Total size of the files passed to {@link #hash}. */
+    long totalBytes() {
+        return bytes;
+    }
+
+    /**
+     * Writes back the entries seen since loading; files that disappeared drop out.
+     * Skipped when nothing changed.
+     */
+    void save() throws IOException {
+        if (seen.equals(entries)) return;
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(HEADER).append('\n');
+        for (Map.Entry<String, Entry> e : seen.entrySet()) {
+            Entry v = e.getValue();
+            sb.append(v.size()).append('\t')
+                    .append(v.mtimeMs()).append('\t')
+                    .append(v.hashedAtMs()).append('\t')
+                    .append(v.sha256()).append('\t')
+                    .append(e.getKey()).append('\n');
+        }
+
+        Path tmp = Files.createTempFile(file.getParent(), FILE_NAME, ".tmp");
+        try {
+            Files.writeString(tmp, sb, StandardCharsets.UTF_8);
+            FsCompiler.atomicReplace(tmp, file);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static String streamHash(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buf = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(path)) {
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                digest.update(buf, 0, n);
+            }
+        }
+        return FsCompiler.toHex(digest.digest());
+    }
+}
@@ -0,0 +1,81 @@
+package kr.codename.focuscript.core.workspace;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Parsed script.yml manifest.
+ */
+public record ScriptManifest(
+        String id,
+        String name,
+        String version,
+        int api,
+        String entry,   // relative path string (e.g. src/main.fs)
+        String load,    // enable
+        boolean debug,
+        java.util.List<String> depends,
+        java.util.List<String> permissions,
+        java.util.List<String> commands
+) {
+    public ScriptManifest {
+        Objects.requireNonNull(id, "id");
+        Objects.requireNonNull(name, "name");
+        Objects.requireNonNull(version, "version");
+        Objects.requireNonNull(entry, "entry");
+        Objects.requireNonNull(load, "load");
+        Objects.requireNonNull(depends, "depends");
+        Objects.requireNonNull(permissions, "permissions");
+        Objects.requireNonNull(commands, "commands");
+    }
+
+    /**
+     * Reads the manifest from parsed script.yml values, with the defaults the plugin has always used.
+     * Scalars are read the way Bukkit's configuration API reads them, so the plugin and the standalone
+     * compiler agree on every field.
+     *
+     * @param values value at a dotted path ({@code options.debug}), or null if absent
+     */
+    public static ScriptManifest read(Function<String, Object> values) throws IOException {
+        String id = string(values.apply("id"), null);
+        if (id == null || id.isBlank()) {
+            throw new IOException("script.yml missing required field: id");
+        }
+        return new ScriptManifest(
+                id,
+                string(values.apply("name"), id),
+                string(values.apply("version"), "1.0.0"),
+                values.apply("api") instanceof Number n ? n.intValue() : 1,
+                string(values.apply("entry"), "src/main.fs"),
+                string(values.apply("load"), "enable"),
+                values.apply("options.debug") instanceof Boolean b && b,
+                stringList(values.apply("depends")),
+                stringList(values.apply("permissions")),
+                stringList(values.apply("commands"))
+        );
+    }
+
+    public Path resolveEntry(Path workspaceRoot) {
+        return workspaceRoot.resolve(entry);
+    }
+
+    private static String string(Object value, String def) {
+        return value != null ? value.toString() : def;
+    }
+
+    /** Non-blank entries, trimmed; scalars other than strings are converted, anything else is skipped. */
+    private static List<String> stringList(Object value) {
+        if (!(value instanceof List<?> list) || list.isEmpty()) return List.of();
+        List<String> out = new ArrayList<>();
+        for (Object item : list) {
+            if (!(item instanceof String || item instanceof Number || item instanceof Boolean || item instanceof Character)) continue;
+            String trimmed = String.valueOf(item).trim();
+            if (!trimmed.isEmpty()) out.add(trimmed);
+        }
+        return List.copyOf(out);
+    }
+}
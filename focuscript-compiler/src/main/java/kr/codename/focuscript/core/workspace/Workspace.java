@@ -0,0 +1,17 @@
+package kr.codename.focuscript.core.workspace;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * What the compiler needs from a script workspace: its directory, its parsed manifest and the raw
+ * script.yml text (part of the cache key).
+ */
+public interface Workspace {
+
+    Path root();
+
+    ScriptManifest manifest();
+
+    String readScriptYmlText() throws IOException;
+}
@@ -1,6 +1,6 @@
 plugins {
     `java`
-    kotlin("jvm") version "2.3.0"
+    kotlin("jvm")
 }
 
 java {
@@ -13,6 +13,7 @@ dependencies {
     compileOnly("org.jetbrains.kotlin:kotlin-compiler-embeddable:2.2.20")
 
     implementation(project(":focuscript-api"))
+    implementation(project(":focuscript-compiler"))
 }
 
 tasks.processResources {
@@ -23,11 +24,25 @@ tasks.processResources {
         into("") // root of resources
         rename { "focuscript-api.jar" }
     }
+
+    // Same for the shared prelude runtime (module DSL + helpers), compiled once instead of per module.
+    dependsOn(project(":focuscript-runtime").tasks.named("jar"))
+
+    from(project(":focuscript-runtime").tasks.named("jar").map { it.outputs.files.singleFile }) {
+        into("")
+        rename { "focuscript-runtime.jar" }
+    }
 }
 
 tasks.jar {
-    // Bundle API classes inside the plugin jar (single-jar deployment).
+    // Bundle API + runtime classes inside the plugin jar (single-jar deployment). Modules load them
+    // from the plugin classloader, so they exist once no matter how many modules are enabled.
     from(project(":focuscript-api").sourceSets.main.get().output)
+    from(project(":focuscript-runtime").sourceSets.main.get().output)
+    // The compiler core; its command-line entry point is only used by the standalone distribution.
+    from(project(":focuscript-compiler").sourceSets.main.get().output) {
+        exclude("kr/codename/focuscript/cli/**")
+    }
 
     // Name
     archiveBaseName.set("Focuscript")
@@ -25,6 +25,7 @@ public final class FocuscriptPlugin extends JavaPlugin {
 
     private ModuleManager moduleManager;
     private Path extractedApiJar;
+    private Path extractedRuntimeJar;
     private FocuscriptLogger log;
 
     // Lazy-started (disabled by default) web IDE server.
@@ -61,13 +62,15 @@ public final class FocuscriptPlugin extends JavaPlugin {
             Files.createDirectories(getDataFolder().toPath().resolve("scripts"));
             Files.createDirectories(getDataFolder().toPath().resolve("_runtime"));
             Files.createDirectories(getDataFolder().toPath().resolve("_build"));
+            Files.createDirectories(getDataFolder().toPath().resolve("bundles"));
         } catch (IOException e) {
             log.error("Failed to create data folders: " + e.getMessage());
         }
 
 
-        // 3) Extract API jar (for compiler classpath)
-        this.extractedApiJar = extractBundledApiJar();
+        // 3) Extract API + runtime jars (for compiler classpath)
+        this.extractedApiJar = extractBundledJar("focuscript-api.jar");
+        this.extractedRuntimeJar = extractBundledJar("focuscript-runtime.jar");
     }
 
     @Override
@@ -85,8 +88,14 @@ public final class FocuscriptPlugin extends JavaPlugin {
             Bukkit.getPluginManager().disablePlugin(this);
             return;
         }
+        if (extractedRuntimeJar == null || !Files.exists(extractedRuntimeJar)) {
+            log.error("Runtime jar missing. Focuscript cannot compile modules.");
+            Bukkit.getPluginManager().disablePlugin(this);
+            return;
+        }
 
-        this.moduleManager = new ModuleManager(this, extractedApiJar, log);
+        saveDefaultConfig();
+        this.moduleManager = new ModuleManager(this, extractedApiJar, extractedRuntimeJar, log);
 
         // Command
         var cmd = getCommand("fs");
@@ -108,8 +117,9 @@ public final class FocuscriptPlugin extends JavaPlugin {
                 getDataFolder().toPath().resolve("focuscript.created"),
                 log()
         ).seed();
-        // Load modules
-        moduleManager.loadAll();
+        // Warm the compiler in the background, then load modules
+        moduleManager.warmUpCompilerAsync();
+        moduleManager.loadAllOnStartup();
     }
 
     @Override
@@ -123,6 +133,7 @@ public final class FocuscriptPlugin extends JavaPlugin {
         }
         if (moduleManager != null) {
             moduleManager.disableAll();
+            moduleManager.shutdown();
         }
     }
 
@@ -130,6 +141,10 @@ public final class FocuscriptPlugin extends JavaPlugin {
         return extractedApiJar;
     }
 
+    public Path getExtractedRuntimeJar() {
+        return extractedRuntimeJar;
+    }
+
     /**
      * Web IDE manager (disabled by default; starts only when explicitly requested).
      */
@@ -143,18 +158,18 @@ public final class FocuscriptPlugin extends JavaPlugin {
         return webIdeManager;
     }
 
-    private Path extractBundledApiJar() {
-        Path out = getDataFolder().toPath().resolve("_runtime").resolve("focuscript-api.jar");
+    private Path extractBundledJar(String name) {
+        Path out = getDataFolder().toPath().resolve("_runtime").resolve(name);
         FocuscriptLogger log = log();
-        try (InputStream in = getResource("focuscript-api.jar")) {
+        try (InputStream in = getResource(name)) {
             if (in == null) {
-                log.error("Resource focuscript-api.jar not found in plugin jar!");
+                log.error("Resource " + name + " not found in plugin jar!");
                 return null;
             }
             Files.copy(in, out, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
             return out;
         } catch (IOException e) {
-            log.error("Failed to extract focuscript-api.jar: " + e.getMessage());
+            log.error("Failed to extract " + name + ": " + e.getMessage());
             return null;
         }
     }
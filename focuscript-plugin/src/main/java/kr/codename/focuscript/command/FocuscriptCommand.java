@@ -2,6 +2,9 @@ package kr.codename.focuscript.command;
 
 import kr.codename.focuscript.FocuscriptPlugin;
 import kr.codename.focuscript.core.ModuleManager;
+import kr.codename.focuscript.core.compiler.CompileMetrics;
+import kr.codename.focuscript.core.compiler.JarCache;
+import kr.codename.focuscript.core.loader.LoaderLeakTracker;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
@@ -11,6 +14,7 @@ import org.bukkit.command.CommandExecutor;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 public final class FocuscriptCommand implements CommandExecutor, TabCompleter {
 
@@ -30,6 +34,11 @@ public final class FocuscriptCommand implements CommandExecutor, TabCompleter {
             sender.sendMessage(ChatColor.YELLOW + "Focuscript commands:");
             sender.sendMessage(ChatColor.GRAY + "/" + label + " reload");
             sender.sendMessage(ChatColor.GRAY + "/" + label + " cmd <moduleId> <command> [args...]");
+            sender.sendMessage(ChatColor.GRAY + "/" + label + " cache [sweep]");
+            sender.sendMessage(ChatColor.GRAY + "/" + label + " timings [moduleId]");
+            sender.sendMessage(ChatColor.GRAY + "/" + label + " leaks");
+            sender.sendMessage(ChatColor.GRAY + "/" + label + " export [moduleId]");
+            sender.sendMessage(ChatColor.GRAY + "/" + label + " import [bundleFile]");
             sender.sendMessage(ChatColor.GRAY + "/" + label + " webide [port] [bindHost]");
             sender.sendMessage(ChatColor.DARK_GRAY + "  - stop: /" + label + " webide stop");
             return true;
@@ -44,6 +53,95 @@ public final class FocuscriptCommand implements CommandExecutor, TabCompleter {
                 sender.sendMessage(ChatColor.GREEN + "Done. disabled=" + disabled + ", queued=" + queued);
                 return true;
             }
+            case "cache" -> {
+                if (args.length >= 2 && "sweep".equalsIgnoreCase(args[1])) {
+                    sender.sendMessage(ChatColor.YELLOW + "Sweeping jar cache...");
+                    moduleManager.sweepJarCacheAsync(evicted -> sendLater(sender, List.of("Done. evicted=" + evicted)));
+                    return true;
+                }
+
+                JarCache.Stats stats = moduleManager.getJarCache().stats();
+                JarCache.Limits limits = moduleManager.getJarCache().getLimits();
+                sender.sendMessage(ChatColor.YELLOW + "Jar cache:");
+                sender.sendMessage(ChatColor.GRAY + "hits=" + stats.hits() + " (shared " + stats.sharedHits() + "), misses=" + stats.misses()
+                        + ", evictions=" + stats.evictions() + " (" + formatBytes(stats.evictedBytes()) + ")");
+                if (stats.lastSweepAt() > 0) {
+                    sender.sendMessage(ChatColor.GRAY + "size=" + formatBytes(stats.totalBytes()) + " in " + stats.jars() + " jar(s)"
+                            + ", last sweep " + ((System.currentTimeMillis() - stats.lastSweepAt()) / 1000L) + "s ago");
+                } else {
+                    sender.sendMessage(ChatColor.GRAY + "size=unknown (no sweep yet)");
+                }
+                sender.sendMessage(ChatColor.DARK_GRAY + "limits: total=" + formatLimit(limits.maxTotalBytes())
+                        + ", per-module=" + formatLimit(limits.maxPerModuleBytes()));
+                return true;
+            }
+            case "timings" -> {
+                CompileMetrics metrics = moduleManager.getCompileMetrics();
+                if (args.length >= 2) {
+                    String moduleId = args[1];
+                    List<CompileMetrics.Sample> samples = metrics.history(moduleId);
+                    if (samples.isEmpty()) {
+                        sender.sendMessage(ChatColor.YELLOW + "No compiles recorded for " + moduleId + ".");
+                        return true;
+                    }
+                    sender.sendMessage(ChatColor.YELLOW + "Compile timings of " + moduleId + " (oldest first):");
+                    long now = System.currentTimeMillis();
+                    for (CompileMetrics.Sample s : samples) {
+                        sender.sendMessage(ChatColor.GRAY + formatAge(now - s.at()) + " " + s.summary());
+                    }
+                    return true;
+                }
+
+                Map<String, List<CompileMetrics.Sample>> all = metrics.snapshot();
+                if (all.isEmpty()) {
+                    sender.sendMessage(ChatColor.YELLOW + "No compiles recorded yet.");
+                    return true;
+                }
+                sender.sendMessage(ChatColor.YELLOW + "Last compile per module:");
+                for (Map.Entry<String, List<CompileMetrics.Sample>> e : all.entrySet()) {
+                    List<CompileMetrics.Sample> samples = e.getValue();
+                    long mean = CompileMetrics.meanBuildMs(samples);
+                    sender.sendMessage(ChatColor.GRAY + e.getKey() + ": " + samples.get(samples.size() - 1).summary()
+                            + (mean >= 0 ? ChatColor.DARK_GRAY + " (build avg " + mean + " ms)" : ""));
+                }
+                return true;
+            }
+            case "leaks" -> {
+                LoaderLeakTracker tracker = moduleManager.getLeakTracker();
+                if (!tracker.isEnabled()) {
+                    sender.sendMessage(ChatColor.YELLOW + "Leak tracking is off (leaks.report-after-gcs: 0).");
+                    return true;
+                }
+                LoaderLeakTracker.Stats stats = tracker.stats();
+                sender.sendMessage(ChatColor.YELLOW + "Disabled module class loaders:");
+                sender.sendMessage(ChatColor.GRAY + "collected=" + stats.collected() + ", pending=" + (stats.tracked() - stats.zombies())
+                        + ", zombies=" + stats.zombies());
+                long now = System.currentTimeMillis();
+                for (LoaderLeakTracker.Zombie z : tracker.zombies()) {
+                    sender.sendMessage(ChatColor.RED + z.moduleId() + ChatColor.GRAY + " generation " + z.generation()
+                            + ", disabled " + formatAge(now - z.disabledAt()) + " ago, survived " + z.gcsSurvived() + " old GC(s)");
+                }
+                if (stats.zombies() > 0) {
+                    sender.sendMessage(ChatColor.DARK_GRAY + "Likely holders are in the server log (\"Possible class loader leak\").");
+                }
+                return true;
+            }
+            case "export" -> {
+                String moduleId = args.length >= 2 ? args[1] : null;
+                sender.sendMessage(ChatColor.YELLOW + "Exporting " + (moduleId == null ? "all modules" : moduleId) + "...");
+                moduleManager.exportBundlesAsync(moduleId, lines -> sendLater(sender, lines));
+                return true;
+            }
+            case "import" -> {
+                String file = args.length >= 2 ? args[1] : null;
+                sender.sendMessage(ChatColor.YELLOW + "Importing " + (file == null ? "all bundles" : file) + "...");
+                moduleManager.importBundlesAsync(file, lines -> {
+                    List<String> out = new ArrayList<>(lines);
+                    out.add("Use /" + label + " reload to load imported modules.");
+                    sendLater(sender, out);
+                });
+                return true;
+            }
             case "webide" -> {
                 // Disabled by default. Starts only when explicitly requested.
                 // Usage:
@@ -128,6 +226,11 @@ public final class FocuscriptCommand implements CommandExecutor, TabCompleter {
             String p = args[0].toLowerCase();
             if ("reload".startsWith(p)) out.add("reload");
             if ("cmd".startsWith(p)) out.add("cmd");
+            if ("cache".startsWith(p)) out.add("cache");
+            if ("timings".startsWith(p)) out.add("timings");
+            if ("leaks".startsWith(p)) out.add("leaks");
+            if ("export".startsWith(p)) out.add("export");
+            if ("import".startsWith(p)) out.add("import");
             if ("webide".startsWith(p)) out.add("webide");
         } else if (args.length == 2 && "cmd".equalsIgnoreCase(args[0])) {
             String p = args[1].toLowerCase();
@@ -137,6 +240,23 @@ public final class FocuscriptCommand implements CommandExecutor, TabCompleter {
                     out.add(id);
                 }
             }
+        } else if (args.length == 2 && "timings".equalsIgnoreCase(args[0])) {
+            String p = args[1].toLowerCase();
+            for (String id : moduleManager.getCompileMetrics().snapshot().keySet()) {
+                if (id.toLowerCase().startsWith(p)) {
+                    out.add(id);
+                }
+            }
+        } else if (args.length == 2 && "export".equalsIgnoreCase(args[0])) {
+            String p = args[1].toLowerCase();
+            for (var lm : moduleManager.getLoadedModules()) {
+                String id = lm.manifest().id();
+                if (id.toLowerCase().startsWith(p)) {
+                    out.add(id);
+                }
+            }
+        } else if (args.length == 2 && "cache".equalsIgnoreCase(args[0])) {
+            if ("sweep".startsWith(args[1].toLowerCase())) out.add("sweep");
         } else if (args.length == 2 && "webide".equalsIgnoreCase(args[0])) {
             String p = args[1].toLowerCase();
             if ("status".startsWith(p)) out.add("status");
@@ -155,4 +275,30 @@ public final class FocuscriptCommand implements CommandExecutor, TabCompleter {
         }
         return out;
     }
+
+    /** Sends async results back on the main thread. */
+    private void sendLater(CommandSender sender, List<String> lines) {
+        plugin.getServer().getScheduler().runTask(plugin, () -> {
+            for (String line : lines) {
+                sender.sendMessage(ChatColor.GRAY + line);
+            }
+        });
+    }
+
+    private static String formatAge(long ms) {
+        long s = ms / 1000L;
+        if (s < 60L) return s + "s ago";
+        if (s < 3600L) return (s / 60L) + "m ago";
+        return (s / 3600L) + "h ago";
+    }
+
+    private static String formatLimit(long bytes) {
+        return bytes > 0 ? formatBytes(bytes) : "off";
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024L) return bytes + " B";
+        if (bytes < 1024L * 1024L) return (bytes / 1024L) + " KB";
+        return String.format(java.util.Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024.0));
+    }
 }
@@ -71,6 +71,21 @@ public final class ModuleCommandRegistry {
         return new ArrayList<>(moduleCommands.keySet());
     }
 
+    /**
+     * Commands whose handler class was defined by {@code loader}, e.g. left registered by a disabled module.
+     */
+    public synchronized List<String> describeHandlersFrom(ClassLoader loader) {
+        List<String> out = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Entry>> module : commandsByModule.entrySet()) {
+            for (Entry entry : module.getValue().values()) {
+                if (entry.handler().getClass().getClassLoader() == loader) {
+                    out.add("command /" + entry.name() + " registered for module " + module.getKey());
+                }
+            }
+        }
+        return out;
+    }
+
     private static String normalize(String name) {
         String trimmed = name.trim();
         if (trimmed.isEmpty()) {
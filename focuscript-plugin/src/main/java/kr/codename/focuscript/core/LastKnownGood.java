@@ -0,0 +1,70 @@
+package kr.codename.focuscript.core;
+
+import kr.codename.focuscript.core.compiler.ModuleArtifact;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * {@code _build/<id>/last-good.properties}: the jar a module was last enabled from.
+ *
+ * <p>Used by stale-while-revalidate startup to enable modules before their sources are checked.
+ * A record is only trusted when it was written by the same plugin version and its jar still exists.</p>
+ */
+final class LastKnownGood {
+
+    private static final String FILE_NAME = "last-good.properties";
+
+    private LastKnownGood() {}
+
+    /**
+     * @return the recorded artifact, or null if there is none or it cannot be used
+     */
+    static ModuleArtifact read(Path buildDir, String pluginVersion) {
+        Path file = buildDir.resolve(FILE_NAME);
+        if (!Files.isRegularFile(file)) return null;
+
+        try {
+            Properties p = new Properties();
+            p.load(new StringReader(Files.readString(file, StandardCharsets.UTF_8)));
+            String jar = p.getProperty("jar");
+            String cacheKey = p.getProperty("cacheKey");
+            if (jar == null || cacheKey == null || !pluginVersion.equals(p.getProperty("pluginVersion"))) {
+                return null;
+            }
+
+            Path jarPath = buildDir.resolve(jar);
+            if (!Files.isRegularFile(jarPath)) return null;
+            return new ModuleArtifact(jarPath, cacheKey, null);
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    static void write(Path buildDir, ModuleArtifact artifact, String pluginVersion) throws IOException {
+        Path jar = artifact.jar().toAbsolutePath().normalize();
+        Path base = buildDir.toAbsolutePath().normalize();
+
+        Properties p = new Properties();
+        p.setProperty("jar", (jar.startsWith(base) ? base.relativize(jar) : jar).toString().replace('\\', '/'));
+        p.setProperty("cacheKey", artifact.cacheKey());
+        p.setProperty("pluginVersion", pluginVersion);
+
+        StringWriter out = new StringWriter();
+        p.store(out, "Focuscript last known good module jar");
+
+        Files.createDirectories(buildDir);
+        Path tmp = Files.createTempFile(buildDir, FILE_NAME, ".tmp");
+        try {
+            Files.writeString(tmp, out.toString(), StandardCharsets.UTF_8);
+            Files.move(tmp, buildDir.resolve(FILE_NAME), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package kr.codename.focuscript.core;
+
+import kr.codename.focuscript.core.workspace.ScriptWorkspace;
+import kr.codename.focuscript.logging.FocuscriptLogger;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * One full load ({@code /fs reload} or startup) as a dependency graph.
+ *
+ * <p>Modules compile concurrently in any order. A compiled module is enabled as soon as all of its
+ * dependencies are enabled; enabling one releases only its own dependents, so a load costs time linear in
+ * the number of modules and dependency edges. Modules that become ready together are enabled in load
+ * order, so the result does not depend on which compile finished first. When a module fails to compile or
+ * enable, the modules depending on it are skipped instead of waiting forever.</p>
+ *
+ * <p>A module's wave is the length of the longest dependency chain below it: wave 0 depends on nothing,
+ * wave 1 only on wave 0, and so on. When every module is settled, the log reports the load's critical
+ * path: the chain of compiles and enables that decided when the last module came up.</p>
+ *
+ * <p>Main thread only.</p>
+ *
+ * @param <T> a compiled module waiting to be enabled
+ */
+final class LoadGraph<T> {
+
+    private enum State { COMPILING, WAITING, ENABLED, FAILED, SKIPPED }
+
+    private static final class Node<T> {
+        final String id;
+        /** Position in the topological load order. */
+        final int order;
+        final int wave;
+        final List<String> depends;
+        final List<Node<T>> dependents = new ArrayList<>();
+        State state = State.COMPILING;
+        boolean queued;
+        T compiled;
+        /** Nanos since the load started; -1 until known. */
+        long compiledAt = -1L;
+        long enableStartedAt = -1L;
+        long enabledAt = -1L;
+
+        Node(String id, int order, int wave, List<String> depends) {
+            this.id = id;
+            this.order = order;
+            this.wave = wave;
+            this.depends = depends;
+        }
+    }
+
+    private final Map<String, Node<T>> nodes = new LinkedHashMap<>();
+    private final PriorityQueue<Node<T>> ready = new PriorityQueue<>(Comparator.comparingInt((Node<T> n) -> n.order));
+    private final Predicate<String> isLoaded;
+    private final Predicate<T> enable;
+    private final Consumer<T> discard;
+    private final FocuscriptLogger log;
+    private final long startNanos = System.nanoTime();
+    private int unsettled;
+    private boolean draining;
+
+    /**
+     * @param loadOrder  topological order, dependencies first; modules outside it (cycles) are not loaded
+     * @param isLoaded   whether a module is currently enabled, from this load or an earlier one
+     * @param enable     enables a compiled module; false if it failed (and was cleaned up)
+     * @param discard    releases a compiled module that will not be enabled
+     */
+    LoadGraph(
+            List<String> loadOrder,
+            Map<String, ScriptWorkspace> workspaces,
+            Predicate<String> isLoaded,
+            Predicate<T> enable,
+            Consumer<T> discard,
+            FocuscriptLogger log
+    ) {
+        this.isLoaded = Objects.requireNonNull(isLoaded, "isLoaded");
+        this.enable = Objects.requireNonNull(enable, "enable");
+        this.discard = Objects.requireNonNull(discard, "discard");
+        this.log = Objects.requireNonNull(log, "log");
+
+        for (String id : loadOrder) {
+            List<String> depends = workspaces.get(id).manifest().depends();
+            int wave = 0;
+            for (String dep : depends) {
+                Node<T> d = nodes.get(dep);
+                if (d != null) wave = Math.max(wave, d.wave + 1);
+            }
+            Node<T> node = new Node<>(id, nodes.size(), wave, depends);
+            for (String dep : depends) {
+                Node<T> d = nodes.get(dep);
+                if (d != null) d.dependents.add(node);
+            }
+            nodes.put(id, node);
+        }
+        this.unsettled = nodes.size();
+    }
+
+    /** Longest dependency chain below the module (0 = depends on nothing), for ordering compiles. */
+    int wave(String id) {
+        Node<T> node = nodes.get(id);
+        return node == null ? 0 : node.wave;
+    }
+
+    /**
+     * A module compiled; enables it, and whatever it unblocks, if its dependencies are enabled.
+     */
+    void compiled(String id, T compiled) {
+        Node<T> node = nodes.get(id);
+        if (node == null || node.state != State.COMPILING) {
+            discard.accept(compiled);
+            return;
+        }
+        node.state = State.WAITING;
+        node.compiled = compiled;
+        node.compiledAt = now();
+        if (dependenciesReady(node)) enqueue(node);
+        drain();
+    }
+
+    /**
+     * A module enabled outside the graph: already running the same build (last known good jar), or
+     * swapped in over a running build.
+     */
+    void kept(String id) {
+        Node<T> node = nodes.get(id);
+        if (node == null || node.state != State.COMPILING) return;
+        node.compiledAt = node.enableStartedAt = node.enabledAt = now();
+        node.state = State.ENABLED;
+        settled();
+        release(node);
+        drain();
+    }
+
+    /**
+     * A module failed to compile. Its dependents are skipped, unless an earlier build of it is still running.
+     */
+    void failed(String id) {
+        Node<T> node = nodes.get(id);
+        if (node == null || node.state != State.COMPILING) return;
+        node.compiledAt = now();
+        fail(node);
+        drain();
+    }
+
+    /** Releases compiled modules that were never enabled; the load is abandoned. */
+    void discardPending() {
+        ready.clear();
+        for (Node<T> node : nodes.values()) {
+            if (node.compiled != null) {
+                T compiled = node.compiled;
+                node.compiled = null;
+                discard.accept(compiled);
+            }
+        }
+    }
+
+    private void drain() {
+        if (draining) return; // re-entered from a module's onEnable; the outer loop takes what was queued
+        draining = true;
+        try {
+            Node<T> node;
+            while ((node = ready.poll()) != null) {
+                node.queued = false;
+                if (node.state != State.WAITING) continue; // skipped while queued
+                T compiled = node.compiled;
+                node.compiled = null;
+                node.enableStartedAt = now();
+                if (enable.test(compiled)) {
+                    node.enabledAt = now();
+                    node.state = State.ENABLED;
+                    settled();
+                    release(node);
+                } else {
+                    fail(node);
+                }
+            }
+        } finally {
+            draining = false;
+        }
+    }
+
+    private void release(Node<T> node) {
+        for (Node<T> dependent : node.dependents) {
+            if (dependent.state == State.WAITING && !dependent.queued && dependenciesReady(dependent)) {
+                enqueue(dependent);
+            }
+        }
+    }
+
+    private void enqueue(Node<T> node) {
+        node.queued = true;
+        ready.add(node);
+    }
+
+    private boolean dependenciesReady(Node<T> node) {
+        for (String dep : node.depends) {
+            if (!isLoaded.test(dep)) return false;
+        }
+        return true;
+    }
+
+    private void fail(Node<T> node) {
+        node.state = State.FAILED;
+        settled();
+        if (isLoaded.test(node.id)) {
+            release(node); // the previous build keeps serving its dependents
+            return;
+        }
+        for (Node<T> dependent : node.dependents) {
+            skip(dependent, node.id);
+        }
+    }
+
+    private void skip(Node<T> node, String cause) {
+        if (node.state != State.COMPILING && node.state != State.WAITING) return;
+        log.error("Skipping module " + node.id + ": dependency " + cause + " failed to load");
+        if (node.compiled != null) {
+            T compiled = node.compiled;
+            node.compiled = null;
+            discard.accept(compiled);
+        }
+        node.state = State.SKIPPED;
+        settled();
+        for (Node<T> dependent : node.dependents) {
+            skip(dependent, node.id);
+        }
+    }
+
+    private void settled() {
+        if (--unsettled == 0) {
+            log.info(report());
+        }
+    }
+
+    private long now() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Totals plus the critical path: from the module enabled last, back through the dependency it waited
+     * for, until a module whose own compile was the last thing it waited for.
+     */
+    private String report() {
+        int enabled = 0, failed = 0, skipped = 0, waves = 0;
+        long waitedNanos = 0L;
+        Node<T> last = null;
+        for (Node<T> node : nodes.values()) {
+            switch (node.state) {
+                case ENABLED -> enabled++;
+                case FAILED -> failed++;
+                case SKIPPED -> skipped++;
+                default -> {}
+            }
+            waves = Math.max(waves, node.wave + 1);
+            if (node.enableStartedAt >= 0 && node.compiledAt >= 0) {
+                waitedNanos += node.enableStartedAt - node.compiledAt;
+            }
+            if (node.state == State.ENABLED && (last == null || node.enabledAt > last.enabledAt)) {
+                last = node;
+            }
+        }
+
+        StringBuilder sb = new StringBuilder("Load finished in ").append(ms(now())).append(" ms: ")
+                .append(enabled).append(" enabled, ").append(failed).append(" failed, ").append(skipped)
+                .append(" skipped, ").append(waves).append(" wave(s); compiled modules waited ")
+                .append(ms(waitedNanos)).append(" ms in total on dependencies.");
+        if (last == null) return sb.toString();
+
+        List<Node<T>> path = new ArrayList<>();
+        for (Node<T> node = last; node != null; node = blocker(node)) {
+            path.add(0, node);
+        }
+        sb.append(" Critical path ").append(ms(last.enabledAt)).append(" ms: ");
+        for (int i = 0; i < path.size(); i++) {
+            Node<T> node = path.get(i);
+            if (i == 0) {
+                sb.append(node.id).append(" (compiled at ").append(ms(node.compiledAt))
+                        .append(" ms, enabled at ").append(ms(node.enabledAt)).append(" ms)");
+            } else {
+                sb.append(" -> ").append(node.id).append(" (+")
+                        .append(ms(node.enabledAt - path.get(i - 1).enabledAt)).append(" ms)");
+            }
+        }
+        return sb.toString();
+    }
+
+    /** The dependency {@code node} was still waiting for after it compiled, or null if it waited for none. */
+    private Node<T> blocker(Node<T> node) {
+        Node<T> latest = null;
+        for (String dep : node.depends) {
+            Node<T> d = nodes.get(dep);
+            if (d == null || d.state != State.ENABLED || d.enabledAt <= node.compiledAt) continue;
+            if (latest == null || d.enabledAt > latest.enabledAt) latest = d;
+        }
+        return latest;
+    }
+
+    private static long ms(long nanos) {
+        return nanos / 1_000_000L;
+    }
+}
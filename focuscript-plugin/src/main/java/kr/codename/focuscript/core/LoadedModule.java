@@ -10,6 +10,7 @@ public record LoadedModule(
         ScriptManifest manifest,
         Path workspaceDir,
         Path moduleJar,
+        String cacheKey,
         ClassLoader classLoader,
         FsModule module,
         PaperFsContext context
@@ -3,38 +3,78 @@ package kr.codename.focuscript.core;
 import kr.codename.focuscript.FocuscriptPlugin;
 import kr.codename.focuscript.command.ModuleCommandRegistry;
 import kr.codename.focuscript.core.bridge.PaperEventBridge;
+import kr.codename.focuscript.core.bundle.BundleStore;
+import kr.codename.focuscript.core.bundle.ModuleBundle;
+import kr.codename.focuscript.core.compiler.BlockingCallLint;
+import kr.codename.focuscript.core.compiler.CompileCancellation;
+import kr.codename.focuscript.core.compiler.CompileExecutor;
+import kr.codename.focuscript.core.compiler.CompileJobs;
+import kr.codename.focuscript.core.compiler.CompileMetrics;
+import kr.codename.focuscript.core.compiler.CompileWorkerPool;
 import kr.codename.focuscript.core.compiler.FsCompiler;
+import kr.codename.focuscript.core.compiler.JarCache;
 import kr.codename.focuscript.core.compiler.KotlinCompilationException;
+import kr.codename.focuscript.core.compiler.ModuleArtifact;
+import kr.codename.focuscript.core.loader.LoaderLeakTracker;
 import kr.codename.focuscript.core.loader.ModuleClassLoader;
+import kr.codename.focuscript.core.loader.PreparedModule;
 import kr.codename.focuscript.core.workspace.ScriptManifest;
 import kr.codename.focuscript.core.workspace.ScriptWorkspace;
 import kr.codename.focuscript.runtime.PaperFsContext;
 import kr.codename.focuscript.api.FsModule;
 import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.scheduler.BukkitTask;
 
+import java.lang.ref.WeakReference;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.sql.DriverManager;
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public final class ModuleManager {
 
+    /** How long a disabled module's interrupted threads get to exit before survivors are reported. */
+    private static final long THREAD_LEAK_CHECK_DELAY_TICKS = 20L;
+
     private final FocuscriptPlugin plugin;
     private final Path apiJarPath;
+    private final Path runtimeJarPath;
 
     private final FsCompiler compiler;
+    private final CompileExecutor compileExecutor;
+    private final CompileJobs compileJobs;
+    private final JarCache jarCache;
+    private final BundleStore bundles;
+    private final BukkitTask cacheSweepTask;
+    private final BukkitTask compilerUnloadTask;
+    private final LoaderLeakTracker leakTracker;
+    private final BukkitTask leakCheckTask;
+    private final boolean inMemoryReload;
     private final PaperEventBridge eventBridge;
     private final ModuleCommandRegistry commandRegistry;
     private final kr.codename.focuscript.logging.FocuscriptLogger log;
 
-    private final List<LoadedModule> loadedModules = new CopyOnWriteArrayList<>();
+    private final ModuleRegistry modules = new ModuleRegistry();
     private final AtomicInteger loadGeneration = new AtomicInteger();
-    private final Map<String, CompiledWorkspace> pendingCompiled = new HashMap<>();
+    /** The current full load; main thread only. Null before the first load and after shutdown. */
+    private LoadGraph<CompiledWorkspace> loadGraph;
+    /** Running diagnostics per module id; a newer request cancels the older one. */
+    private final Map<String, CompileCancellation> diagnosing = new ConcurrentHashMap<>();
+
+    private final long createdAtNanos = System.nanoTime();
+    private volatile long timeToFirstModuleMs = -1L;
 
-    public ModuleManager(FocuscriptPlugin plugin, Path apiJarPath, kr.codename.focuscript.logging.FocuscriptLogger log) {
+    public ModuleManager(FocuscriptPlugin plugin, Path apiJarPath, Path runtimeJarPath, kr.codename.focuscript.logging.FocuscriptLogger log) {
         this.plugin = Objects.requireNonNull(plugin, "plugin");
         this.apiJarPath = Objects.requireNonNull(apiJarPath, "apiJarPath");
+        this.runtimeJarPath = Objects.requireNonNull(runtimeJarPath, "runtimeJarPath");
         this.log = Objects.requireNonNull(log, "log");
 
         this.eventBridge = new PaperEventBridge(plugin, log);
@@ -42,12 +82,147 @@ public final class ModuleManager {
 
         this.commandRegistry = new ModuleCommandRegistry();
         Path buildRoot = plugin.getDataFolder().toPath().resolve("_build");
-        this.compiler = new FsCompiler(plugin, apiJarPath, buildRoot, log);
+        FileConfiguration config = plugin.getConfig();
+        this.jarCache = new JarCache(buildRoot, JarCache.limitsFromConfig(
+                config.getLong("cache.max-total-mb", 512L),
+                config.getLong("cache.max-per-module-mb", 64L),
+                config.getLong("cache.max-age-days", 30L)
+        ), log);
+        this.compileExecutor = new CompileExecutor(config.getInt("compiler.threads", 0));
+        this.compileJobs = new CompileJobs(compileExecutor);
+        this.inMemoryReload = config.getBoolean("compiler.in-memory-reload", true);
+        log.info("Compile pool: " + compileExecutor.getThreads() + " thread(s)");
+
+        long idleMinutes = config.getLong("compiler.unload-after-idle-minutes", 10L);
+        this.compiler = new FsCompiler(plugin.getDescription().getVersion(), apiJarPath, runtimeJarPath, buildRoot, jarCache,
+                workerSettings(config, idleMinutes), TimeUnit.MINUTES.toMillis(idleMinutes),
+                BlockingCallLint.Mode.parse(config.getString("compiler.blocking-calls", "warn")), log);
+        this.bundles = new BundleStore(
+                plugin,
+                compiler,
+                plugin.getDataFolder().toPath().resolve("bundles"),
+                plugin.getDataFolder().toPath().resolve("scripts"),
+                log
+        );
+
+        // Background eviction; the first sweep runs shortly after startup.
+        long sweepTicks = Math.max(1L, config.getLong("cache.sweep-interval-minutes", 30L)) * 60L * 20L;
+        this.cacheSweepTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::sweepJarCache, 20L * 60L, sweepTicks);
+        this.leakTracker = new LoaderLeakTracker(config.getInt("leaks.report-after-gcs", 3), log);
+        this.leakCheckTask = leakTracker.isEnabled()
+                ? Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, leakTracker::check, 20L * 60L, 20L * 60L)
+                : null;
+
+        // Idle compiler release, checked once a minute.
+        this.compilerUnloadTask = idleMinutes > 0
+                ? Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, compiler::releaseCompilerIfIdle, 20L * 60L, 20L * 60L)
+                : null;
+    }
+
+    /** Worker JVM settings, or null to compile in process. */
+    private CompileWorkerPool.Settings workerSettings(FileConfiguration config, long idleMinutes) {
+        String backend = config.getString("compiler.backend", "in-process");
+        if (!"worker".equalsIgnoreCase(backend)) {
+            if (!"in-process".equalsIgnoreCase(backend)) {
+                log.warn("Unknown compiler.backend '" + backend + "'; using in-process.");
+            }
+            if (idleMinutes > 0) {
+                log.info("Compiler backend: in-process, released after " + idleMinutes + " idle minute(s)");
+            }
+            return null;
+        }
+
+        int workers = config.getInt("compiler.worker.count", 0);
+        CompileWorkerPool.Settings settings = new CompileWorkerPool.Settings(
+                workers > 0 ? workers : compileExecutor.getThreads(),
+                config.getInt("compiler.worker.max-compiles", 50),
+                config.getInt("compiler.worker.max-heap-mb", 1024),
+                config.getInt("compiler.worker.timeout-seconds", 300),
+                config.getBoolean("compiler.worker.cds", true)
+        );
+        log.info("Compiler backend: " + settings.workers() + " worker JVM(s), -Xmx" + settings.maxHeapMb()
+                + "m, recycled every " + settings.maxCompilesPerWorker() + " compile(s)");
+        return settings;
+    }
+
+    /**
+     * Bootstraps the Kotlin compiler session in the background so the first cache miss
+     * (or Web IDE reload) does not pay the full compiler startup.
+     */
+    public void warmUpCompilerAsync() {
+        compileExecutor.execute(compiler::warmUp);
+    }
+
+    /**
+     * Releases compiler resources. Call after {@link #disableAll()} when the plugin shuts down.
+     */
+    public void shutdown() {
+        cacheSweepTask.cancel();
+        if (compilerUnloadTask != null) compilerUnloadTask.cancel();
+        if (leakCheckTask != null) leakCheckTask.cancel();
+        discardLoadGraph();
+        compileJobs.cancelAll();
+        diagnosing.values().forEach(CompileCancellation::cancel);
+        compileExecutor.close();
+        compiler.close();
+    }
+
+    public JarCache getJarCache() {
+        return jarCache;
+    }
+
+    public CompileMetrics getCompileMetrics() {
+        return compiler.getMetrics();
+    }
+
+    public LoaderLeakTracker getLeakTracker() {
+        return leakTracker;
+    }
+
+    /**
+     * Runs a jar cache sweep off the main thread; {@code callback} (optional) gets the eviction count.
+     */
+    public void sweepJarCacheAsync(java.util.function.IntConsumer callback) {
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            int evicted = sweepJarCache();
+            if (callback != null) callback.accept(evicted);
+        });
+    }
+
+    private int sweepJarCache() {
+        try {
+            return jarCache.sweep();
+        } catch (Throwable t) {
+            log.warn("Jar cache sweep failed: " + t.getMessage());
+            return 0;
+        }
     }
 
     public int loadAll() {
+        return loadAll(false);
+    }
+
+    /**
+     * Initial load from {@code onEnable}. With {@code startup.stale-while-revalidate}, modules are first
+     * enabled from the jar they last ran with, then every workspace is checked in the background as in
+     * {@link #loadAll()}; only modules whose sources changed are swapped.
+     */
+    public int loadAllOnStartup() {
+        return loadAll(plugin.getConfig().getBoolean("startup.stale-while-revalidate", true));
+    }
+
+    /**
+     * Milliseconds from plugin enable until the first module was enabled, or -1 if none yet.
+     */
+    public long getTimeToFirstModuleMs() {
+        return timeToFirstModuleMs;
+    }
+
+    private int loadAll(boolean serveStale) {
         int generation = loadGeneration.incrementAndGet();
-        pendingCompiled.clear();
+        // Compiles of the previous generation are obsolete; stop them instead of letting them finish.
+        compileJobs.cancelAll();
+        discardLoadGraph();
         disableAll(); // ensure clean slate
 
         Path workspacesRoot = plugin.getDataFolder().toPath().resolve("scripts");
@@ -123,18 +298,52 @@ public final class ModuleManager {
             log.error("Unresolved module dependencies (cycle): " + cyclic);
         }
 
+        if (serveStale) {
+            enableLastKnownGood(loadOrder, validWorkspaces);
+        }
+
+        LoadGraph<CompiledWorkspace> graph = new LoadGraph<>(
+                loadOrder,
+                validWorkspaces,
+                modules::contains,
+                compiled -> enableCompiledWorkspace(compiled.workspace(), compiled.artifact(), compiled.prepared()),
+                compiled -> closeQuietly(compiled.prepared()),
+                log
+        );
+        loadGraph = graph;
         int scheduled = 0;
         for (String id : loadOrder) {
             ScriptWorkspace ws = validWorkspaces.get(id);
             if (ws == null) continue;
             scheduled++;
-            scheduleCompileAsync(ws, generation);
+            scheduleCompileAsync(ws, generation, graph.wave(id));
         }
 
         log.info("Focuscript: queued " + scheduled + " module(s) for async compilation.");
         return scheduled;
     }
 
+    /**
+     * Enables modules from their last known good jar, in load order, without hashing or compiling.
+     */
+    private void enableLastKnownGood(List<String> loadOrder, Map<String, ScriptWorkspace> workspaces) {
+        String pluginVersion = plugin.getDescription().getVersion();
+        int enabled = 0;
+        for (String id : loadOrder) {
+            ScriptWorkspace ws = workspaces.get(id);
+            if (ws == null || !dependenciesLoaded(ws.manifest())) continue;
+
+            ModuleArtifact lastGood = LastKnownGood.read(compiler.getBuildDir(id), pluginVersion);
+            if (lastGood != null && enableCompiledWorkspace(ws, lastGood)) {
+                enabled++;
+            }
+        }
+        if (enabled > 0) {
+            log.info("Startup: enabled " + enabled + " module(s) from last known good jars in "
+                    + ((System.nanoTime() - createdAtNanos) / 1_000_000L) + " ms; revalidating in background.");
+        }
+    }
+
     private List<String> resolveLoadOrder(Map<String, ScriptWorkspace> workspaces) {
         Map<String, Integer> indegree = new HashMap<>();
         Map<String, List<String>> dependents = new HashMap<>();
@@ -176,102 +385,241 @@ public final class ModuleManager {
         return order;
     }
 
-    private void scheduleCompileAsync(ScriptWorkspace ws, int generation) {
-        ScriptManifest manifest = ws.manifest();
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            if (generation != loadGeneration.get()) return;
+    private void scheduleCompileAsync(ScriptWorkspace ws, int generation, int depth) {
+        compileJobs.submit(ws.manifest().id(), CompileExecutor.Priority.BULK, depth, compileTask(ws, false, generation)).whenComplete((artifact, error) -> {
+            if (generation != loadGeneration.get() || error instanceof CancellationException) return;
+            if (error != null) {
+                // Logged by the task; the load graph skips the modules that depend on this one.
+                Bukkit.getScheduler().runTask(plugin, () -> onCompileFailed(ws, generation));
+                return;
+            }
+            PreparedModule prepared = prepareQuietly(ws, artifact);
+            Bukkit.getScheduler().runTask(plugin, () -> onCompiled(ws, artifact, prepared, generation));
+        });
+    }
 
-            Path moduleJar;
+    /**
+     * Defines and links the module's classes on the calling (compile) thread, so enabling on the main
+     * thread does not load them one by one. Null on failure; enabling then retries on the main thread and
+     * reports the error there.
+     */
+    private PreparedModule prepareQuietly(ScriptWorkspace ws, ModuleArtifact artifact) {
+        try {
+            return PreparedModule.prepare(plugin, ws.manifest().id(), artifact, compiler.getEntrypointClassName(ws.manifest()));
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    private static void closeQuietly(PreparedModule prepared) {
+        if (prepared != null) prepared.close();
+    }
+
+    private void discardLoadGraph() {
+        if (loadGraph != null) {
+            loadGraph.discardPending();
+            loadGraph = null;
+        }
+    }
+
+    /**
+     * A compile job for {@code ws}. Coalesced with other requests for the same module by
+     * {@link CompileJobs}; failures are logged here once, however many callers wait for the job.
+     */
+    private CompileJobs.Task compileTask(ScriptWorkspace ws, boolean inMemory, int generation) {
+        return cancellation -> {
+            if (generation != loadGeneration.get()) {
+                throw new CancellationException("Superseded by a full reload");
+            }
             try {
-                moduleJar = compiler.compileIfNeeded(ws);
+                return resolveArtifact(ws, inMemory, cancellation);
+            } catch (CancellationException e) {
+                throw e;
             } catch (Throwable t) {
                 String msg = t.getMessage();
                 log.error(
-                        "Failed to compile workspace " + manifest.id() + ": "
+                        "Failed to compile workspace " + ws.manifest().id() + ": "
                                 + t.getClass().getSimpleName()
                                 + (msg == null || msg.isBlank() ? "" : ": " + msg),
                         t
                 );
-                return;
+                throw t;
             }
+        };
+    }
 
-            if (generation != loadGeneration.get()) return;
-            Bukkit.getScheduler().runTask(plugin, () -> onCompiled(ws, moduleJar, generation));
-        });
+    /**
+     * A verified installed bundle if there is one for {@code ws}, otherwise the compiler's output.
+     */
+    private ModuleArtifact resolveArtifact(ScriptWorkspace ws, boolean inMemory, CompileCancellation cancellation) throws Exception {
+        ModuleArtifact bundled = bundles.findInstalled(ws);
+        if (bundled != null) {
+            log.info("Using precompiled bundle for " + ws.manifest().id());
+            return bundled;
+        }
+        return compiler.compileIfNeeded(ws, inMemory, cancellation);
     }
 
-    private void onCompiled(ScriptWorkspace ws, Path moduleJar, int generation) {
-        if (generation != loadGeneration.get()) return;
+    private void onCompiled(ScriptWorkspace ws, ModuleArtifact artifact, PreparedModule prepared, int generation) {
+        LoadGraph<CompiledWorkspace> graph = loadGraph;
+        if (generation != loadGeneration.get() || graph == null) {
+            closeQuietly(prepared);
+            return;
+        }
 
         ScriptManifest manifest = ws.manifest();
-        if (!dependenciesLoaded(manifest)) {
-            pendingCompiled.putIfAbsent(manifest.id(), new CompiledWorkspace(ws, moduleJar));
+
+        // Already running from its last known good jar: keep it unless the sources changed.
+        LoadedModule current = findLoadedModule(manifest.id());
+        if (current != null) {
+            if (current.cacheKey().equals(artifact.cacheKey())) {
+                closeQuietly(prepared);
+                graph.kept(manifest.id());
+                return;
+            }
+            log.info("Sources of " + manifest.id() + " changed since the last run; swapping in the new build.");
+            if (swapBuild(current, ws, artifact, prepared)) {
+                graph.kept(manifest.id());
+            } else {
+                graph.failed(manifest.id());
+            }
             return;
         }
 
-        if (enableCompiledWorkspace(ws, moduleJar)) {
-            tryEnablePending(generation);
-        }
+        graph.compiled(manifest.id(), new CompiledWorkspace(ws, artifact, prepared));
     }
 
-    private void tryEnablePending(int generation) {
-        if (generation != loadGeneration.get()) return;
+    /**
+     * Replaces a running module with a new build. The new build's classes are loaded before anything is
+     * disabled, so a build that cannot even load leaves the old one running. Loaded modules that depend on
+     * it are disabled first and re-enabled afterwards, so none of them runs while its dependency is down.
+     * If the new build fails to enable, the previous build is enabled again.
+     *
+     * @param prepared owned by this call
+     * @return true if the new build is running
+     */
+    private boolean swapBuild(LoadedModule current, ScriptWorkspace ws, ModuleArtifact artifact, PreparedModule prepared) {
+        String id = current.manifest().id();
+        if (prepared == null) {
+            try {
+                prepared = PreparedModule.prepare(plugin, id, artifact, compiler.getEntrypointClassName(ws.manifest()));
+            } catch (Throwable t) {
+                log.error("New build of " + id + " could not be loaded; keeping the previous build: " + t.getMessage(), t);
+                return false;
+            }
+        }
+
+        List<LoadedModule> dependents = loadedDependents(id);
+        ModuleArtifact previous = new ModuleArtifact(current.moduleJar(), current.cacheKey(), null);
+        // Disabling unpins; keep the jars we may enable again below.
+        jarCache.pin(previous.jar());
+        dependents.forEach(d -> jarCache.pin(d.moduleJar()));
+        try {
+            for (int i = dependents.size() - 1; i >= 0; i--) {
+                disableModuleIfLoaded(dependents.get(i).manifest().id());
+            }
+            disableModuleIfLoaded(id);
+
+            boolean swapped = enableCompiledWorkspace(ws, artifact, prepared);
+            if (!swapped) {
+                log.warn("New build of " + id + " failed to enable; enabling the previous build again.");
+                if (!enableCompiledWorkspace(workspaceOf(current), previous)) {
+                    log.error("Previous build of " + id + " failed to enable too; " + id + " stays disabled.");
+                }
+            }
 
-        boolean progress;
-        do {
-            progress = false;
-            Iterator<Map.Entry<String, CompiledWorkspace>> it = pendingCompiled.entrySet().iterator();
-            while (it.hasNext()) {
-                CompiledWorkspace compiled = it.next().getValue();
-                if (!dependenciesLoaded(compiled.workspace().manifest())) {
+            for (LoadedModule dependent : dependents) {
+                ScriptManifest dm = dependent.manifest();
+                if (!dependenciesLoaded(dm)) {
+                    log.error("Module " + dm.id() + " stays disabled: dependencies " + dm.depends() + " are not all loaded.");
                     continue;
                 }
-                it.remove();
-                if (enableCompiledWorkspace(compiled.workspace(), compiled.moduleJar())) {
-                    progress = true;
+                enableCompiledWorkspace(workspaceOf(dependent), new ModuleArtifact(dependent.moduleJar(), dependent.cacheKey(), null));
+            }
+            return swapped;
+        } finally {
+            jarCache.unpin(previous.jar());
+            dependents.forEach(d -> jarCache.unpin(d.moduleJar()));
+        }
+    }
+
+    /**
+     * Loaded modules that depend on {@code moduleId}, directly or transitively, in enable order.
+     */
+    private List<LoadedModule> loadedDependents(String moduleId) {
+        Set<String> affected = new HashSet<>(Set.of(moduleId));
+        List<LoadedModule> out = new ArrayList<>();
+        // Enable order has dependencies before dependents, so one pass finds the transitive ones.
+        for (LoadedModule lm : modules.snapshot()) {
+            if (affected.contains(lm.manifest().id())) continue;
+            for (String dep : lm.manifest().depends()) {
+                if (affected.contains(dep)) {
+                    affected.add(lm.manifest().id());
+                    out.add(lm);
+                    break;
                 }
             }
-        } while (progress);
+        }
+        return out;
+    }
+
+    /**
+     * The workspace a loaded module runs from, with the manifest it was enabled with.
+     */
+    private static ScriptWorkspace workspaceOf(LoadedModule lm) {
+        Path scriptYml = lm.workspaceDir().resolve("script.yml");
+        return new ScriptWorkspace(lm.workspaceDir(), scriptYml, lm.manifest(), YamlConfiguration.loadConfiguration(scriptYml.toFile()));
+    }
+
+    private void onCompileFailed(ScriptWorkspace ws, int generation) {
+        LoadGraph<CompiledWorkspace> graph = loadGraph;
+        if (generation != loadGeneration.get() || graph == null) return;
+        graph.failed(ws.manifest().id());
     }
 
     private boolean dependenciesLoaded(ScriptManifest manifest) {
         for (String dep : manifest.depends()) {
-            if (!isModuleLoaded(dep)) return false;
+            if (!modules.contains(dep)) return false;
         }
         return true;
     }
 
-    private boolean isModuleLoaded(String moduleId) {
-        for (LoadedModule lm : loadedModules) {
-            if (lm.manifest().id().equals(moduleId)) {
-                return true;
-            }
-        }
-        return false;
+    /**
+     * Whether a module with this id is currently enabled.
+     */
+    public boolean isModuleLoaded(String moduleId) {
+        return modules.contains(moduleId);
     }
 
-    private boolean enableCompiledWorkspace(ScriptWorkspace ws, Path moduleJar) {
+    private boolean enableCompiledWorkspace(ScriptWorkspace ws, ModuleArtifact artifact) {
+        return enableCompiledWorkspace(ws, artifact, null);
+    }
+
+    /**
+     * @param prepared the artifact's classes prepared off the main thread, or null to prepare them here.
+     *                 Owned by this call from now on: it is either enabled or closed.
+     */
+    private boolean enableCompiledWorkspace(ScriptWorkspace ws, ModuleArtifact artifact, PreparedModule prepared) {
         ScriptManifest manifest = ws.manifest();
         Path wsDir = ws.root();
         ModuleClassLoader cl = null;
 
         try {
-            // Load module jar with restricted classloader
-            cl = new ModuleClassLoader(
-                    plugin,
-                    manifest.id(),
-                    moduleJar.toUri().toURL(),
-                    ModuleClassLoader.class.getClassLoader() // parent: plugin's classloader
-            );
+            // Before any module code runs: a second copy must never be enabled next to the first.
+            if (modules.contains(manifest.id())) {
+                throw new IllegalStateException("Module already loaded: " + manifest.id());
+            }
 
+            // Load module jar (or in-memory classes) with restricted classloader.
             // Entrypoint: generated @file:JvmName("FocuscriptEntry") class with getFocuscriptModule()
-            String entryClassName = compiler.getEntrypointClassName(manifest);
-            Class<?> entryClass = cl.loadClass(entryClassName);
-            var getter = entryClass.getDeclaredMethod("getFocuscriptModule");
-            Object moduleObj = getter.invoke(null);
-            if (!(moduleObj instanceof FsModule module)) {
-                throw new IllegalStateException("focuscriptModule is not FsModule: " + moduleObj);
+            if (prepared == null) {
+                prepared = PreparedModule.prepare(plugin, manifest.id(), artifact, compiler.getEntrypointClassName(manifest));
+            } else if (manifest.debug()) {
+                log.info("[" + manifest.id() + "] prepared " + prepared.classCount() + " class(es) off the main thread in "
+                        + prepared.prepareMs() + " ms");
             }
+            cl = prepared.classLoader();
+            FsModule module = prepared.createModule();
 
             // Context per module
             PaperFsContext context = new PaperFsContext(
@@ -296,7 +644,23 @@ public final class ModuleManager {
                 return false;
             }
 
-            loadedModules.add(new LoadedModule(manifest, wsDir, moduleJar, cl, module, context));
+            jarCache.pin(artifact.jar());
+            try {
+                modules.add(new LoadedModule(manifest, wsDir, artifact.jar(), artifact.cacheKey(), cl, module, context));
+            } catch (IllegalStateException e) {
+                // Enabled under the same id from inside onEnable; undo this copy so nothing of it keeps running.
+                log.error("Module " + manifest.id() + " was enabled twice; disabling the second copy.");
+                try {
+                    module.onDisable();
+                } catch (Throwable t) {
+                    log.error("Module " + manifest.id() + " failed onDisable: " + t.getMessage(), t);
+                }
+                context.closeAll();
+                try { cl.close(); } catch (Exception ignored) {}
+                jarCache.unpin(artifact.jar());
+                return false;
+            }
+            onModuleEnabled(manifest, artifact);
             return true;
         } catch (Throwable t) {
             String msg = t.getMessage();
@@ -308,19 +672,35 @@ public final class ModuleManager {
             );
             if (cl != null) {
                 try { cl.close(); } catch (Exception ignored) {}
+            } else {
+                closeQuietly(prepared);
             }
             return false;
         }
     }
 
+    private void onModuleEnabled(ScriptManifest manifest, ModuleArtifact artifact) {
+        if (timeToFirstModuleMs < 0) {
+            timeToFirstModuleMs = (System.nanoTime() - createdAtNanos) / 1_000_000L;
+            log.info("First module enabled " + timeToFirstModuleMs + " ms after plugin enable (" + manifest.id() + ").");
+        }
+
+        Path buildDir = compiler.getBuildDir(manifest.id());
+        String pluginVersion = plugin.getDescription().getVersion();
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                LastKnownGood.write(buildDir, artifact, pluginVersion);
+            } catch (Exception e) {
+                log.warn("[" + manifest.id() + "] Failed to record last known good jar: " + e.getMessage());
+            }
+        });
+    }
+
     public int disableAll() {
         int disabled = 0;
 
         // Disable in reverse order
-        List<LoadedModule> snapshot = new ArrayList<>(loadedModules);
-        Collections.reverse(snapshot);
-
-        for (LoadedModule lm : snapshot) {
+        for (LoadedModule lm : modules.snapshotReversed()) {
             try {
                 log.info("Disabling module: " + lm.manifest().id());
                 try {
@@ -342,48 +722,111 @@ public final class ModuleManager {
                     log.warn("Failed to close classloader for module " + lm.manifest().id() + ": " + e.getMessage());
                 }
 
-                logPotentialThreadLeaks(lm);
+                checkThreadLeaksLater(lm);
+                trackLoader(lm);
                 disabled++;
             } catch (Throwable t) {
                 log.error("Failed to disable module " + lm.manifest().id() + ": " + t.getMessage(), t);
             } finally {
-                loadedModules.remove(lm);
+                modules.remove(lm);
+                jarCache.unpin(lm.moduleJar());
             }
         }
 
         return disabled;
     }
 
-    private record CompiledWorkspace(ScriptWorkspace workspace, Path moduleJar) {}
+    /**
+     * Watches the class loader of a disabled module until it is collected. The holder probe keeps the
+     * module's context only weakly; a context that is still reachable is itself a lead.
+     */
+    private void trackLoader(LoadedModule lm) {
+        if (!leakTracker.isEnabled()) return;
+        WeakReference<PaperFsContext> context = new WeakReference<>(lm.context());
+        leakTracker.track(lm.manifest().id(), lm.classLoader(), loader -> describeLoaderHolders(loader, context.get()));
+    }
 
+    /** Things known to keep a module's class loader reachable. Off the main thread, only for leak reports. */
+    private List<String> describeLoaderHolders(ClassLoader loader, PaperFsContext context) {
+        List<String> holders = new ArrayList<>();
+        if (context != null) {
+            for (int taskId : context.activeTaskIds()) {
+                holders.add("scheduler task #" + taskId + " still queued or running");
+            }
+            for (Thread thread : context.liveThreads()) {
+                holders.add("module thread " + thread.getName() + " (id=" + thread.getId() + ") still running");
+            }
+        }
+        holders.addAll(eventBridge.describeHandlersFrom(loader));
+        holders.addAll(commandRegistry.describeHandlersFrom(loader));
+        for (LoadedModule loaded : modules.snapshot()) {
+            if (loaded.classLoader() == loader) {
+                holders.add("still listed as loaded module " + loaded.manifest().id());
+            }
+        }
+        for (Thread thread : liveThreads()) {
+            if (thread.getContextClassLoader() == loader || thread.getClass().getClassLoader() == loader) {
+                holders.add("thread " + thread.getName() + " (id=" + thread.getId() + ", daemon=" + thread.isDaemon() + ")");
+            }
+        }
+        DriverManager.drivers()
+                .filter(driver -> driver.getClass().getClassLoader() == loader)
+                .forEach(driver -> holders.add("JDBC driver " + driver.getClass().getName() + " registered in DriverManager"));
+        return holders;
+    }
+
+    /** Live threads without capturing their stacks. */
+    private static List<Thread> liveThreads() {
+        ThreadGroup root = Thread.currentThread().getThreadGroup();
+        while (root.getParent() != null) root = root.getParent();
+        Thread[] threads = new Thread[root.activeCount() + 16];
+        int n = root.enumerate(threads, true);
+        return Arrays.asList(threads).subList(0, n);
+    }
+
+    private record CompiledWorkspace(ScriptWorkspace workspace, ModuleArtifact artifact, PreparedModule prepared) {}
+
+    /**
+     * Reports the module's surviving threads once they have had a second to react to the interrupt from
+     * {@code closeAll()}. The wait happens on an async task, never on the main thread. While the plugin is
+     * shutting down no task can be scheduled, so survivors are checked right away instead.
+     */
+    private void checkThreadLeaksLater(LoadedModule lm) {
+        if (!plugin.isEnabled()) {
+            logPotentialThreadLeaks(lm);
+            return;
+        }
+        Bukkit.getScheduler().runTaskLaterAsynchronously(plugin, () -> logPotentialThreadLeaks(lm), THREAD_LEAK_CHECK_DELAY_TICKS);
+    }
+
+    /**
+     * Reports threads the module created through {@code threads} that outlived {@code closeAll()}. Only the
+     * module's own threads are checked; threads started any other way surface in the class loader leak report.
+     */
     private void logPotentialThreadLeaks(LoadedModule lm) {
-        ClassLoader moduleCl = lm.classLoader();
-        if (moduleCl == null) return;
+        List<Thread> survivors = lm.context().liveThreads();
+        if (survivors.isEmpty()) return;
 
         List<String> offenders = new ArrayList<>();
         int nonDaemon = 0;
-        for (Thread thread : Thread.getAllStackTraces().keySet()) {
-            if (thread == null || !thread.isAlive()) continue;
-            if (thread.getContextClassLoader() != moduleCl) continue;
+        for (Thread thread : survivors) {
             if (!thread.isDaemon()) nonDaemon++;
             offenders.add(thread.getName() + "(id=" + thread.getId() + ", daemon=" + thread.isDaemon() + ")");
         }
 
-        if (!offenders.isEmpty()) {
-            log.warn(
-                    "Possible thread leak after disabling module "
-                            + lm.manifest().id()
-                            + ": "
-                            + offenders
-            );
-            if (nonDaemon > 0) {
-                log.warn("Possible CPU leak: module " + lm.manifest().id() + " has " + nonDaemon + " non-daemon thread(s)");
-            }
+        log.warn(
+                "Possible thread leak after disabling module "
+                        + lm.manifest().id()
+                        + ": "
+                        + offenders
+        );
+        if (nonDaemon > 0) {
+            log.warn("Possible CPU leak: module " + lm.manifest().id() + " has " + nonDaemon + " non-daemon thread(s)");
         }
     }
 
     public List<LoadedModule> getLoadedModules() {
-        return List.copyOf(loadedModules);
+        return modules.snapshot();
     }
 
     /**
@@ -395,6 +838,9 @@ public final class ModuleManager {
      *
      * <p>If {@code script.yml}'s {@code load} is not {@code enable}, this will only disable the
      * currently loaded module (if any) and will not enable it again.</p>
+     *
+     * <p>Calls for a module that is already compiling join that job: the running compile is cancelled,
+     * the latest sources are compiled once, and every caller gets that result.</p>
      */
     public void reloadModuleAsync(String moduleId, java.util.function.Consumer<ReloadResult> callback) {
         Objects.requireNonNull(moduleId, "moduleId");
@@ -445,18 +891,16 @@ public final class ModuleManager {
             // Disable current module first to release jar handles (important on Windows).
             disableModuleIfLoaded(moduleId);
 
-            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-                if (generation != loadGeneration.get()) {
+            // Coalesced with pending/running compiles of this module: quick successive saves share one compile.
+            // Someone is waiting for this one, so it goes ahead of queued bulk compiles.
+            compileJobs.submit(manifest.id(), CompileExecutor.Priority.INTERACTIVE, 0, compileTask(workspace, inMemoryReload, generation)).whenComplete((artifact, error) -> {
+                if (error instanceof CancellationException) {
                     callback.accept(new ReloadResult(false, "Cancelled (another reload started)"));
                     return;
                 }
-
-                final Path moduleJar;
-                try {
-                    moduleJar = compiler.compileIfNeeded(workspace);
-                } catch (Throwable t) {
-                    String msg = t.getMessage();
-                    if (t instanceof KotlinCompilationException kce) {
+                if (error != null) {
+                    String msg = error.getMessage();
+                    if (error instanceof KotlinCompilationException kce) {
                         List<String> lines = kce.getMessages();
                         if (lines != null && !lines.isEmpty()) {
                             int max = Math.min(lines.size(), 40);
@@ -470,24 +914,29 @@ public final class ModuleManager {
                             msg = sb.toString().trim();
                         }
                     }
-                    log.error(
-                            "Failed to compile workspace " + manifest.id() + ": "
-                                    + t.getClass().getSimpleName()
-                                    + (msg == null || msg.isBlank() ? "" : ": " + msg),
-                            t
-                    );
                     callback.accept(new ReloadResult(false,
                             "Compilation failed for " + manifest.id() + (msg == null || msg.isBlank() ? "" : ":\n" + msg)));
                     return;
                 }
 
+                PreparedModule prepared = prepareQuietly(workspace, artifact);
                 Bukkit.getScheduler().runTask(plugin, () -> {
                     if (generation != loadGeneration.get()) {
+                        closeQuietly(prepared);
                         callback.accept(new ReloadResult(false, "Cancelled (another reload started)"));
                         return;
                     }
 
-                    boolean ok = enableCompiledWorkspace(workspace, moduleJar);
+                    // Every caller of a coalesced job gets the same artifact; only the first enables it.
+                    LoadedModule current = findLoadedModule(moduleId);
+                    if (current != null && current.cacheKey().equals(artifact.cacheKey())) {
+                        closeQuietly(prepared);
+                        callback.accept(new ReloadResult(true, "Reloaded module: " + manifest.id()));
+                        return;
+                    }
+                    disableModuleIfLoaded(moduleId);
+
+                    boolean ok = enableCompiledWorkspace(workspace, artifact, prepared);
                     callback.accept(new ReloadResult(ok, ok
                             ? "Reloaded module: " + manifest.id()
                             : "Failed to enable module: " + manifest.id()));
@@ -496,6 +945,155 @@ public final class ModuleManager {
         });
     }
 
+    /**
+     * Type-checks a workspace for the editor: only the Kotlin frontend runs, nothing is cached and the
+     * loaded module keeps running. See {@link FsCompiler#diagnose}.
+     *
+     * <p>Runs ahead of bulk compiles. A newer call for the same module cancels this one; its future then
+     * completes with a {@link CancellationException}. Completing the returned future exceptionally (cancel,
+     * {@link CompletableFuture#orTimeout}) stops the analysis as well.</p>
+     *
+     * @param overlay unsaved contents by absolute path inside the workspace
+     */
+    public CompletableFuture<FsCompiler.Diagnostics> diagnoseAsync(String moduleId, Map<Path, String> overlay) {
+        Objects.requireNonNull(moduleId, "moduleId");
+        Objects.requireNonNull(overlay, "overlay");
+
+        CompletableFuture<FsCompiler.Diagnostics> future = new CompletableFuture<>();
+        ScriptWorkspace workspace;
+        try {
+            workspace = findWorkspaceById(moduleId);
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        if (workspace == null) {
+            future.completeExceptionally(new IllegalArgumentException("Workspace not found: " + moduleId));
+            return future;
+        }
+
+        CompileCancellation cancellation = new CompileCancellation();
+        CompileCancellation previous = diagnosing.put(moduleId, cancellation);
+        if (previous != null) previous.cancel();
+        future.whenComplete((result, error) -> {
+            if (error != null) cancellation.cancel();
+        });
+
+        compileExecutor.execute(() -> {
+            try {
+                cancellation.throwIfCancelled();
+                future.complete(compiler.diagnose(workspace, Map.copyOf(overlay), cancellation));
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                diagnosing.remove(moduleId, cancellation);
+            }
+        }, CompileExecutor.Priority.INTERACTIVE, 0);
+        return future;
+    }
+
+    /**
+     * Writes a bundle for {@code moduleId}, or for every workspace when null, into {@code bundles/}.
+     * Compiles as needed on the compile pool; {@code callback} gets one line per module.
+     */
+    public void exportBundlesAsync(String moduleId, java.util.function.Consumer<List<String>> callback) {
+        Objects.requireNonNull(callback, "callback");
+        compileExecutor.execute(() -> {
+            List<String> lines = new ArrayList<>();
+            List<ScriptWorkspace> targets = new ArrayList<>();
+            try {
+                if (moduleId == null) {
+                    targets.addAll(listWorkspaces());
+                } else {
+                    ScriptWorkspace ws = findWorkspaceById(moduleId);
+                    if (ws == null) {
+                        lines.add("Workspace not found: " + moduleId);
+                    } else {
+                        targets.add(ws);
+                    }
+                }
+            } catch (Exception e) {
+                lines.add("Failed to read workspaces: " + e.getMessage());
+            }
+
+            for (ScriptWorkspace ws : targets) {
+                String id = ws.manifest().id();
+                try {
+                    Path out = bundles.export(ws);
+                    lines.add("Exported " + id + " -> " + out.getFileName());
+                } catch (Throwable t) {
+                    log.error("Failed to export bundle for " + id + ": " + t.getMessage(), t);
+                    lines.add("Failed to export " + id + ": " + t.getMessage());
+                }
+            }
+            callback.accept(lines);
+        });
+    }
+
+    /**
+     * Verifies and installs {@code bundles/<fileName>}, or every {@code *.fsbundle} there when null.
+     * Imported modules take effect on the next load ({@code /fs reload}).
+     */
+    public void importBundlesAsync(String fileName, java.util.function.Consumer<List<String>> callback) {
+        Objects.requireNonNull(callback, "callback");
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            List<String> lines = new ArrayList<>();
+            Path dir = bundles.getBundlesDir();
+            List<Path> files = new ArrayList<>();
+            if (fileName != null) {
+                Path file = dir.resolve(fileName.endsWith(ModuleBundle.EXTENSION) ? fileName : fileName + ModuleBundle.EXTENSION).normalize();
+                if (!file.startsWith(dir) || !Files.isRegularFile(file)) {
+                    lines.add("Bundle not found: " + file.getFileName());
+                } else {
+                    files.add(file);
+                }
+            } else if (Files.isDirectory(dir)) {
+                try (var stream = Files.list(dir)) {
+                    stream.filter(p -> p.getFileName().toString().endsWith(ModuleBundle.EXTENSION))
+                            .sorted()
+                            .forEach(files::add);
+                } catch (Exception e) {
+                    lines.add("Failed to list " + dir + ": " + e.getMessage());
+                }
+            }
+            if (files.isEmpty() && lines.isEmpty()) {
+                lines.add("No bundles in " + dir);
+            }
+
+            for (Path file : files) {
+                try {
+                    ModuleBundle.Info info = bundles.importBundle(file);
+                    lines.add("Imported " + info.id() + " v" + info.moduleVersion() + " from " + file.getFileName());
+                } catch (Throwable t) {
+                    log.warn("Failed to import bundle " + file.getFileName() + ": " + t.getMessage());
+                    lines.add("Failed to import " + file.getFileName() + ": " + t.getMessage());
+                }
+            }
+            callback.accept(lines);
+        });
+    }
+
+    private List<ScriptWorkspace> listWorkspaces() throws Exception {
+        Path workspacesRoot = plugin.getDataFolder().toPath().resolve("scripts");
+        if (!Files.isDirectory(workspacesRoot)) return List.of();
+
+        List<ScriptWorkspace> out = new ArrayList<>();
+        try (var stream = Files.list(workspacesRoot)) {
+            for (Path wsDir : stream.filter(Files::isDirectory).sorted().toList()) {
+                if (!Files.isRegularFile(wsDir.resolve("script.yml"))) continue;
+                try {
+                    ScriptWorkspace ws = ScriptWorkspace.load(wsDir);
+                    if (Files.isRegularFile(ws.manifest().resolveEntry(wsDir))) {
+                        out.add(ws);
+                    }
+                } catch (Throwable ignored) {
+                    // Skip invalid workspace
+                }
+            }
+        }
+        return out;
+    }
+
     /** Result for {@link #reloadModuleAsync(String, java.util.function.Consumer)}. */
     public record ReloadResult(boolean success, String message) {}
 
@@ -520,14 +1118,12 @@ public final class ModuleManager {
         return null;
     }
 
+    private LoadedModule findLoadedModule(String moduleId) {
+        return modules.get(moduleId);
+    }
+
     private boolean disableModuleIfLoaded(String moduleId) {
-        LoadedModule target = null;
-        for (LoadedModule lm : loadedModules) {
-            if (lm.manifest().id().equals(moduleId)) {
-                target = lm;
-                break;
-            }
-        }
+        LoadedModule target = findLoadedModule(moduleId);
         if (target == null) return false;
 
         try {
@@ -551,13 +1147,15 @@ public final class ModuleManager {
                 log.warn("Failed to close classloader for module " + target.manifest().id() + ": " + e.getMessage());
             }
 
-            logPotentialThreadLeaks(target);
+            checkThreadLeaksLater(target);
+            trackLoader(target);
             return true;
         } catch (Throwable t) {
             log.error("Failed to disable module " + target.manifest().id() + ": " + t.getMessage(), t);
             return false;
         } finally {
-            loadedModules.remove(target);
+            modules.remove(target);
+            jarCache.unpin(target.moduleJar());
         }
     }
 
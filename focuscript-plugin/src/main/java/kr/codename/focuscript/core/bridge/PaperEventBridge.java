@@ -29,6 +29,9 @@ import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -106,6 +109,31 @@ public final class PaperEventBridge implements Listener {
         return () -> damageHandlers.remove(reg);
     }
 
+    /**
+     * Subscriptions whose handler class was defined by {@code loader}, e.g. left behind by a disabled module.
+     */
+    public List<String> describeHandlersFrom(ClassLoader loader) {
+        Map<String, CopyOnWriteArrayList<? extends Reg<?>>> hooks = Map.of(
+                "onJoin", joinHandlers,
+                "onQuit", quitHandlers,
+                "onChat", chatHandlers,
+                "onCommand", commandHandlers,
+                "onBlockBreak", blockBreakHandlers,
+                "onBlockPlace", blockPlaceHandlers,
+                "onDeath", deathHandlers,
+                "onDamage", damageHandlers
+        );
+        List<String> out = new ArrayList<>();
+        for (Map.Entry<String, CopyOnWriteArrayList<? extends Reg<?>>> hook : hooks.entrySet()) {
+            for (Reg<?> reg : hook.getValue()) {
+                if (reg.handler().getClass().getClassLoader() == loader) {
+                    out.add("events." + hook.getKey() + " handler subscribed by module " + reg.moduleId());
+                }
+            }
+        }
+        return out;
+    }
+
     @EventHandler
     public void onJoin(PlayerJoinEvent event) {
         var player = new PaperFsPlayer(event.getPlayer());
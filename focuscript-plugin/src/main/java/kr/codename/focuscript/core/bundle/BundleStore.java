@@ -0,0 +1,263 @@
+package kr.codename.focuscript.core.bundle;
+
+import kr.codename.focuscript.FocuscriptPlugin;
+import kr.codename.focuscript.api.FsApi;
+import kr.codename.focuscript.core.compiler.FsCompiler;
+import kr.codename.focuscript.core.compiler.KotlinCompilerService;
+import kr.codename.focuscript.core.compiler.ModuleArtifact;
+import kr.codename.focuscript.core.workspace.ScriptWorkspace;
+import kr.codename.focuscript.logging.FocuscriptLogger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+
+/**
+ * Exports compiled modules as {@link ModuleBundle}s and installs imported ones.
+ *
+ * <ul>
+ *   <li>{@code plugins/Focuscript/bundles/}: where {@code /fs export} writes and {@code /fs import} reads.</li>
+ *   <li>{@code _build/<id>/bundle/}: the installed bundle ({@code bundle.properties} + {@code <key>.jar}).</li>
+ * </ul>
+ *
+ * <p>An installed bundle is used instead of compiling when its versions match this server and either
+ * the workspace has no entry source (a bundle-only install) or the workspace's cache key equals the
+ * bundle's.</p>
+ */
+public final class BundleStore {
+
+    private static final String INSTALLED_DIR = "bundle";
+    private static final String INSTALLED_INFO = "bundle.properties";
+
+    private final FocuscriptPlugin plugin;
+    private final FsCompiler compiler;
+    private final Path bundlesDir;
+    private final Path workspacesRoot;
+    private final FocuscriptLogger log;
+
+    public BundleStore(FocuscriptPlugin plugin, FsCompiler compiler, Path bundlesDir, Path workspacesRoot, FocuscriptLogger log) {
+        this.plugin = Objects.requireNonNull(plugin, "plugin");
+        this.compiler = Objects.requireNonNull(compiler, "compiler");
+        this.bundlesDir = Objects.requireNonNull(bundlesDir, "bundlesDir");
+        this.workspacesRoot = Objects.requireNonNull(workspacesRoot, "workspacesRoot");
+        this.log = Objects.requireNonNull(log, "log");
+    }
+
+    public Path getBundlesDir() {
+        return bundlesDir;
+    }
+
+    /**
+     * Compiles (or takes from cache) {@code workspace} and writes {@code bundles/<id>.fsbundle}.
+     * Blocking; call from an async thread.
+     */
+    public Path export(ScriptWorkspace workspace) throws Exception {
+        ModuleArtifact artifact = compiler.compileIfNeeded(workspace);
+        byte[] jar = Files.readAllBytes(artifact.jar());
+
+        ModuleBundle.Info info = new ModuleBundle.Info(
+                ModuleBundle.FORMAT,
+                workspace.manifest().id(),
+                workspace.manifest().version(),
+                artifact.cacheKey(),
+                pluginVersion(),
+                FsApi.API_VERSION,
+                FsCompiler.KOTLIN_COMPILER_VERSION,
+                KotlinCompilerService.JVM_TARGET,
+                ModuleBundle.sha256(jar)
+        );
+
+        Files.createDirectories(bundlesDir);
+        Path out = bundlesDir.resolve(FsCompiler.sanitizeIdAsPath(info.id()) + ModuleBundle.EXTENSION);
+        Path tmp = Files.createTempFile(bundlesDir, FsCompiler.sanitizeIdAsPath(info.id()), ".tmp");
+        try {
+            new ModuleBundle(info, workspace.readScriptYmlText(), jar).write(tmp);
+            move(tmp, out);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return out;
+    }
+
+    /**
+     * Verifies {@code bundleFile} and installs it. If no workspace with the bundle's id exists, a
+     * bundle-only workspace ({@code scripts/<id>/script.yml}) is created from the bundle.
+     *
+     * @return the installed bundle's info
+     * @throws IOException if the bundle is unreadable, corrupt or built for a different environment
+     */
+    public ModuleBundle.Info importBundle(Path bundleFile) throws IOException {
+        ModuleBundle bundle = ModuleBundle.read(bundleFile);
+        ModuleBundle.Info info = bundle.info();
+
+        String problem = incompatibility(info);
+        if (problem != null) {
+            throw new IOException("Bundle " + bundleFile.getFileName() + " cannot be used here: " + problem);
+        }
+
+        Path installDir = installDir(info.id());
+        Files.createDirectories(installDir);
+
+        // New jar under its own name: the previous one may still be open by the loaded module.
+        Path jar = installedJar(installDir, info);
+        Path tmp = Files.createTempFile(installDir, "import-", ".tmp");
+        try {
+            Files.write(tmp, bundle.jar());
+            move(tmp, jar);
+            Files.writeString(tmp, info.toPropertiesText(), StandardCharsets.UTF_8);
+            move(tmp, installDir.resolve(INSTALLED_INFO));
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        deleteOtherJars(installDir, jar);
+
+        if (!workspaceExists(info.id())) {
+            Path wsDir = freeWorkspaceDir(info.id());
+            Files.createDirectories(wsDir);
+            Files.writeString(wsDir.resolve("script.yml"), bundle.scriptYml(), StandardCharsets.UTF_8);
+            log.info("Created bundle-only workspace for " + info.id() + " at " + wsDir);
+        }
+        return info;
+    }
+
+    /**
+     * The installed bundle for {@code workspace} if it can be loaded as is, otherwise null.
+     * Never invokes the Kotlin compiler.
+     */
+    public ModuleArtifact findInstalled(ScriptWorkspace workspace) {
+        String id = workspace.manifest().id();
+        Path infoFile = installDir(id).resolve(INSTALLED_INFO);
+        if (!Files.isRegularFile(infoFile)) return null;
+
+        try {
+            ModuleBundle.Info info = ModuleBundle.Info.fromPropertiesText(Files.readString(infoFile, StandardCharsets.UTF_8));
+            if (!id.equals(info.id())) return null;
+
+            String problem = incompatibility(info);
+            if (problem != null) {
+                log.warn("[" + id + "] Installed bundle ignored: " + problem);
+                return null;
+            }
+
+            Path jar = installedJar(installDir(id), info);
+            if (!Files.isRegularFile(jar) || !info.jarSha256().equals(ModuleBundle.sha256(Files.readAllBytes(jar)))) {
+                log.warn("[" + id + "] Installed bundle ignored: jar missing or corrupt");
+                return null;
+            }
+
+            boolean hasSources = Files.isRegularFile(workspace.manifest().resolveEntry(workspace.root()));
+            if (hasSources && !info.cacheKey().equals(compiler.computeCacheKey(workspace))) {
+                if (workspace.manifest().debug()) {
+                    log.info("[" + id + "] Workspace sources differ from the installed bundle; compiling.");
+                }
+                return null;
+            }
+
+            return new ModuleArtifact(jar, info.cacheKey(), null);
+        } catch (Exception e) {
+            log.warn("[" + id + "] Installed bundle ignored: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return why {@code info} cannot be used on this server, or null if it can
+     */
+    public String incompatibility(ModuleBundle.Info info) {
+        if (info.format() != ModuleBundle.FORMAT) {
+            return "bundle format " + info.format() + " (expected " + ModuleBundle.FORMAT + ")";
+        }
+        if (!pluginVersion().equals(info.pluginVersion())) {
+            return "built by Focuscript " + info.pluginVersion() + " (this server: " + pluginVersion() + ")";
+        }
+        if (info.apiVersion() != FsApi.API_VERSION) {
+            return "API " + info.apiVersion() + " (this server: " + FsApi.API_VERSION + ")";
+        }
+        if (!FsCompiler.KOTLIN_COMPILER_VERSION.equals(info.kotlinVersion())) {
+            return "Kotlin " + info.kotlinVersion() + " (this server: " + FsCompiler.KOTLIN_COMPILER_VERSION + ")";
+        }
+        if (!KotlinCompilerService.JVM_TARGET.equals(info.jvmTarget())) {
+            return "JVM target " + info.jvmTarget() + " (this server: " + KotlinCompilerService.JVM_TARGET + ")";
+        }
+        return null;
+    }
+
+    private Path installDir(String moduleId) {
+        return compiler.getBuildDir(moduleId).resolve(INSTALLED_DIR);
+    }
+
+    /**
+     * The jar file for {@code info} in {@code installDir}. {@link ModuleBundle.Info} only accepts hex cache
+     * keys; the containment check keeps a bundle from ever naming a file elsewhere should that change.
+     */
+    private static Path installedJar(Path installDir, ModuleBundle.Info info) throws IOException {
+        Path jar = installDir.resolve(info.cacheKey() + ".jar");
+        Path dir = installDir.toAbsolutePath().normalize();
+        if (!dir.equals(jar.toAbsolutePath().normalize().getParent())) {
+            throw new IOException("Bundle cache key does not name a file in " + installDir + ": " + info.cacheKey());
+        }
+        return jar;
+    }
+
+    /**
+     * A directory for a new workspace that does not exist yet. Different ids can sanitize to the same
+     * name ({@code a.b} and {@code a_b}), so an existing directory gets a numbered sibling instead of
+     * having its {@code script.yml} overwritten.
+     */
+    private Path freeWorkspaceDir(String moduleId) throws IOException {
+        String base = FsCompiler.sanitizeIdAsPath(moduleId);
+        Path wsDir = workspacesRoot.resolve(base);
+        for (int n = 2; Files.exists(wsDir); n++) {
+            if (n > 1000) throw new IOException("No free workspace directory for " + moduleId + " under " + workspacesRoot);
+            wsDir = workspacesRoot.resolve(base + "-" + n);
+        }
+        return wsDir;
+    }
+
+    private boolean workspaceExists(String moduleId) {
+        if (!Files.isDirectory(workspacesRoot)) return false;
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(workspacesRoot, Files::isDirectory)) {
+            for (Path wsDir : dirs) {
+                if (!Files.isRegularFile(wsDir.resolve("script.yml"))) continue;
+                try {
+                    if (ScriptWorkspace.load(wsDir).manifest().id().equals(moduleId)) return true;
+                } catch (Throwable ignored) {
+                    // Skip invalid workspace
+                }
+            }
+        } catch (IOException ignored) {
+        }
+        return false;
+    }
+
+    private String pluginVersion() {
+        return plugin.getDescription().getVersion();
+    }
+
+    private static void deleteOtherJars(Path installDir, Path keep) {
+        try (DirectoryStream<Path> jars = Files.newDirectoryStream(installDir, "*.jar")) {
+            for (Path jar : jars) {
+                if (jar.equals(keep)) continue;
+                try {
+                    Files.deleteIfExists(jar);
+                } catch (IOException ignored) {
+                    // Still open; removed on a later import.
+                }
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package kr.codename.focuscript.core.bundle;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Portable precompiled module: a zip ({@code <id>.fsbundle}) holding
+ *
+ * <ul>
+ *   <li>{@code bundle.properties}: id, module version, cache key, plugin/API/Kotlin/JVM target
+ *       versions and the SHA-256 of the jar</li>
+ *   <li>{@code script.yml}: the workspace manifest as exported</li>
+ *   <li>{@code module.jar}: the compiled module</li>
+ * </ul>
+ *
+ * <p>The cache key is computed from workspace-relative paths, so it is the same on every server.</p>
+ */
+public record ModuleBundle(Info info, String scriptYml, byte[] jar) {
+
+    public static final String EXTENSION = ".fsbundle";
+    public static final int FORMAT = 1;
+
+    private static final String INFO_ENTRY = "bundle.properties";
+    private static final String SCRIPT_YML_ENTRY = "script.yml";
+    private static final String JAR_ENTRY = "module.jar";
+    /** Cache keys are SHA-256 hex digests; they become file names, so nothing else is accepted. */
+    private static final Pattern CACHE_KEY = Pattern.compile("[0-9a-f]{64}");
+
+    public ModuleBundle {
+        Objects.requireNonNull(info, "info");
+        Objects.requireNonNull(scriptYml, "scriptYml");
+        Objects.requireNonNull(jar, "jar");
+    }
+
+    /**
+     * Bundle metadata; also stored on its own next to an installed jar.
+     */
+    public record Info(
+            int format,
+            String id,
+            String moduleVersion,
+            String cacheKey,
+            String pluginVersion,
+            int apiVersion,
+            String kotlinVersion,
+            String jvmTarget,
+            String jarSha256
+    ) {
+        public Info {
+            Objects.requireNonNull(id, "id");
+            Objects.requireNonNull(moduleVersion, "moduleVersion");
+            Objects.requireNonNull(cacheKey, "cacheKey");
+            if (!CACHE_KEY.matcher(cacheKey).matches()) {
+                throw new IllegalArgumentException("cacheKey is not a SHA-256 hex digest: " + cacheKey);
+            }
+            Objects.requireNonNull(pluginVersion, "pluginVersion");
+            Objects.requireNonNull(kotlinVersion, "kotlinVersion");
+            Objects.requireNonNull(jvmTarget, "jvmTarget");
+            Objects.requireNonNull(jarSha256, "jarSha256");
+        }
+
+        public String toPropertiesText() {
+            Properties p = new Properties();
+            p.setProperty("format", Integer.toString(format));
+            p.setProperty("id", id);
+            p.setProperty("moduleVersion", moduleVersion);
+            p.setProperty("cacheKey", cacheKey);
+            p.setProperty("pluginVersion", pluginVersion);
+            p.setProperty("apiVersion", Integer.toString(apiVersion));
+            p.setProperty("kotlinVersion", kotlinVersion);
+            p.setProperty("jvmTarget", jvmTarget);
+            p.setProperty("jarSha256", jarSha256);
+            StringWriter out = new StringWriter();
+            try {
+                p.store(out, "Focuscript module bundle");
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return out.toString();
+        }
+
+        public static Info fromPropertiesText(String text) throws IOException {
+            Properties p = new Properties();
+            p.load(new StringReader(text));
+            try {
+                return new Info(
+                        Integer.parseInt(required(p, "format")),
+                        required(p, "id"),
+                        required(p, "moduleVersion"),
+                        required(p, "cacheKey"),
+                        required(p, "pluginVersion"),
+                        Integer.parseInt(required(p, "apiVersion")),
+                        required(p, "kotlinVersion"),
+                        required(p, "jvmTarget"),
+                        required(p, "jarSha256")
+                );
+            } catch (IllegalArgumentException e) {
+                // Includes NumberFormatException.
+                throw new IOException("Invalid bundle info: " + e.getMessage());
+            }
+        }
+
+        private static String required(Properties p, String key) throws IOException {
+            String value = p.getProperty(key);
+            if (value == null || value.isBlank()) {
+                throw new IOException("Bundle info missing field: " + key);
+            }
+            return value.trim();
+        }
+    }
+
+    public void write(Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file);
+             ZipOutputStream zip = new ZipOutputStream(out)) {
+            putEntry(zip, INFO_ENTRY, info.toPropertiesText().getBytes(StandardCharsets.UTF_8));
+            putEntry(zip, SCRIPT_YML_ENTRY, scriptYml.getBytes(StandardCharsets.UTF_8));
+            putEntry(zip, JAR_ENTRY, jar);
+        }
+    }
+
+    /**
+     * Reads a bundle and checks that the jar matches its recorded hash.
+     */
+    public static ModuleBundle read(Path file) throws IOException {
+        String infoText = null;
+        String scriptYml = null;
+        byte[] jar = null;
+
+        try (InputStream in = Files.newInputStream(file);
+             ZipInputStream zip = new ZipInputStream(in)) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                ByteArrayOutputStream buf = new ByteArrayOutputStream();
+                zip.transferTo(buf);
+                switch (entry.getName()) {
+                    case INFO_ENTRY -> infoText = buf.toString(StandardCharsets.UTF_8);
+                    case SCRIPT_YML_ENTRY -> scriptYml = buf.toString(StandardCharsets.UTF_8);
+                    case JAR_ENTRY -> jar = buf.toByteArray();
+                    default -> {
+                        // Unknown entries from newer formats are ignored.
+                    }
+                }
+            }
+        }
+
+        if (infoText == null || scriptYml == null || jar == null) {
+            throw new IOException("Not a Focuscript bundle (missing entries): " + file.getFileName());
+        }
+
+        Info info = Info.fromPropertiesText(infoText);
+        if (!info.jarSha256().equals(sha256(jar))) {
+            throw new IOException("Bundle jar does not match its checksum: " + file.getFileName());
+        }
+        return new ModuleBundle(info, scriptYml, jar);
+    }
+
+    public static String sha256(byte[] bytes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(bytes);
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+                sb.append(Character.forDigit((b & 0xF), 16));
+            }
+            return sb.toString();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void putEntry(ZipOutputStream zip, String name, byte[] bytes) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(bytes);
+        zip.closeEntry();
+    }
+}
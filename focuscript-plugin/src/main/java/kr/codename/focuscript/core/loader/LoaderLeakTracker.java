@@ -0,0 +1,181 @@
+package kr.codename.focuscript.core.loader;
+
+import kr.codename.focuscript.logging.FocuscriptLogger;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Checks that the class loaders of disabled modules are actually collected.
+ *
+ * <p>Each disabled module's loader is registered with a {@link PhantomReference}. {@link #check()} (run
+ * periodically off the main thread) drains the reference queue and reports every loader that is still
+ * alive after {@code reportAfterGcs} old-generation collections: a zombie module generation that keeps
+ * its classes and their metaspace. The report names likely holders found by the probe given to
+ * {@link #track}, such as tasks, event handlers or threads the module left behind.</p>
+ *
+ * <p>Young collections do not unload classes, so only collectors that can (old/full/concurrent cycles)
+ * are counted.</p>
+ */
+public final class LoaderLeakTracker {
+
+    /**
+     * @param generation  counts the module's disabled loaders: 1 for the first, 2 for the second, ...
+     * @param disabledAt  epoch millis
+     * @param gcsSurvived old-generation collections since the module was disabled
+     */
+    public record Zombie(String moduleId, int generation, long disabledAt, long gcsSurvived) {}
+
+    public record Stats(int tracked, long collected, int zombies) {}
+
+    private static final class Entry {
+        final String moduleId;
+        final int generation;
+        final long disabledAt;
+        final long gcsAtDisable;
+        /** For probing holders; a weak reference never keeps the loader alive. */
+        final WeakReference<ClassLoader> loader;
+        final Function<ClassLoader, List<String>> holders;
+        volatile boolean reported;
+
+        Entry(String moduleId, int generation, long gcsAtDisable, ClassLoader loader, Function<ClassLoader, List<String>> holders) {
+            this.moduleId = moduleId;
+            this.generation = generation;
+            this.disabledAt = System.currentTimeMillis();
+            this.gcsAtDisable = gcsAtDisable;
+            this.loader = new WeakReference<>(loader);
+            this.holders = holders;
+        }
+    }
+
+    private final int reportAfterGcs;
+    private final FocuscriptLogger log;
+    private final ReferenceQueue<ClassLoader> queue = new ReferenceQueue<>();
+    /** Keyed by the phantom reference itself, which also keeps the reference reachable until enqueued. */
+    private final Map<Reference<? extends ClassLoader>, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Integer> generations = new ConcurrentHashMap<>();
+    private final AtomicLong collected = new AtomicLong();
+
+    /**
+     * @param reportAfterGcs old-generation collections a disabled loader may survive; 0 disables tracking
+     */
+    public LoaderLeakTracker(int reportAfterGcs, FocuscriptLogger log) {
+        this.reportAfterGcs = Math.max(0, reportAfterGcs);
+        this.log = Objects.requireNonNull(log, "log");
+    }
+
+    public boolean isEnabled() {
+        return reportAfterGcs > 0;
+    }
+
+    /**
+     * Starts watching the loader of a module that was just disabled.
+     *
+     * @param holders names what may still reference the loader; called off the main thread, and must not
+     *                itself hold anything the module loaded
+     */
+    public void track(String moduleId, ClassLoader loader, Function<ClassLoader, List<String>> holders) {
+        if (!isEnabled() || loader == null) return;
+        int generation = generations.merge(moduleId, 1, Integer::sum);
+        Entry entry = new Entry(moduleId, generation, oldGenerationGcCount(), loader, holders);
+        entries.put(new PhantomReference<>(loader, queue), entry);
+    }
+
+    /**
+     * Forgets collected loaders and reports loaders that have become zombies since the last check.
+     *
+     * @return the current number of zombie module generations
+     */
+    public int check() {
+        drain();
+        long gcs = oldGenerationGcCount();
+        for (Entry entry : entries.values()) {
+            if (entry.reported || gcs - entry.gcsAtDisable < reportAfterGcs) continue;
+            ClassLoader loader = entry.loader.get();
+            if (loader == null) continue; // collected, not enqueued yet
+            entry.reported = true;
+            report(entry, loader, gcs - entry.gcsAtDisable);
+        }
+        return zombies().size();
+    }
+
+    /** Disabled module generations whose loader survived the configured number of collections, oldest first. */
+    public List<Zombie> zombies() {
+        drain();
+        long gcs = oldGenerationGcCount();
+        List<Zombie> out = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            long survived = gcs - entry.gcsAtDisable;
+            if (survived >= reportAfterGcs && entry.loader.get() != null) {
+                out.add(new Zombie(entry.moduleId, entry.generation, entry.disabledAt, survived));
+            }
+        }
+        out.sort(Comparator.comparingLong(Zombie::disabledAt));
+        return out;
+    }
+
+    public Stats stats() {
+        drain();
+        return new Stats(entries.size(), collected.get(), zombies().size());
+    }
+
+    private void drain() {
+        Reference<? extends ClassLoader> ref;
+        while ((ref = queue.poll()) != null) {
+            if (entries.remove(ref) != null) collected.incrementAndGet();
+        }
+    }
+
+    private void report(Entry entry, ClassLoader loader, long survived) {
+        List<String> holders;
+        try {
+            holders = entry.holders == null ? List.of() : entry.holders.apply(loader);
+        } catch (Throwable t) {
+            holders = List.of("(holder probe failed: " + t.getClass().getSimpleName() + ")");
+        }
+        log.warn("Possible class loader leak: module " + entry.moduleId + " (generation " + entry.generation
+                + ", disabled " + ((System.currentTimeMillis() - entry.disabledAt) / 1000L) + "s ago) is still loaded after "
+                + survived + " old-generation GC(s).");
+        if (holders.isEmpty()) {
+            log.warn("  No known holder found (tasks, event handlers, commands, threads, JDBC drivers). "
+                    + "A heap dump shows the path: jcmd <pid> GC.heap_dump, then look for paths to ModuleClassLoader.");
+        } else {
+            for (String holder : holders) {
+                log.warn("  held by: " + holder);
+            }
+        }
+    }
+
+    /**
+     * Collections by collectors that can unload classes; young/minor collectors never do, and the
+     * "Pauses" beans of ZGC/Shenandoah count the same cycles as their "Cycles" beans.
+     */
+    private static long oldGenerationGcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (isYoungCollector(gc.getName())) continue;
+            long count = gc.getCollectionCount();
+            if (count > 0) total += count;
+        }
+        return total;
+    }
+
+    private static boolean isYoungCollector(String name) {
+        String n = name.toLowerCase(Locale.ROOT);
+        return n.contains("young") || n.contains("scavenge") || n.contains("minor")
+                || n.equals("copy") || n.contains("parnew") || n.contains("pauses");
+    }
+}
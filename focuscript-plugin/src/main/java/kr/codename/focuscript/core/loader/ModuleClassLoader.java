@@ -2,25 +2,46 @@ package kr.codename.focuscript.core.loader;
 
 import kr.codename.focuscript.FocuscriptPlugin;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Module-dedicated classloader with package blocking.
  *
  * Goals:
- * 1) Modules can use JDK + Kotlin stdlib + Focuscript API.
+ * 1) Modules can use JDK + Kotlin stdlib + Focuscript API + the shared prelude (module DSL).
  * 2) Modules should NOT directly load Paper/Adventure classes.
  * 3) Modules should NOT load Focuscript internal (non-API) classes.
  *
+ * Classes come either from the module jar (URL) or, after an in-memory compile, straight from the
+ * compiled bytes without touching disk.
+ *
+ * Lookups are decided by a prefix trie built once for all loaders, and each loader remembers what its
+ * parent had and did not have, so a class name costs one parent delegation at most. Module classes are
+ * looked up in the module first without throwing; a ClassNotFoundException is only thrown for a name
+ * that really does not resolve.
+ *
  * NOTE:
  * This is a best-effort sandbox; Java does not provide a perfect sandbox.
  */
 public final class ModuleClassLoader extends URLClassLoader {
 
     private static final String FS_API_PREFIX = "kr.codename.focuscript.api.";
+    private static final String FS_PRELUDE_PREFIX = "kr.codename.focuscript.prelude.";
     private static final String FS_MODULES_PREFIX = "kr.codename.focuscript.modules.";
     private static final String FS_INTERNAL_PREFIX = "kr.codename.focuscript.";
 
@@ -32,63 +53,226 @@ public final class ModuleClassLoader extends URLClassLoader {
             "net.kyori.adventure."
     );
 
+    private static final String MEMORY_PROTOCOL = "fsmem";
+
+    /** How a class name is resolved. */
+    private enum Access {
+        /** Generated module package: child-first. */
+        MODULE,
+        /** JDK, Kotlin, Focuscript API and prelude, libraries: parent-first. */
+        SHARED,
+        /** Paper/Adventure. */
+        BLOCKED_PLATFORM,
+        /** Focuscript classes outside the API, prelude and module packages. */
+        BLOCKED_INTERNAL
+    }
+
+    private static final PrefixTrie ACCESS = buildAccessTrie();
+
+    static {
+        registerAsParallelCapable();
+    }
+
     private final FocuscriptPlugin plugin;
     private final String moduleId;
+    private final Map<String, byte[]> entries;
+
+    /** Classes the parent loader resolved for this loader (it is not their defining loader). */
+    private final Map<String, Class<?>> parentHits = new ConcurrentHashMap<>();
+    /** Names the parent loader does not have; never asked again. */
+    private final Set<String> parentMisses = ConcurrentHashMap.newKeySet();
 
     public ModuleClassLoader(FocuscriptPlugin plugin, String moduleId, URL moduleJarUrl, ClassLoader parent) {
         super(new URL[]{Objects.requireNonNull(moduleJarUrl, "moduleJarUrl")}, parent);
         this.plugin = Objects.requireNonNull(plugin, "plugin");
         this.moduleId = Objects.requireNonNull(moduleId, "moduleId");
+        this.entries = null;
+    }
+
+    /**
+     * In-memory variant: classes and resources are defined from {@code entries} (jar entry name -> bytes).
+     */
+    public ModuleClassLoader(FocuscriptPlugin plugin, String moduleId, Map<String, byte[]> entries, ClassLoader parent) {
+        super(new URL[0], parent);
+        this.plugin = Objects.requireNonNull(plugin, "plugin");
+        this.moduleId = Objects.requireNonNull(moduleId, "moduleId");
+        this.entries = Map.copyOf(Objects.requireNonNull(entries, "entries"));
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        if (entries == null) return super.findClass(name);
+
+        byte[] bytes = entries.get(name.replace('.', '/') + ".class");
+        if (bytes == null) throw new ClassNotFoundException(name);
+        return defineClass(name, bytes, 0, bytes.length);
+    }
+
+    @Override
+    public URL findResource(String name) {
+        if (entries == null) return super.findResource(name);
+
+        byte[] bytes = entries.get(name);
+        if (bytes == null) return null;
+        try {
+            return new URL(MEMORY_PROTOCOL, moduleId, -1, "/" + name, new MemoryUrlHandler(bytes));
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) throws IOException {
+        if (entries == null) return super.findResources(name);
+
+        URL url = findResource(name);
+        return url == null ? Collections.emptyEnumeration() : Collections.enumeration(List.of(url));
     }
 
     @Override
     protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
-        // Block Paper/Adventure packages
-        for (String blocked : BLOCKED_PREFIXES) {
-            if (name.startsWith(blocked)) {
-                throw new ClassNotFoundException("Blocked class access from module '" + moduleId + "': " + name);
+        Access access = ACCESS.match(name, Access.SHARED);
+        switch (access) {
+            case BLOCKED_PLATFORM ->
+                    throw new ClassNotFoundException("Blocked class access from module '" + moduleId + "': " + name);
+            case BLOCKED_INTERNAL ->
+                    throw new ClassNotFoundException("Blocked Focuscript internal class from module '" + moduleId + "': " + name);
+            default -> {
             }
         }
 
-        // Block Focuscript internals (allow only API + generated module packages)
-        if (name.startsWith(FS_INTERNAL_PREFIX)
-                && !name.startsWith(FS_API_PREFIX)
-                && !name.startsWith(FS_MODULES_PREFIX)) {
-            throw new ClassNotFoundException("Blocked Focuscript internal class from module '" + moduleId + "': " + name);
+        Class<?> cached = parentHits.get(name);
+        if (cached != null) {
+            if (resolve) resolveClass(cached);
+            return cached;
         }
 
         synchronized (getClassLoadingLock(name)) {
             Class<?> loaded = findLoadedClass(name);
-            if (loaded != null) {
-                if (resolve) resolveClass(loaded);
-                return loaded;
+            if (loaded == null && access == Access.MODULE && hasOwnClass(name)) {
+                // Child-first for module-generated package
+                loaded = findClass(name);
             }
+            if (loaded == null) {
+                // Parent-first for everything else (JDK/Kotlin/API/prelude)
+                loaded = loadFromParent(name);
+            }
+            if (loaded == null) {
+                // Last resort: the module jar, then give up
+                loaded = findClass(name);
+            }
+            if (resolve) resolveClass(loaded);
+            return loaded;
+        }
+    }
 
-            boolean isModuleClass = name.startsWith(FS_MODULES_PREFIX);
+    /** Whether the module itself has {@code name}, checked without defining it or throwing. */
+    private boolean hasOwnClass(String name) {
+        String path = name.replace('.', '/') + ".class";
+        return entries != null ? entries.containsKey(path) : super.findResource(path) != null;
+    }
 
-            if (isModuleClass) {
-                // Child-first for module-generated package
-                try {
-                    Class<?> found = findClass(name);
-                    if (resolve) resolveClass(found);
-                    return found;
-                } catch (ClassNotFoundException ignored) {
-                    // fallback to parent
+    /** The parent's class, or null; each name reaches the parent loader at most once per outcome. */
+    private Class<?> loadFromParent(String name) {
+        if (parentMisses.contains(name)) return null;
+        try {
+            Class<?> found = getParent().loadClass(name);
+            parentHits.put(name, found);
+            return found;
+        } catch (ClassNotFoundException e) {
+            parentMisses.add(name);
+            return null;
+        }
+    }
+
+    private static PrefixTrie buildAccessTrie() {
+        PrefixTrie trie = new PrefixTrie();
+        for (String blocked : BLOCKED_PREFIXES) {
+            trie.put(blocked, Access.BLOCKED_PLATFORM);
+        }
+        // Longest prefix wins, so the allowed packages override the internal block.
+        trie.put(FS_INTERNAL_PREFIX, Access.BLOCKED_INTERNAL);
+        trie.put(FS_API_PREFIX, Access.SHARED);
+        trie.put(FS_PRELUDE_PREFIX, Access.SHARED);
+        trie.put(FS_MODULES_PREFIX, Access.MODULE);
+        return trie;
+    }
+
+    /**
+     * Character trie over package prefixes; {@link #match} returns the value of the longest prefix of a
+     * name. Built once in the static initializer and only read afterwards.
+     */
+    private static final class PrefixTrie {
+        private final Node root = new Node();
+
+        void put(String prefix, Access access) {
+            Node node = root;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.childOrCreate(prefix.charAt(i));
+            }
+            node.access = access;
+        }
+
+        Access match(String name, Access fallback) {
+            Access best = fallback;
+            Node node = root;
+            for (int i = 0; i < name.length(); i++) {
+                node = node.child(name.charAt(i));
+                if (node == null) break;
+                if (node.access != null) best = node.access;
+            }
+            return best;
+        }
+
+        private static final class Node {
+            private char[] keys = new char[0];
+            private Node[] children = new Node[0];
+            private Access access;
+
+            Node child(char c) {
+                for (int i = 0; i < keys.length; i++) {
+                    if (keys[i] == c) return children[i];
                 }
+                return null;
             }
 
-            // Parent-first for everything else (JDK/Kotlin/API)
-            try {
-                Class<?> parentClass = getParent().loadClass(name);
-                if (resolve) resolveClass(parentClass);
-                return parentClass;
-            } catch (ClassNotFoundException ignored) {
-                // fallback to module jar
+            Node childOrCreate(char c) {
+                Node existing = child(c);
+                if (existing != null) return existing;
+                Node created = new Node();
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                keys[keys.length - 1] = c;
+                children[children.length - 1] = created;
+                return created;
             }
+        }
+    }
 
-            Class<?> found = findClass(name);
-            if (resolve) resolveClass(found);
-            return found;
+    private static final class MemoryUrlHandler extends URLStreamHandler {
+        private final byte[] bytes;
+
+        private MemoryUrlHandler(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        protected URLConnection openConnection(URL u) {
+            return new URLConnection(u) {
+                @Override
+                public void connect() {
+                }
+
+                @Override
+                public InputStream getInputStream() {
+                    return new ByteArrayInputStream(bytes);
+                }
+
+                @Override
+                public int getContentLength() {
+                    return bytes.length;
+                }
+            };
         }
     }
 }
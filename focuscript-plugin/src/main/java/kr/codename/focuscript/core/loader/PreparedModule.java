@@ -0,0 +1,134 @@
+package kr.codename.focuscript.core.loader;
+
+import kr.codename.focuscript.FocuscriptPlugin;
+import kr.codename.focuscript.api.FsModule;
+import kr.codename.focuscript.core.compiler.ModuleArtifact;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Objects;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * A module whose classes are already defined, verified and linked, ready to be enabled.
+ *
+ * <p>Left to the JVM, a module's classes load lazily during {@code onEnable} and its first event
+ * dispatches, all on the main thread; for large modules that shows up as tick spikes. {@link #prepare}
+ * does that work on the calling (compile) thread instead, so enabling only runs the entry getter and
+ * {@code onEnable}.</p>
+ *
+ * <p>Static initializers are not run here: they are module code (top-level properties) and still run on
+ * the main thread when the module first touches a class. A class that fails to link fails the same way
+ * when the module first uses it, as it would have without preparation.</p>
+ */
+public final class PreparedModule implements AutoCloseable {
+
+    private static final String ENTRY_GETTER = "getFocuscriptModule";
+
+    private final ModuleClassLoader classLoader;
+    private final MethodHandle entry;
+    private final int classCount;
+    private final long prepareMs;
+
+    private PreparedModule(ModuleClassLoader classLoader, MethodHandle entry, int classCount, long prepareMs) {
+        this.classLoader = classLoader;
+        this.entry = entry;
+        this.classCount = classCount;
+        this.prepareMs = prepareMs;
+    }
+
+    /**
+     * Opens the artifact in a new {@link ModuleClassLoader}, defines and links every class in it and
+     * resolves the entry getter. Blocking; the main thread should only do this as a fallback.
+     *
+     * @param entryClassName generated {@code @file:JvmName("FocuscriptEntry")} class
+     */
+    public static PreparedModule prepare(FocuscriptPlugin plugin, String moduleId, ModuleArtifact artifact, String entryClassName) throws Exception {
+        Objects.requireNonNull(artifact, "artifact");
+        Objects.requireNonNull(entryClassName, "entryClassName");
+        long start = System.nanoTime();
+
+        ClassLoader parent = ModuleClassLoader.class.getClassLoader(); // parent: plugin's classloader
+        ModuleClassLoader cl = artifact.inMemory()
+                ? new ModuleClassLoader(plugin, moduleId, artifact.entries(), parent)
+                : new ModuleClassLoader(plugin, moduleId, artifact.jar().toUri().toURL(), parent);
+        try {
+            int linked = 0;
+            for (String className : classNames(artifact)) {
+                try {
+                    // Reflection links (and so verifies) a class without initializing it.
+                    Class.forName(className, false, cl).getDeclaredMethods();
+                    linked++;
+                } catch (ClassNotFoundException | LinkageError ignored) {
+                    // Surfaces when the module first uses the class, as without preparation.
+                }
+            }
+
+            Class<?> entryClass = Class.forName(entryClassName, false, cl);
+            MethodHandle entry = MethodHandles.publicLookup().unreflect(entryClass.getDeclaredMethod(ENTRY_GETTER));
+            return new PreparedModule(cl, entry, linked, (System.nanoTime() - start) / 1_000_000L);
+        } catch (Throwable t) {
+            try { cl.close(); } catch (IOException ignored) {}
+            throw t;
+        }
+    }
+
+    private static List<String> classNames(ModuleArtifact artifact) throws IOException {
+        List<String> names = new ArrayList<>();
+        if (artifact.inMemory()) {
+            for (String entry : artifact.entries().keySet()) {
+                addClassName(entry, names);
+            }
+            return names;
+        }
+        try (JarFile jar = new JarFile(artifact.jar().toFile())) {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                addClassName(entries.nextElement().getName(), names);
+            }
+        }
+        return names;
+    }
+
+    private static void addClassName(String entry, List<String> out) {
+        if (!entry.endsWith(".class") || entry.startsWith("META-INF/") || entry.endsWith("module-info.class")) return;
+        out.add(entry.substring(0, entry.length() - ".class".length()).replace('/', '.'));
+    }
+
+    public ModuleClassLoader classLoader() {
+        return classLoader;
+    }
+
+    /**
+     * Runs the entry getter, which initializes the entry class and builds the module. Main thread.
+     */
+    public FsModule createModule() throws Throwable {
+        Object module = entry.invoke();
+        if (!(module instanceof FsModule fsModule)) {
+            throw new IllegalStateException("focuscriptModule is not FsModule: " + module);
+        }
+        return fsModule;
+    }
+
+    public int classCount() {
+        return classCount;
+    }
+
+    public long prepareMs() {
+        return prepareMs;
+    }
+
+    /** Closes the class loader; only for a prepared module that was never enabled. */
+    @Override
+    public void close() {
+        try {
+            classLoader.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -13,7 +13,7 @@ public record ScriptWorkspace(
         Path scriptYml,
         ScriptManifest manifest,
         YamlConfiguration rawConfig
-) {
+) implements Workspace {
 
     public ScriptWorkspace {
         Objects.requireNonNull(root, "root");
@@ -29,48 +29,12 @@ public record ScriptWorkspace(
         }
 
         YamlConfiguration yml = YamlConfiguration.loadConfiguration(script.toFile());
-
-        String id = yml.getString("id");
-        if (id == null || id.isBlank()) {
-            throw new IOException("script.yml missing required field: id");
-        }
-        String name = yml.getString("name", id);
-        String version = yml.getString("version", "1.0.0");
-        int api = yml.getInt("api", 1);
-        String entry = yml.getString("entry", "src/main.fs");
-        String load = yml.getString("load", "enable");
-        boolean debug = yml.getBoolean("options.debug", false);
-        java.util.List<String> depends = normalizeList(yml.getStringList("depends"));
-        java.util.List<String> permissions = normalizeList(yml.getStringList("permissions"));
-        java.util.List<String> commands = normalizeList(yml.getStringList("commands"));
-
-        ScriptManifest manifest = new ScriptManifest(
-                id,
-                name,
-                version,
-                api,
-                entry,
-                load,
-                debug,
-                depends,
-                permissions,
-                commands
-        );
+        ScriptManifest manifest = ScriptManifest.read(yml::get);
         return new ScriptWorkspace(workspaceRoot, script, manifest, yml);
     }
 
+    @Override
     public String readScriptYmlText() throws IOException {
         return Files.readString(scriptYml, StandardCharsets.UTF_8);
     }
-
-    private static java.util.List<String> normalizeList(java.util.List<String> input) {
-        if (input == null || input.isEmpty()) return java.util.List.of();
-        java.util.List<String> out = new java.util.ArrayList<>();
-        for (String value : input) {
-            if (value == null) continue;
-            String trimmed = value.trim();
-            if (!trimmed.isEmpty()) out.add(trimmed);
-        }
-        return java.util.List.copyOf(out);
-    }
 }
@@ -1,12 +1,13 @@
 package kr.codename.focuscript.logging;
 
+import kr.codename.focuscript.core.compiler.CompilerLog;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.logger.slf4j.ComponentLogger;
 import net.kyori.adventure.text.minimessage.MiniMessage;
 
 import java.util.Objects;
 
-public final class FocuscriptLogger {
+public final class FocuscriptLogger implements CompilerLog {
     private static final String DEFAULT_PREFIX = "<color:#5F5FFF>Focuscript</color>) ";
 
     private final ComponentLogger logger;
@@ -29,18 +30,22 @@ public final class FocuscriptLogger {
         return logger;
     }
 
+    @Override
     public void info(String message) {
         logger.info(render(message));
     }
 
+    @Override
     public void warn(String message) {
         logger.warn(render(message));
     }
 
+    @Override
     public void error(String message) {
         logger.error(render(message));
     }
 
+    @Override
     public void error(String message, Throwable throwable) {
         logger.error(render(message), throwable);
     }
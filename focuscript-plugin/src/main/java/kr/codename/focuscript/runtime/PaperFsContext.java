@@ -22,6 +22,7 @@ public final class PaperFsContext implements FsContext {
     private final PaperFsConfig config;
     private final PaperFsCommands commands;
     private final PaperFsStorage storage;
+    private final PaperFsThreads threads;
 
     public PaperFsContext(
             FocuscriptPlugin plugin,
@@ -47,6 +48,7 @@ public final class PaperFsContext implements FsContext {
         this.server = new PaperFsServer(plugin, log);
         this.commands = new PaperFsCommands(manifest, commandRegistry, log);
         this.storage = new PaperFsStorage(workspaceRoot.resolve("data.yml"), log);
+        this.threads = new PaperFsThreads(manifest.id(), log);
     }
 
     @Override
@@ -84,6 +86,25 @@ public final class PaperFsContext implements FsContext {
         return storage;
     }
 
+    @Override
+    public FsThreads getThreads() {
+        return threads;
+    }
+
+    /**
+     * Scheduler tasks of this module still queued or running (see {@link PaperFsScheduler#activeTaskIds()}).
+     */
+    public java.util.List<Integer> activeTaskIds() {
+        return scheduler.activeTaskIds();
+    }
+
+    /**
+     * Threads created via {@link #getThreads()} that are still alive (see {@link PaperFsThreads#liveThreads()}).
+     */
+    public java.util.List<Thread> liveThreads() {
+        return threads.liveThreads();
+    }
+
     /**
      * Called by Focuscript runtime when module is disabled (even if module throws).
      */
@@ -100,6 +121,10 @@ public final class PaperFsContext implements FsContext {
             commands.unregisterAll();
         } catch (Throwable ignored) {}
 
+        try {
+            threads.close();
+        } catch (Throwable ignored) {}
+
         try {
             storage.save();
         } catch (Throwable ignored) {}
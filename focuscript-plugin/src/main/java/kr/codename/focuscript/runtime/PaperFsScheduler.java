@@ -7,6 +7,7 @@ import org.bukkit.Bukkit;
 import org.bukkit.scheduler.BukkitTask;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -62,15 +63,16 @@ public final class PaperFsScheduler implements FsScheduler {
             }
         }
 
-        int active = 0;
+        List<PaperFsTask> stillActive = new ArrayList<>();
         for (PaperFsTask task : snapshot) {
-            int taskId = task.getHandle().getTaskId();
-            if (Bukkit.getScheduler().isQueued(taskId) || Bukkit.getScheduler().isCurrentlyRunning(taskId)) {
-                active++;
+            if (isActive(task)) {
+                stillActive.add(task);
             }
         }
+        int active = stillActive.size();
 
-        tasks.clear();
+        // Keep what is still scheduled, so a class loader leak report can name it.
+        tasks.retainAll(stillActive);
 
         if (cancelFailures > 0) {
             log.warn("Possible scheduler leak: " + cancelFailures + " task(s) failed to cancel");
@@ -80,6 +82,22 @@ public final class PaperFsScheduler implements FsScheduler {
         }
     }
 
+    /**
+     * Ids of tasks still queued or running, including ones scheduled after {@link #cancelAll()}.
+     */
+    public List<Integer> activeTaskIds() {
+        List<Integer> ids = new ArrayList<>();
+        for (PaperFsTask task : tasks) {
+            if (isActive(task)) ids.add(task.getHandle().getTaskId());
+        }
+        return ids;
+    }
+
+    private static boolean isActive(PaperFsTask task) {
+        int taskId = task.getHandle().getTaskId();
+        return Bukkit.getScheduler().isQueued(taskId) || Bukkit.getScheduler().isCurrentlyRunning(taskId);
+    }
+
     private Runnable safe(Runnable r) {
         return () -> {
             try {
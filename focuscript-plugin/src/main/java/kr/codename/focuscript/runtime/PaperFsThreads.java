@@ -0,0 +1,141 @@
+package kr.codename.focuscript.runtime;
+
+import kr.codename.focuscript.api.FsThreads;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Module-owned threads and executors.
+ *
+ * <p>Every thread is registered when it is created, so finding what a disabled module left running only
+ * looks at the module's own threads instead of snapshotting every thread in the JVM.</p>
+ */
+public final class PaperFsThreads implements FsThreads {
+
+    private final String moduleId;
+    private final PaperFsLogger log;
+
+    private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    private final CopyOnWriteArrayList<ExecutorService> executors = new CopyOnWriteArrayList<>();
+    private final AtomicInteger threadNumber = new AtomicInteger();
+    private volatile boolean closed;
+
+    public PaperFsThreads(String moduleId, PaperFsLogger log) {
+        this.moduleId = Objects.requireNonNull(moduleId, "moduleId");
+        this.log = Objects.requireNonNull(log, "log");
+    }
+
+    @Override
+    public ThreadFactory factory(String name) {
+        Objects.requireNonNull(name, "name");
+        return task -> newThread(name + "-" + threadNumber.incrementAndGet(), task);
+    }
+
+    @Override
+    public Thread start(String name, Runnable task) {
+        Objects.requireNonNull(name, "name");
+        Thread thread = newThread(name, task);
+        thread.start();
+        return thread;
+    }
+
+    @Override
+    public ExecutorService newSingleThreadExecutor(String name) {
+        return track(Executors.newSingleThreadExecutor(factory(name)));
+    }
+
+    @Override
+    public ExecutorService newFixedThreadPool(String name, int threads) {
+        if (threads <= 0) throw new IllegalArgumentException("threads must be > 0: " + threads);
+        return track(Executors.newFixedThreadPool(threads, factory(name)));
+    }
+
+    @Override
+    public ScheduledExecutorService newScheduledThreadPool(String name, int threads) {
+        if (threads <= 0) throw new IllegalArgumentException("threads must be > 0: " + threads);
+        return track(Executors.newScheduledThreadPool(threads, factory(name)));
+    }
+
+    @Override
+    public int activeCount() {
+        return liveThreads().size();
+    }
+
+    @Override
+    public void shutdownAll() {
+        for (ExecutorService executor : executors) {
+            try {
+                executor.shutdownNow();
+            } catch (Throwable t) {
+                log.warn("Executor shutdown failed: " + t.getMessage());
+            }
+        }
+        executors.clear();
+        for (Thread thread : liveThreads()) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Called when the module is disabled: refuses new threads and executors, shuts the existing ones down and
+     * interrupts every thread. Does not wait; see {@link #liveThreads()} for what is left.
+     */
+    public void close() {
+        closed = true;
+        shutdownAll();
+    }
+
+    /**
+     * Threads created via this module that have started and not yet exited.
+     */
+    public List<Thread> liveThreads() {
+        List<Thread> live = new ArrayList<>();
+        for (Thread thread : threads) {
+            Thread.State state = thread.getState();
+            if (state == Thread.State.TERMINATED) {
+                threads.remove(thread);
+            } else if (state != Thread.State.NEW) {
+                live.add(thread);
+            }
+        }
+        return live;
+    }
+
+    private Thread newThread(String name, Runnable task) {
+        Objects.requireNonNull(task, "task");
+        if (closed) {
+            throw new IllegalStateException("Module " + moduleId + " is disabled; cannot start thread " + name);
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                task.run();
+            } finally {
+                threads.remove(Thread.currentThread());
+            }
+        }, "fs-" + moduleId + "-" + name);
+        thread.setDaemon(true);
+        thread.setUncaughtExceptionHandler((t, e) -> log.error("Uncaught exception in thread " + t.getName(), e));
+        threads.add(thread);
+        return thread;
+    }
+
+    private <E extends ExecutorService> E track(E executor) {
+        if (closed) {
+            executor.shutdownNow();
+            throw new IllegalStateException("Module " + moduleId + " is disabled; cannot create executor");
+        }
+        executors.removeIf(ExecutorService::isTerminated);
+        executors.add(executor);
+        return executor;
+    }
+}
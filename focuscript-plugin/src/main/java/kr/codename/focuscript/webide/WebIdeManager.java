@@ -6,6 +6,9 @@ import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import kr.codename.focuscript.FocuscriptPlugin;
 import kr.codename.focuscript.core.ModuleManager;
+import kr.codename.focuscript.core.compiler.CompileMetrics;
+import kr.codename.focuscript.core.compiler.FsCompiler;
+import kr.codename.focuscript.core.loader.LoaderLeakTracker;
 import kr.codename.focuscript.core.workspace.ScriptWorkspace;
 import kr.codename.focuscript.logging.FocuscriptLogger;
 import org.bukkit.Bukkit;
@@ -33,10 +36,14 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
@@ -57,6 +64,7 @@ public final class WebIdeManager {
 
     private static final String STATIC_ROOT = "webide/";
     private static final int STATIC_FILE_LIMIT = 10 * 1024 * 1024;
+    private static final long DIAGNOSTICS_TIMEOUT_SECONDS = 60L;
 
     private final FocuscriptPlugin plugin;
     private final ModuleManager moduleManager;
@@ -372,6 +380,18 @@ public final class WebIdeManager {
                         }
                         handleReloadAll(exchange);
                     }
+                    case "/diagnostics" -> {
+                        if (!"GET".equalsIgnoreCase(method) && !"POST".equalsIgnoreCase(method)) {
+                            sendJson(exchange, 405, jsonError("method_not_allowed"));
+                            return;
+                        }
+                        String ws = q.get("ws");
+                        if (ws == null || ws.isBlank()) {
+                            sendJson(exchange, 400, jsonError("missing_ws"));
+                            return;
+                        }
+                        handleDiagnostics(exchange, ws, "POST".equalsIgnoreCase(method) ? q.get("path") : null);
+                    }
                     case "/job" -> {
                         if (!"GET".equalsIgnoreCase(method)) {
                             sendJson(exchange, 405, jsonError("method_not_allowed"));
@@ -564,6 +584,64 @@ public final class WebIdeManager {
             sendJson(exchange, 200, "{\"jobId\":\"" + jsonEscape(jobId) + "\"}");
         }
 
+        /**
+         * Answers with the workspace's compile diagnostics, mapped to .fs lines. With {@code path}, the
+         * request body is that file's unsaved text and is checked instead of the saved file.
+         */
+        private void handleDiagnostics(HttpExchange exchange, String wsId, String relPath) throws IOException {
+            Map<Path, String> overlay = Map.of();
+            if (relPath != null && !relPath.isBlank()) {
+                Path wsRoot = resolveWorkspaceRoot(wsId);
+                if (wsRoot == null) {
+                    sendJson(exchange, 404, jsonError("workspace_not_found"));
+                    return;
+                }
+                Path file = safeResolve(wsRoot, relPath);
+                if (file == null || !isSymlinkSafe(wsRoot, file)) {
+                    sendJson(exchange, 400, jsonError("invalid_path"));
+                    return;
+                }
+                byte[] body = readAll(exchange.getRequestBody(), 1024 * 1024);
+                overlay = Map.of(file, new String(body, StandardCharsets.UTF_8));
+            }
+
+            // Answered from the callback, so no HTTP thread waits on the compiler. A timeout also stops the analysis.
+            ExecutorService responder = executor;
+            moduleManager.diagnoseAsync(wsId, overlay)
+                    .orTimeout(DIAGNOSTICS_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                    .whenCompleteAsync((result, error) -> {
+                        try {
+                            sendDiagnostics(exchange, result, error);
+                        } catch (Throwable t) {
+                            exchange.close();
+                        }
+                    }, responder);
+        }
+
+        private void sendDiagnostics(HttpExchange exchange, FsCompiler.Diagnostics result, Throwable error) throws IOException {
+            if (error instanceof CompletionException && error.getCause() != null) {
+                error = error.getCause();
+            }
+            if (error instanceof CancellationException) {
+                sendJson(exchange, 409, jsonError("superseded"));
+                return;
+            }
+            if (error instanceof TimeoutException) {
+                sendJson(exchange, 504, jsonError("timeout"));
+                return;
+            }
+            if (error instanceof IllegalArgumentException) {
+                sendJson(exchange, 404, jsonError("workspace_not_found"));
+                return;
+            }
+            if (error != null) {
+                // Not a compiler message (e.g. missing or empty entry file): report it as a diagnostic.
+                String msg = error.getMessage() == null ? String.valueOf(error) : error.getMessage();
+                result = new FsCompiler.Diagnostics(false, List.of(new FsCompiler.Diagnostic("error", null, 0, 0, msg)), 0L);
+            }
+            sendJson(exchange, 200, buildDiagnosticsJson(result));
+        }
+
         private void handleReloadAll(HttpExchange exchange) throws IOException {
             String jobId = createJob("reloadAll", "*");
             Job job = jobs.get(jobId);
@@ -598,10 +676,79 @@ public final class WebIdeManager {
                 "\"bind\":\"" + jsonEscape(String.valueOf(bindHost)) + "\"," +
                 "\"port\":" + port + "," +
                 "\"startedAt\":\"" + jsonEscape(String.valueOf(startedAt)) + "\"," +
-                "\"loadedModules\":" + loaded +
+                "\"loadedModules\":" + loaded + "," +
+                "\"compiles\":" + buildCompileMetricsJson() + "," +
+                "\"leaks\":" + buildLeakStatsJson() +
                 "}";
     }
 
+    /** Disabled module class loaders: {@code {"collected":n,"pending":n,"zombies":n}}. */
+    private String buildLeakStatsJson() {
+        LoaderLeakTracker.Stats stats = moduleManager.getLeakTracker().stats();
+        return "{\"collected\":" + stats.collected()
+                + ",\"pending\":" + (stats.tracked() - stats.zombies())
+                + ",\"zombies\":" + stats.zombies() + "}";
+    }
+
+    /** Recent compile timings per module, oldest first: {@code {"<id>":[{...}, ...]}}. */
+    private String buildCompileMetricsJson() {
+        StringBuilder sb = new StringBuilder("{");
+        boolean firstModule = true;
+        for (Map.Entry<String, List<CompileMetrics.Sample>> e : moduleManager.getCompileMetrics().snapshot().entrySet()) {
+            if (!firstModule) sb.append(',');
+            firstModule = false;
+            sb.append('"').append(jsonEscape(e.getKey())).append("\":[");
+            List<CompileMetrics.Sample> samples = e.getValue();
+            for (int i = 0; i < samples.size(); i++) {
+                CompileMetrics.Sample s = samples.get(i);
+                if (i > 0) sb.append(',');
+                sb.append('{')
+                        .append("\"at\":").append(s.at()).append(',')
+                        .append("\"outcome\":\"").append(s.outcome().name().toLowerCase(Locale.ROOT)).append("\",")
+                        .append("\"totalMs\":").append(s.totalMs()).append(',')
+                        .append("\"sources\":").append(s.sources()).append(',')
+                        .append("\"sourceBytes\":").append(s.sourceBytes()).append(',')
+                        .append("\"rehashed\":").append(s.rehashed()).append(',')
+                        .append("\"hashMs\":").append(s.hashMs()).append(',')
+                        .append("\"preprocessMs\":").append(s.preprocessMs()).append(',')
+                        .append("\"writeMs\":").append(s.writeMs()).append(',')
+                        .append("\"compileMs\":").append(s.compileMs()).append(',')
+                        .append("\"kotlincMs\":").append(s.kotlincMs()).append(',')
+                        .append("\"packageMs\":").append(s.packageMs()).append(',')
+                        .append("\"units\":").append(s.units()).append(',')
+                        .append("\"compiledUnits\":").append(s.compiledUnits()).append(',')
+                        .append("\"fullBuild\":").append(s.fullBuild()).append(',')
+                        .append("\"classBytes\":").append(s.classBytes()).append(',')
+                        .append("\"jarBytes\":").append(s.jarBytes())
+                        .append('}');
+            }
+            sb.append(']');
+        }
+        return sb.append('}').toString();
+    }
+
+    private static String buildDiagnosticsJson(FsCompiler.Diagnostics result) {
+        StringBuilder sb = new StringBuilder();
+        sb.append('{')
+                .append("\"success\":").append(result.success()).append(',')
+                .append("\"elapsedMs\":").append(result.elapsedMs()).append(',')
+                .append("\"diagnostics\":[");
+        List<FsCompiler.Diagnostic> diagnostics = result.diagnostics();
+        for (int i = 0; i < diagnostics.size(); i++) {
+            FsCompiler.Diagnostic d = diagnostics.get(i);
+            if (i > 0) sb.append(',');
+            sb.append('{')
+                    .append("\"severity\":\"").append(jsonEscape(d.severity())).append("\",")
+                    .append("\"file\":").append(d.file() == null ? "null" : "\"" + jsonEscape(d.file()) + "\"").append(',')
+                    .append("\"line\":").append(d.line()).append(',')
+                    .append("\"column\":").append(d.column()).append(',')
+                    .append("\"message\":\"").append(jsonEscape(d.message())).append('"')
+                    .append('}');
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
     private String buildWorkspacesJson() {
         Path scriptsRoot = plugin.getDataFolder().toPath().resolve("scripts");
         if (!Files.isDirectory(scriptsRoot)) {
@@ -615,7 +762,7 @@ public final class WebIdeManager {
                 if (!Files.isRegularFile(scriptYml, LinkOption.NOFOLLOW_LINKS)) continue;
                 try {
                     ScriptWorkspace ws = ScriptWorkspace.load(wsDir);
-                    boolean loaded = moduleManager.getLoadedModules().stream().anyMatch(m -> m.manifest().id().equals(ws.manifest().id()));
+                    boolean loaded = moduleManager.isModuleLoaded(ws.manifest().id());
                     list.add(new WorkspaceInfo(ws.manifest().id(), ws.manifest().name(), ws.manifest().version(), ws.manifest().load(), wsDir.getFileName().toString(), loaded));
                 } catch (Throwable ignored) {
                     // ignore invalid workspace
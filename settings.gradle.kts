@@ -1,4 +1,6 @@
 rootProject.name = "focuscript"
 
 include("focuscript-api")
+include("focuscript-runtime")
+include("focuscript-compiler")
 include("focuscript-plugin")